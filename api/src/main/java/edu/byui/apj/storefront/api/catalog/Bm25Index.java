@@ -0,0 +1,318 @@
+package edu.byui.apj.storefront.api.catalog;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntPredicate;
+
+/**
+ * Term-frequency index for relevance-ranked search. Each word has a posting list of the rows that
+ * contain it with its frequency in the name and in the contribution, so a query never looks at
+ * the text. Rows are scored with BM25F: the two field frequencies are length-normalized and
+ * weighted before the usual BM25 saturation, and a match in the name counts three times as much.
+ * <p>
+ * Posting lists are merged document at a time and the best rows kept in a bounded heap, so a
+ * query needs O(k) memory however many rows match.
+ * <p>
+ * Rows appended to the catalog since the index was built can be passed to a search, which scores
+ * their text against the statistics of the indexed rows.
+ */
+public final class Bm25Index {
+
+    static final double K1 = 1.2;
+    static final double B = 0.75;
+    static final double NAME_WEIGHT = 3.0;
+    static final double CONTRIBUTION_WEIGHT = 1.0;
+
+    private static final int[] NO_ROWS = new int[0];
+
+    private final int size;
+    private final Map<String, Integer> termIds;
+    private final int[][] postingRows;
+    private final int[][] nameFrequencies;
+    private final int[][] contributionFrequencies;
+    private final int[] nameLengths;
+    private final int[] contributionLengths;
+    private final double averageNameLength;
+    private final double averageContributionLength;
+
+    public Bm25Index(CardCatalog catalog) {
+        size = catalog.size();
+        termIds = new HashMap<>();
+        nameLengths = new int[size];
+        contributionLengths = new int[size];
+        List<Postings> postings = new ArrayList<>();
+        long nameTotal = 0;
+        long contributionTotal = 0;
+
+        for (int row = 0; row < size; row++) {
+            String[] nameWords = CardCatalog.words(CardCatalog.clean(catalog.name(row)));
+            String[] contributionWords = CardCatalog.words(CardCatalog.clean(catalog.contribution(row)));
+            nameLengths[row] = nameWords.length;
+            contributionLengths[row] = contributionWords.length;
+            nameTotal += nameWords.length;
+            contributionTotal += contributionWords.length;
+            for (String word : nameWords) {
+                postingsFor(postings, word).add(row, true);
+            }
+            for (String word : contributionWords) {
+                postingsFor(postings, word).add(row, false);
+            }
+        }
+
+        postingRows = new int[postings.size()][];
+        nameFrequencies = new int[postings.size()][];
+        contributionFrequencies = new int[postings.size()][];
+        for (int term = 0; term < postings.size(); term++) {
+            Postings list = postings.get(term);
+            postingRows[term] = Arrays.copyOf(list.rows, list.size);
+            nameFrequencies[term] = Arrays.copyOf(list.nameFrequencies, list.size);
+            contributionFrequencies[term] = Arrays.copyOf(list.contributionFrequencies, list.size);
+        }
+        averageNameLength = size == 0 ? 0 : (double) nameTotal / size;
+        averageContributionLength = size == 0 ? 0 : (double) contributionTotal / size;
+    }
+
+    // The limit best rows for the cleaned query, highest score first and ties in catalog order.
+    public int[] search(String cleanQuery, int limit) {
+        return search(cleanQuery, limit, row -> true);
+    }
+
+    // As search(cleanQuery, limit), over the rows that pass the filter only.
+    public int[] search(String cleanQuery, int limit, IntPredicate filter) {
+        return search(cleanQuery, limit, filter, null, NO_ROWS);
+    }
+
+    // As search(cleanQuery, limit, filter), with the given appended rows of the catalog scored as well. Ties
+    // between an indexed and an appended row go by catalog sequence.
+    public int[] search(String cleanQuery, int limit, IntPredicate filter, CardCatalog catalog, int[] appendedRows) {
+        String[] words = Arrays.stream(CardCatalog.words(cleanQuery)).distinct().toArray(String[]::new);
+        int[] terms = Arrays.stream(words)
+            .map(termIds::get)
+            .filter(id -> id != null)
+            .mapToInt(Integer::intValue)
+            .toArray();
+        if (words.length == 0 || limit == 0 || (terms.length == 0 && appendedRows.length == 0)) {
+            return NO_ROWS;
+        }
+
+        double[] idf = new double[terms.length];
+        long postingsTotal = 0;
+        for (int i = 0; i < terms.length; i++) {
+            int documentFrequency = postingRows[terms[i]].length;
+            idf[i] = idf(documentFrequency);
+            postingsTotal += documentFrequency;
+        }
+
+        // The heap holds catalog sequences, which are the rows themselves for indexed rows.
+        TopScores top = new TopScores((int) Math.min(limit, postingsTotal + appendedRows.length));
+        Map<Integer, Integer> appendedBySequence = new HashMap<>();
+        for (int row : appendedRows) {
+            double score = scoreText(words, catalog.name(row), catalog.contribution(row));
+            if (score > 0) {
+                appendedBySequence.put(catalog.sequence(row), row);
+                top.offer(catalog.sequence(row), score);
+            }
+        }
+        int[] cursors = new int[terms.length];
+        while (true) {
+            int row = Integer.MAX_VALUE;
+            for (int i = 0; i < terms.length; i++) {
+                if (cursors[i] < postingRows[terms[i]].length) {
+                    row = Math.min(row, postingRows[terms[i]][cursors[i]]);
+                }
+            }
+            if (row == Integer.MAX_VALUE) {
+                break;
+            }
+            double score = 0;
+            for (int i = 0; i < terms.length; i++) {
+                int term = terms[i];
+                int cursor = cursors[i];
+                if (cursor < postingRows[term].length && postingRows[term][cursor] == row) {
+                    score += idf[i] * saturate(weightedFrequency(row, nameFrequencies[term][cursor],
+                        contributionFrequencies[term][cursor]));
+                    cursors[i]++;
+                }
+            }
+            if (filter.test(row)) {
+                top.offer(row, score);
+            }
+        }
+        int[] rows = top.toRows();
+        if (!appendedBySequence.isEmpty()) {
+            for (int i = 0; i < rows.length; i++) {
+                rows[i] = appendedBySequence.getOrDefault(rows[i], rows[i]);
+            }
+        }
+        return rows;
+    }
+
+    // A word the index lacks counts as the rarest.
+    private double idf(int documentFrequency) {
+        return Math.log(1 + (size - documentFrequency + 0.5) / (documentFrequency + 0.5));
+    }
+
+    private double scoreText(String[] words, String name, String contribution) {
+        String[] nameWords = CardCatalog.words(CardCatalog.clean(name));
+        String[] contributionWords = CardCatalog.words(CardCatalog.clean(contribution));
+        double score = 0;
+        for (String word : words) {
+            int nameFrequency = frequency(nameWords, word);
+            int contributionFrequency = frequency(contributionWords, word);
+            if (nameFrequency + contributionFrequency > 0) {
+                Integer term = termIds.get(word);
+                score += idf(term == null ? 0 : postingRows[term].length) * saturate(weightedFrequency(
+                    nameWords.length, contributionWords.length, nameFrequency, contributionFrequency));
+            }
+        }
+        return score;
+    }
+
+    private static int frequency(String[] words, String word) {
+        int frequency = 0;
+        for (String candidate : words) {
+            if (candidate.equals(word)) {
+                frequency++;
+            }
+        }
+        return frequency;
+    }
+
+    private double weightedFrequency(int row, int nameFrequency, int contributionFrequency) {
+        return weightedFrequency(nameLengths[row], contributionLengths[row], nameFrequency, contributionFrequency);
+    }
+
+    private double weightedFrequency(int nameLength, int contributionLength, int nameFrequency,
+                                     int contributionFrequency) {
+        double name = nameFrequency == 0 ? 0 : nameFrequency / lengthNorm(nameLength, averageNameLength);
+        double contribution = contributionFrequency == 0 ? 0
+            : contributionFrequency / lengthNorm(contributionLength, averageContributionLength);
+        return NAME_WEIGHT * name + CONTRIBUTION_WEIGHT * contribution;
+    }
+
+    // An appended row can hold a field that is empty in every indexed row; it is taken as average then.
+    private static double lengthNorm(int length, double averageLength) {
+        return averageLength == 0 ? 1 : 1 - B + B * length / averageLength;
+    }
+
+    private static double saturate(double frequency) {
+        return frequency * (K1 + 1) / (frequency + K1);
+    }
+
+    private Postings postingsFor(List<Postings> postings, String word) {
+        Integer term = termIds.get(word);
+        if (term == null) {
+            term = postings.size();
+            termIds.put(word, term);
+            postings.add(new Postings());
+        }
+        return postings.get(term);
+    }
+
+    private static final class Postings {
+        private int[] rows = new int[2];
+        private int[] nameFrequencies = new int[2];
+        private int[] contributionFrequencies = new int[2];
+        private int size;
+
+        // Rows arrive in ascending order, so a repeated word in the same row updates the last entry.
+        void add(int row, boolean inName) {
+            if (size == 0 || rows[size - 1] != row) {
+                if (size == rows.length) {
+                    rows = Arrays.copyOf(rows, size * 2);
+                    nameFrequencies = Arrays.copyOf(nameFrequencies, size * 2);
+                    contributionFrequencies = Arrays.copyOf(contributionFrequencies, size * 2);
+                }
+                rows[size++] = row;
+            }
+            if (inName) {
+                nameFrequencies[size - 1]++;
+            } else {
+                contributionFrequencies[size - 1]++;
+            }
+        }
+    }
+
+    // Min-heap of the k best (score, row) pairs; the root is the weakest row kept so far.
+    private static final class TopScores {
+        private final double[] scores;
+        private final int[] rows;
+        private int size;
+
+        TopScores(int k) {
+            scores = new double[k];
+            rows = new int[k];
+        }
+
+        void offer(int row, double score) {
+            if (size < scores.length) {
+                scores[size] = score;
+                rows[size] = row;
+                siftUp(size++);
+            } else if (size > 0 && better(score, row, scores[0], rows[0])) {
+                scores[0] = score;
+                rows[0] = row;
+                siftDown(0);
+            }
+        }
+
+        int[] toRows() {
+            Integer[] order = new Integer[size];
+            for (int i = 0; i < size; i++) {
+                order[i] = i;
+            }
+            Arrays.sort(order, (a, b) -> {
+                int byScore = Double.compare(scores[b], scores[a]);
+                return byScore != 0 ? byScore : Integer.compare(rows[a], rows[b]);
+            });
+            int[] sorted = new int[size];
+            for (int i = 0; i < size; i++) {
+                sorted[i] = rows[order[i]];
+            }
+            return sorted;
+        }
+
+        private static boolean better(double score, int row, double otherScore, int otherRow) {
+            return score > otherScore || (score == otherScore && row < otherRow);
+        }
+
+        private void siftUp(int index) {
+            while (index > 0) {
+                int parent = (index - 1) >>> 1;
+                if (!better(scores[parent], rows[parent], scores[index], rows[index])) {
+                    break;
+                }
+                swap(index, parent);
+                index = parent;
+            }
+        }
+
+        private void siftDown(int index) {
+            while (true) {
+                int weakest = index;
+                for (int child = 2 * index + 1; child <= 2 * index + 2 && child < size; child++) {
+                    if (better(scores[weakest], rows[weakest], scores[child], rows[child])) {
+                        weakest = child;
+                    }
+                }
+                if (weakest == index) {
+                    return;
+                }
+                swap(index, weakest);
+                index = weakest;
+            }
+        }
+
+        private void swap(int a, int b) {
+            double score = scores[a];
+            scores[a] = scores[b];
+            scores[b] = score;
+            int row = rows[a];
+            rows[a] = rows[b];
+            rows[b] = row;
+        }
+    }
+}
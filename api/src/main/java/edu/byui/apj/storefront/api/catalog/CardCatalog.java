@@ -0,0 +1,491 @@
+package edu.byui.apj.storefront.api.catalog;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import edu.byui.apj.storefront.api.model.TradingCard;
+
+/**
+ * Immutable column store for the trading-card catalog. Each card is a row index into parallel
+ * primitive columns; {@link TradingCard} objects are only built for rows that are returned.
+ * The fixed-width columns are buffers so that they can be heap arrays or views of a mapped
+ * {@link CatalogSnapshotFile}.
+ * <p>
+ * Specialties and image URLs repeat across many cards, so each is a code into a dictionary of
+ * the distinct values. Names and contributions are entries of a {@link TextHeap}: row r's name is
+ * entry textFirst + textStride * r and its contribution the entry after, which lets a mapped
+ * snapshot's string table serve as the heap in place.
+ * <p>
+ * Rows written after the catalog was loaded are appended to a heap tail by an {@link Appender}.
+ * Every version shares the base columns and the tail arrays, and a row never changes once
+ * written: an updated card is a new row that takes the old one's place in catalog order.
+ */
+public final class CardCatalog {
+
+    private static final BigDecimal MIN_CENTS = BigDecimal.valueOf(Long.MIN_VALUE);
+    private static final BigDecimal MAX_CENTS = BigDecimal.valueOf(Long.MAX_VALUE);
+
+    private static final int MIN_TAIL_CAPACITY = 16;
+
+    private final int size;
+    private final int baseSize;
+    private final LongBuffer ids;
+    private final LongBuffer priceCents;
+    private final IntBuffer specialtyCodes;
+    private final int specialtyCount;
+    private final String[] specialtyDictionary;
+    private final String[] cleanSpecialtyDictionary;
+    private final TextHeap text;
+    private final int textFirst;
+    private final int textStride;
+    private final IntBuffer imageUrlCodes;
+    private final String[] imageUrlDictionary;
+    private final Tail tail;
+
+    CardCatalog(
+        int size,
+        LongBuffer ids,
+        LongBuffer priceCents,
+        IntBuffer specialtyCodes,
+        String[] specialtyDictionary,
+        TextHeap text,
+        int textFirst,
+        int textStride,
+        IntBuffer imageUrlCodes,
+        String[] imageUrlDictionary
+    ) {
+        this(size, size, ids, priceCents, specialtyCodes, specialtyDictionary.length, specialtyDictionary,
+            cleanAll(specialtyDictionary), text, textFirst, textStride, imageUrlCodes, imageUrlDictionary, Tail.EMPTY);
+    }
+
+    private CardCatalog(
+        int size,
+        int baseSize,
+        LongBuffer ids,
+        LongBuffer priceCents,
+        IntBuffer specialtyCodes,
+        int specialtyCount,
+        String[] specialtyDictionary,
+        String[] cleanSpecialtyDictionary,
+        TextHeap text,
+        int textFirst,
+        int textStride,
+        IntBuffer imageUrlCodes,
+        String[] imageUrlDictionary,
+        Tail tail
+    ) {
+        this.size = size;
+        this.baseSize = baseSize;
+        this.ids = ids;
+        this.priceCents = priceCents;
+        this.specialtyCodes = specialtyCodes;
+        this.specialtyCount = specialtyCount;
+        this.specialtyDictionary = specialtyDictionary;
+        this.cleanSpecialtyDictionary = cleanSpecialtyDictionary;
+        this.text = text;
+        this.textFirst = textFirst;
+        this.textStride = textStride;
+        this.imageUrlCodes = imageUrlCodes;
+        this.imageUrlDictionary = imageUrlDictionary;
+        this.tail = tail;
+    }
+
+    public static Builder builder() {
+        return new Builder(16);
+    }
+
+    public static Builder builder(int expectedSize) {
+        return new Builder(expectedSize);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    // Rows loaded with the catalog; rows from baseSize on were appended since.
+    public int baseSize() {
+        return baseSize;
+    }
+
+    public long id(int row) {
+        return row < baseSize ? ids.get(row) : tail.ids[row - baseSize];
+    }
+
+    public long priceCents(int row) {
+        return row < baseSize ? priceCents.get(row) : tail.priceCents[row - baseSize];
+    }
+
+    public int specialtyCode(int row) {
+        return row < baseSize ? specialtyCodes.get(row) : tail.specialtyCodes[row - baseSize];
+    }
+
+    public int specialtyCount() {
+        return specialtyCount;
+    }
+
+    public String specialty(int code) {
+        return specialtyDictionary[code];
+    }
+
+    // Name and contribution are decoded on every call; callers that need them often should keep the result.
+    public String name(int row) {
+        return row < baseSize ? text.get(textFirst + textStride * row) : tail.names[row - baseSize];
+    }
+
+    public String contribution(int row) {
+        return row < baseSize ? text.get(textFirst + textStride * row + 1) : tail.contributions[row - baseSize];
+    }
+
+    // Whether the cleaned name or contribution contains the cleaned UTF-8 needle. Base rows are matched on the
+    // text heap without decoding them.
+    public boolean textContains(int row, byte[] cleanNeedle) {
+        if (row < baseSize) {
+            int entry = textFirst + textStride * row;
+            return text.containsIgnoreCase(entry, cleanNeedle) || text.containsIgnoreCase(entry + 1, cleanNeedle);
+        }
+        String needle = new String(cleanNeedle, StandardCharsets.UTF_8);
+        return clean(tail.names[row - baseSize]).contains(needle)
+            || clean(tail.contributions[row - baseSize]).contains(needle);
+    }
+
+    public String imageUrl(int row) {
+        return row < baseSize ? imageUrlDictionary[imageUrlCodes.get(row)] : tail.imageUrls[row - baseSize];
+    }
+
+    // Place of the row in catalog order. Base rows are in catalog order already; an appended row
+    // takes the place of the row it replaced, or comes after every row before it.
+    public int sequence(int row) {
+        return row < baseSize ? row : tail.sequences[row - baseSize];
+    }
+
+    // Resolves a cleaned substring against the specialty dictionary, so rows only need a lookup by code.
+    public boolean[] matchSpecialties(String cleanNeedle) {
+        boolean[] matches = new boolean[specialtyCount];
+        for (int code = 0; code < matches.length; code++) {
+            matches[code] = cleanSpecialtyDictionary[code].contains(cleanNeedle);
+        }
+        return matches;
+    }
+
+    public TradingCard toCard(int row) {
+        return new TradingCard(
+            id(row),
+            name(row),
+            specialtyDictionary[specialtyCode(row)],
+            contribution(row),
+            fromCents(priceCents(row)),
+            imageUrl(row));
+    }
+
+    // This catalog with the latest change per card applied: a put replaces the first row with its id where it
+    // stands, a delete drops that row, and puts of ids the catalog lacks come last, in order.
+    public CardCatalog withChanges(Collection<CardChange> latest) {
+        if (latest.isEmpty()) {
+            return this;
+        }
+        Map<Long, CardChange> pending = new LinkedHashMap<>();
+        for (CardChange change : latest) {
+            pending.put(change.id(), change);
+        }
+        Builder builder = builder(size + latest.size());
+        for (int row = 0; row < size; row++) {
+            CardChange change = pending.remove(id(row));
+            if (change == null) {
+                builder.add(id(row), name(row), specialty(specialtyCode(row)), contribution(row), priceCents(row),
+                    imageUrl(row));
+            } else if (!change.isDelete()) {
+                add(builder, change);
+            }
+        }
+        for (CardChange change : pending.values()) {
+            if (!change.isDelete()) {
+                add(builder, change);
+            }
+        }
+        return builder.build();
+    }
+
+    private static void add(Builder builder, CardChange change) {
+        builder.add(change.id(), change.name(), change.specialty(), change.contribution(), change.priceCents(),
+            change.imageUrl());
+    }
+
+    // Only the newest version of a catalog may be appended to, and by one thread at a time: the tail
+    // arrays are shared with older versions, which never read past their own size.
+    public Appender appender() {
+        return new Appender(this);
+    }
+
+    public static String clean(String str) {
+        if (str == null) throw new AssertionError("string was null");
+        return str.trim().toLowerCase();
+    }
+
+    // Splits cleaned text into the words that the term indexes work on.
+    public static String[] words(String cleanText) {
+        return Arrays.stream(cleanText.split("[^\\p{L}\\p{N}]+"))
+            .filter(word -> !word.isEmpty())
+            .toArray(String[]::new);
+    }
+
+    public static BigDecimal fromCents(long cents) {
+        return BigDecimal.valueOf(cents, 2);
+    }
+
+    // Converts a price to whole cents, saturating at the long range so open-ended bounds stay usable.
+    public static long toCents(BigDecimal price, RoundingMode mode) {
+        BigDecimal cents = price.movePointRight(2).setScale(0, mode);
+        if (cents.compareTo(MAX_CENTS) > 0) return Long.MAX_VALUE;
+        if (cents.compareTo(MIN_CENTS) < 0) return Long.MIN_VALUE;
+        return cents.longValue();
+    }
+
+    private static String[] cleanAll(String[] values) {
+        String[] cleaned = new String[values.length];
+        for (int i = 0; i < values.length; i++) {
+            cleaned[i] = clean(values[i]);
+        }
+        return cleaned;
+    }
+
+    // Heap columns of the appended rows. The arrays have spare capacity and are replaced when they grow.
+    private record Tail(
+        long[] ids,
+        long[] priceCents,
+        int[] specialtyCodes,
+        int[] sequences,
+        String[] names,
+        String[] contributions,
+        String[] imageUrls
+    ) {
+        static final Tail EMPTY = new Tail(0);
+
+        Tail(int capacity) {
+            this(new long[capacity], new long[capacity], new int[capacity], new int[capacity],
+                new String[capacity], new String[capacity], new String[capacity]);
+        }
+
+        int capacity() {
+            return ids.length;
+        }
+
+        Tail grow(int capacity) {
+            return new Tail(
+                Arrays.copyOf(ids, capacity),
+                Arrays.copyOf(priceCents, capacity),
+                Arrays.copyOf(specialtyCodes, capacity),
+                Arrays.copyOf(sequences, capacity),
+                Arrays.copyOf(names, capacity),
+                Arrays.copyOf(contributions, capacity),
+                Arrays.copyOf(imageUrls, capacity));
+        }
+    }
+
+    public static final class Appender {
+        private final CardCatalog from;
+        private Tail tail;
+        private String[] specialtyDictionary;
+        private String[] cleanSpecialtyDictionary;
+        private int specialtyCount;
+        private Map<String, Integer> specialtyCodesByValue;
+        private int size;
+
+        private Appender(CardCatalog from) {
+            this.from = from;
+            this.tail = from.tail;
+            this.specialtyDictionary = from.specialtyDictionary;
+            this.cleanSpecialtyDictionary = from.cleanSpecialtyDictionary;
+            this.specialtyCount = from.specialtyCount;
+            this.size = from.size;
+        }
+
+        // Returns the new row.
+        public int append(long id, String name, String specialty, String contribution, long cents, String imageUrl,
+                          int sequence) {
+            int index = size - from.baseSize;
+            if (index == tail.capacity()) {
+                tail = tail.grow(Math.max(MIN_TAIL_CAPACITY, index + (index >> 1)));
+            }
+            tail.ids[index] = id;
+            tail.priceCents[index] = cents;
+            tail.specialtyCodes[index] = specialtyCode(specialty);
+            tail.sequences[index] = sequence;
+            tail.names[index] = name;
+            tail.contributions[index] = contribution;
+            tail.imageUrls[index] = imageUrl;
+            return size++;
+        }
+
+        public int size() {
+            return size;
+        }
+
+        int sequence(int row) {
+            return row < from.size ? from.sequence(row) : tail.sequences[row - from.baseSize];
+        }
+
+        public CardCatalog build() {
+            return new CardCatalog(size, from.baseSize, from.ids, from.priceCents, from.specialtyCodes, specialtyCount,
+                specialtyDictionary, cleanSpecialtyDictionary, from.text, from.textFirst, from.textStride,
+                from.imageUrlCodes, from.imageUrlDictionary, tail);
+        }
+
+        // New specialties are added to the end of the dictionary, so existing codes keep their meaning.
+        private int specialtyCode(String specialty) {
+            if (specialtyCodesByValue == null) {
+                specialtyCodesByValue = new HashMap<>();
+                for (int code = specialtyCount - 1; code >= 0; code--) {
+                    specialtyCodesByValue.put(specialtyDictionary[code], code);
+                }
+            }
+            Integer code = specialtyCodesByValue.get(specialty);
+            if (code != null) {
+                return code;
+            }
+            if (specialtyCount == specialtyDictionary.length) {
+                int capacity = Math.max(MIN_TAIL_CAPACITY, specialtyCount * 2);
+                specialtyDictionary = Arrays.copyOf(specialtyDictionary, capacity);
+                cleanSpecialtyDictionary = Arrays.copyOf(cleanSpecialtyDictionary, capacity);
+            }
+            specialtyDictionary[specialtyCount] = specialty;
+            cleanSpecialtyDictionary[specialtyCount] = clean(specialty);
+            specialtyCodesByValue.put(specialty, specialtyCount);
+            return specialtyCount++;
+        }
+    }
+
+    // Names and contributions are encoded as they are added, so the builder holds no String per row either.
+    public static final class Builder {
+        private int size;
+        private long[] ids;
+        private long[] priceCents;
+        private int[] specialtyCodes;
+        private int[] imageUrlCodes;
+        private final TextHeap.Builder text;
+        private final Map<String, Integer> specialtyCodesByValue = new HashMap<>();
+        private final List<String> specialties = new ArrayList<>();
+        private final Map<String, Integer> imageUrlCodesByValue = new HashMap<>();
+        private final List<String> imageUrls = new ArrayList<>();
+
+        private Builder(int expectedSize) {
+            int capacity = Math.max(expectedSize, 16);
+            ids = new long[capacity];
+            priceCents = new long[capacity];
+            specialtyCodes = new int[capacity];
+            imageUrlCodes = new int[capacity];
+            text = TextHeap.builder(2 * capacity);
+        }
+
+        public Builder add(long id, String name, String specialty, String contribution, BigDecimal price, String imageUrl) {
+            return add(id, name, specialty, contribution, toCents(price, RoundingMode.UNNECESSARY), imageUrl);
+        }
+
+        public Builder add(long id, String name, String specialty, String contribution, long cents, String imageUrl) {
+            if (size == ids.length) {
+                grow();
+            }
+            ids[size] = id;
+            priceCents[size] = cents;
+            specialtyCodes[size] = code(specialty, specialtyCodesByValue, specialties);
+            imageUrlCodes[size] = code(imageUrl, imageUrlCodesByValue, imageUrls);
+            text.add(name);
+            text.add(contribution);
+            size++;
+            return this;
+        }
+
+        // The rows of every part in order, as one catalog. Columns and text are copied as they are; only the
+        // dictionary codes are mapped onto the merged dictionaries.
+        public static CardCatalog concat(List<Builder> parts) {
+            long total = 0;
+            for (Builder part : parts) {
+                total += part.size;
+            }
+            if (total > Integer.MAX_VALUE - 8) {
+                throw new IllegalStateException("Catalog would have more than " + (Integer.MAX_VALUE - 8) + " rows");
+            }
+            int size = (int) total;
+            long[] ids = new long[size];
+            long[] priceCents = new long[size];
+            int[] specialtyCodes = new int[size];
+            int[] imageUrlCodes = new int[size];
+            Map<String, Integer> specialtyCodesByValue = new HashMap<>();
+            List<String> specialties = new ArrayList<>();
+            Map<String, Integer> imageUrlCodesByValue = new HashMap<>();
+            List<String> imageUrls = new ArrayList<>();
+            List<TextHeap.Builder> texts = new ArrayList<>(parts.size());
+
+            int at = 0;
+            for (Builder part : parts) {
+                System.arraycopy(part.ids, 0, ids, at, part.size);
+                System.arraycopy(part.priceCents, 0, priceCents, at, part.size);
+                int[] specialtyMap = remap(part.specialties, specialtyCodesByValue, specialties);
+                int[] imageUrlMap = remap(part.imageUrls, imageUrlCodesByValue, imageUrls);
+                for (int row = 0; row < part.size; row++) {
+                    specialtyCodes[at + row] = specialtyMap[part.specialtyCodes[row]];
+                    imageUrlCodes[at + row] = imageUrlMap[part.imageUrlCodes[row]];
+                }
+                texts.add(part.text);
+                at += part.size;
+            }
+            return new CardCatalog(size, LongBuffer.wrap(ids), LongBuffer.wrap(priceCents), IntBuffer.wrap(specialtyCodes),
+                specialties.toArray(new String[0]), TextHeap.concat(texts), 0, 2, IntBuffer.wrap(imageUrlCodes),
+                imageUrls.toArray(new String[0]));
+        }
+
+        public int size() {
+            return size;
+        }
+
+        public CardCatalog build() {
+            return new CardCatalog(
+                size,
+                LongBuffer.wrap(Arrays.copyOf(ids, size)),
+                LongBuffer.wrap(Arrays.copyOf(priceCents, size)),
+                IntBuffer.wrap(Arrays.copyOf(specialtyCodes, size)),
+                specialties.toArray(new String[0]),
+                text.build(),
+                0,
+                2,
+                IntBuffer.wrap(Arrays.copyOf(imageUrlCodes, size)),
+                imageUrls.toArray(new String[0]));
+        }
+
+        private static int code(String value, Map<String, Integer> codesByValue, List<String> dictionary) {
+            Integer code = codesByValue.get(value);
+            if (code == null) {
+                code = dictionary.size();
+                dictionary.add(value);
+                codesByValue.put(value, code);
+            }
+            return code;
+        }
+
+        // Codes of a part's dictionary in the merged one.
+        private static int[] remap(List<String> partDictionary, Map<String, Integer> codesByValue, List<String> dictionary) {
+            int[] codes = new int[partDictionary.size()];
+            for (int code = 0; code < codes.length; code++) {
+                codes[code] = code(partDictionary.get(code), codesByValue, dictionary);
+            }
+            return codes;
+        }
+
+        private void grow() {
+            int capacity = ids.length + (ids.length >> 1);
+            ids = Arrays.copyOf(ids, capacity);
+            priceCents = Arrays.copyOf(priceCents, capacity);
+            specialtyCodes = Arrays.copyOf(specialtyCodes, capacity);
+            imageUrlCodes = Arrays.copyOf(imageUrlCodes, capacity);
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package edu.byui.apj.storefront.api.catalog;
+
+// One write to the catalog. A put replaces the live card with its id, or adds the card when there is
+// none; a delete removes it and carries only the id.
+public record CardChange(long id, String name, String specialty, String contribution, long priceCents, String imageUrl) {
+
+    public static CardChange put(long id, String name, String specialty, String contribution, long priceCents, String imageUrl) {
+        return new CardChange(id, name, specialty, contribution, priceCents, imageUrl);
+    }
+
+    public static CardChange delete(long id) {
+        return new CardChange(id, null, null, null, 0, null);
+    }
+
+    public boolean isDelete() {
+        return name == null;
+    }
+}
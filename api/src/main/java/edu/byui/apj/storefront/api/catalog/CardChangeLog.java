@@ -0,0 +1,466 @@
+package edu.byui.apj.storefront.api.catalog;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Append-only log of {@link CardChange}s with checkpoints, which makes catalog writes durable.
+ * The directory holds numbered log segments and checkpoints; checkpoint N is a
+ * {@link CatalogSnapshotFile} of the catalog with every change of the segments before N applied.
+ * Opening the log reads the latest checkpoint and the changes of the segments from N on.
+ * <p>
+ * Next to checkpoint N, written N holds the API writes that catalog already contains on top of its
+ * source file, the latest per card, in segment format. A reload replaces the source and applies
+ * them again, so they survive reloads across restarts. It is written before the checkpoint, so a
+ * checkpoint never lacks one.
+ * <pre>
+ * segment  magic (8) | format version (4) | padding (4) | records
+ * record   payload length (4) | CRC-32C of payload (4) | payload
+ * payload  kind (1) | id (8) | price cents (8) | name | specialty | contribution | image URL
+ * </pre>
+ * Integers are little-endian and strings are a length followed by UTF-8 bytes; a delete stops
+ * after the id. A crash can leave a torn record at the end of the last segment, which recovery
+ * cuts off.
+ * <p>
+ * Appends only buffer the record. One sync thread writes everything buffered since its last pass
+ * and forces it to disk with a single fsync, then completes the appends it covered, so concurrent
+ * writers share fsyncs (group commit). A sync interval holds each pass back to gather larger
+ * batches. Once a write or fsync fails the log refuses further appends, and the segment is cut
+ * back to what was synced, so the failed changes are not recovered either.
+ */
+@Slf4j
+public final class CardChangeLog implements Closeable {
+
+    private static final long MAGIC = 0x3130_4C41_574A_5041L; // "APJWAL01" read little-endian
+    private static final int FORMAT_VERSION = 1;
+    private static final int HEADER_BYTES = 16;
+    private static final int RECORD_HEADER_BYTES = 8;
+    private static final byte PUT = 1;
+    private static final byte DELETE = 2;
+    private static final Pattern SEGMENT = Pattern.compile("changes-(\\d+)\\.log");
+    private static final Pattern CHECKPOINT = Pattern.compile("checkpoint-(\\d+)\\.catalog");
+    private static final Pattern WRITTEN = Pattern.compile("written-(\\d+)\\.log");
+
+    // The catalog of the latest checkpoint, the API writes it holds on top of its source, and the logged changes
+    // to apply on top of it, in order.
+    public record Opened(CardChangeLog log, CardCatalog catalog, List<CardChange> written, List<CardChange> changes) {
+    }
+
+    // Creates the file of a new segment; tests substitute channels that fail.
+    @FunctionalInterface
+    public interface SegmentFiles {
+        SegmentFiles DEFAULT = segment -> FileChannel.open(segment, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+
+        FileChannel create(Path segment) throws IOException;
+    }
+
+    private final Path directory;
+    private final long syncIntervalMillis;
+    private final SegmentFiles segmentFiles;
+    // Guards the buffered records, their waiters and the closed and failed state.
+    private final Object lock = new Object();
+    // Held while records are written to a segment, so a rotation never races a sync.
+    private final Object ioLock = new Object();
+    private final Thread syncThread;
+    private ByteArrayOutputStream pending = new ByteArrayOutputStream();
+    private List<CompletableFuture<Void>> waiters = new ArrayList<>();
+    private boolean closed;
+    private IOException failure;
+    // Guarded by ioLock. The segment's length after its last fsync.
+    private long generation;
+    private FileChannel channel;
+    private long syncedBytes;
+
+    private CardChangeLog(Path directory, long generation, long syncIntervalMillis, SegmentFiles segmentFiles)
+        throws IOException {
+        this.directory = directory;
+        this.syncIntervalMillis = syncIntervalMillis;
+        this.segmentFiles = segmentFiles;
+        this.generation = generation;
+        this.channel = createSegment(segmentFiles, directory, generation);
+        this.syncedBytes = HEADER_BYTES;
+        this.syncThread = new Thread(this::syncLoop, "catalog-wal-sync");
+        syncThread.setDaemon(true);
+        syncThread.start();
+    }
+
+    // Recovers the catalog from the directory. An empty directory is first checkpointed with the seed catalog.
+    public static Opened open(Path directory, long syncIntervalMillis, Supplier<CardCatalog> seed) throws IOException {
+        return open(directory, syncIntervalMillis, seed, SegmentFiles.DEFAULT);
+    }
+
+    public static Opened open(Path directory, long syncIntervalMillis, Supplier<CardCatalog> seed, SegmentFiles segmentFiles)
+        throws IOException {
+        long started = System.nanoTime();
+        Files.createDirectories(directory);
+        List<Long> checkpoints = generations(directory, CHECKPOINT);
+        List<Long> segments = generations(directory, SEGMENT);
+
+        long checkpoint;
+        CardCatalog catalog;
+        List<CardChange> written = new ArrayList<>();
+        if (checkpoints.isEmpty()) {
+            if (!segments.isEmpty()) {
+                throw new IOException("Change log in " + directory + " has no checkpoint to replay it on");
+            }
+            checkpoint = 1;
+            catalog = seed.get();
+            CatalogSnapshotFile.write(catalog, checkpointPath(directory, checkpoint));
+        } else {
+            checkpoint = checkpoints.getLast();
+            catalog = CatalogSnapshotFile.read(checkpointPath(directory, checkpoint));
+            Path writtenFile = writtenPath(directory, checkpoint);
+            if (Files.exists(writtenFile)) {
+                readSegment(writtenFile, false, written);
+            }
+        }
+
+        List<CardChange> changes = new ArrayList<>();
+        List<Long> replayed = segments.stream().filter(segment -> segment >= checkpoint).toList();
+        for (int i = 0; i < replayed.size(); i++) {
+            readSegment(segmentPath(directory, replayed.get(i)), i == replayed.size() - 1, changes);
+        }
+        long next = replayed.isEmpty() ? checkpoint : replayed.getLast() + 1;
+        CardChangeLog changeLog = new CardChangeLog(directory, next, syncIntervalMillis, segmentFiles);
+        deleteBefore(directory, checkpoint);
+        log.info("Opened change log {} at checkpoint {} with {} cards and {} logged changes in {} ms",
+            directory, checkpoint, catalog.size(), changes.size(), (System.nanoTime() - started) / 1_000_000);
+        return new Opened(changeLog, catalog, written, changes);
+    }
+
+    // Buffers the change; the future completes once it is on disk. Changes are logged in the order of their calls.
+    public CompletableFuture<Void> append(CardChange change) {
+        byte[] record = encode(change);
+        synchronized (lock) {
+            if (failure != null) {
+                throw new UncheckedIOException("The change log failed and no longer accepts writes", failure);
+            }
+            if (closed) {
+                throw new IllegalStateException("The change log is closed");
+            }
+            CompletableFuture<Void> durable = new CompletableFuture<>();
+            pending.writeBytes(record);
+            waiters.add(durable);
+            lock.notifyAll();
+            return durable;
+        }
+    }
+
+    // Syncs what is buffered and starts a new segment. Returns its generation: a checkpoint of that generation
+    // must hold every change appended before this call, and none after it.
+    public long rotate() throws IOException {
+        synchronized (ioLock) {
+            flushPending();
+            synchronized (lock) {
+                if (failure != null) {
+                    throw failure;
+                }
+            }
+            FileChannel next = createSegment(segmentFiles, directory, generation + 1);
+            channel.close();
+            channel = next;
+            syncedBytes = HEADER_BYTES;
+            generation++;
+            return generation;
+        }
+    }
+
+    // Writes the checkpoint with the API writes its catalog holds, and drops the segments and checkpoints it
+    // replaces. Throws only when the checkpoint is not in place; files left over are deleted by a later checkpoint
+    // or the next open.
+    public void checkpoint(long generation, CardCatalog catalog, Collection<CardChange> written) throws IOException {
+        long started = System.nanoTime();
+        writeChanges(written, writtenPath(directory, generation));
+        CatalogSnapshotFile.write(catalog, checkpointPath(directory, generation));
+        syncDirectory(directory);
+        try {
+            deleteBefore(directory, generation);
+        } catch (IOException e) {
+            log.warn("Failed to delete the files replaced by checkpoint {}", generation, e);
+        }
+        log.info("Wrote checkpoint {} with {} cards ({} written through the API) in {} ms",
+            generation, catalog.size(), written.size(), (System.nanoTime() - started) / 1_000_000);
+    }
+
+    // Syncs what is still buffered, then stops the sync thread.
+    @Override
+    public void close() throws IOException {
+        synchronized (ioLock) {
+            flushPending();
+            synchronized (lock) {
+                closed = true;
+                lock.notifyAll();
+            }
+            channel.close();
+        }
+    }
+
+    private void syncLoop() {
+        try {
+            while (true) {
+                synchronized (lock) {
+                    while (pending.size() == 0 && !closed) {
+                        lock.wait();
+                    }
+                    if (closed) {
+                        return;
+                    }
+                }
+                if (syncIntervalMillis > 0) {
+                    Thread.sleep(syncIntervalMillis);
+                }
+                synchronized (ioLock) {
+                    flushPending();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // Called with ioLock held.
+    private void flushPending() {
+        byte[] batch;
+        List<CompletableFuture<Void>> done;
+        IOException failed;
+        synchronized (lock) {
+            if (pending.size() == 0 || closed) {
+                return;
+            }
+            batch = pending.toByteArray();
+            pending = new ByteArrayOutputStream(Math.max(batch.length, 32));
+            done = waiters;
+            waiters = new ArrayList<>();
+            failed = failure;
+        }
+        // Appends that slipped in while a failed sync was being handled never reach the disk.
+        if (failed != null) {
+            done.forEach(durable -> durable.completeExceptionally(failed));
+            return;
+        }
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(batch);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(false);
+        } catch (IOException e) {
+            log.error("Failed to sync the change log; further writes are refused", e);
+            synchronized (lock) {
+                failure = e;
+            }
+            // Some of the batch may have reached the disk anyway.
+            try {
+                channel.truncate(syncedBytes);
+                channel.force(false);
+            } catch (IOException truncateFailure) {
+                log.error("Failed to cut the unsynced changes off {}", segmentPath(directory, generation), truncateFailure);
+            }
+            done.forEach(durable -> durable.completeExceptionally(e));
+            return;
+        }
+        syncedBytes += batch.length;
+        done.forEach(durable -> durable.complete(null));
+    }
+
+    private static byte[] encode(CardChange change) {
+        byte[][] strings = change.isDelete() ? new byte[0][] : new byte[][] {
+            utf8(change.name()), utf8(change.specialty()), utf8(change.contribution()), utf8(change.imageUrl())
+        };
+        int payloadBytes = 1 + 8 + (change.isDelete() ? 0 : 8);
+        for (byte[] string : strings) {
+            payloadBytes += 4 + string.length;
+        }
+        ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER_BYTES + payloadBytes).order(ByteOrder.LITTLE_ENDIAN);
+        record.position(RECORD_HEADER_BYTES);
+        record.put(change.isDelete() ? DELETE : PUT).putLong(change.id());
+        if (!change.isDelete()) {
+            record.putLong(change.priceCents());
+            for (byte[] string : strings) {
+                record.putInt(string.length).put(string);
+            }
+        }
+        CRC32C crc = new CRC32C();
+        crc.update(record.array(), RECORD_HEADER_BYTES, payloadBytes);
+        record.putInt(0, payloadBytes).putInt(4, (int) crc.getValue());
+        return record.array();
+    }
+
+    private static CardChange decode(ByteBuffer payload) {
+        byte kind = payload.get();
+        long id = payload.getLong();
+        if (kind == DELETE) {
+            return CardChange.delete(id);
+        }
+        if (kind != PUT) {
+            throw new IllegalArgumentException("Unknown change kind " + kind);
+        }
+        long priceCents = payload.getLong();
+        return CardChange.put(id, string(payload), string(payload), string(payload), priceCents, string(payload));
+    }
+
+    // Adds the segment's changes. Only the last segment may end in a torn record, which is cut off.
+    private static void readSegment(Path segment, boolean last, List<CardChange> changes) throws IOException {
+        ByteBuffer data = ByteBuffer.wrap(Files.readAllBytes(segment)).order(ByteOrder.LITTLE_ENDIAN);
+        if (data.limit() < HEADER_BYTES || data.getLong(0) != MAGIC) {
+            throw new IOException("Not a change log segment: " + segment);
+        }
+        if (data.getInt(8) != FORMAT_VERSION) {
+            throw new IOException("Unsupported change log version " + data.getInt(8) + ": " + segment);
+        }
+        int position = HEADER_BYTES;
+        while (position < data.limit()) {
+            CardChange change = readRecord(data, position);
+            if (change == null) {
+                break;
+            }
+            changes.add(change);
+            position += RECORD_HEADER_BYTES + data.getInt(position);
+        }
+        if (position < data.limit()) {
+            if (!last) {
+                throw new IOException("Corrupt record at byte " + position + " of " + segment);
+            }
+            log.warn("Cutting off a torn record at byte {} of {}", position, segment);
+            try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+                channel.truncate(position);
+                channel.force(true);
+            }
+        }
+    }
+
+    // The record at the position, or null when it is incomplete or fails its checksum.
+    private static CardChange readRecord(ByteBuffer data, int position) {
+        if (data.limit() - position < RECORD_HEADER_BYTES) {
+            return null;
+        }
+        int length = data.getInt(position);
+        if (length <= 0 || length > data.limit() - position - RECORD_HEADER_BYTES) {
+            return null;
+        }
+        CRC32C crc = new CRC32C();
+        crc.update(data.array(), position + RECORD_HEADER_BYTES, length);
+        if ((int) crc.getValue() != data.getInt(position + 4)) {
+            return null;
+        }
+        try {
+            return decode(data.slice(position + RECORD_HEADER_BYTES, length).order(ByteOrder.LITTLE_ENDIAN));
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+
+    private static FileChannel createSegment(SegmentFiles segmentFiles, Path directory, long generation) throws IOException {
+        FileChannel channel = segmentFiles.create(segmentPath(directory, generation));
+        write(channel, header());
+        channel.force(true);
+        syncDirectory(directory);
+        return channel;
+    }
+
+    // A whole file of changes in segment format, put in place with one rename.
+    private static void writeChanges(Collection<CardChange> changes, Path target) throws IOException {
+        Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp,
+            StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            write(channel, header());
+            for (CardChange change : changes) {
+                write(channel, ByteBuffer.wrap(encode(change)));
+            }
+            channel.force(true);
+        }
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static ByteBuffer header() {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        return header.putLong(MAGIC).putInt(FORMAT_VERSION).putInt(0).flip();
+    }
+
+    private static void write(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    private static void deleteBefore(Path directory, long generation) throws IOException {
+        for (long segment : generations(directory, SEGMENT)) {
+            if (segment < generation) {
+                Files.delete(segmentPath(directory, segment));
+            }
+        }
+        for (long checkpoint : generations(directory, CHECKPOINT)) {
+            if (checkpoint < generation) {
+                Files.delete(checkpointPath(directory, checkpoint));
+            }
+        }
+        for (long written : generations(directory, WRITTEN)) {
+            if (written < generation) {
+                Files.delete(writtenPath(directory, written));
+            }
+        }
+    }
+
+    private static List<Long> generations(Path directory, Pattern pattern) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files
+                .map(file -> pattern.matcher(file.getFileName().toString()))
+                .filter(Matcher::matches)
+                .map(matcher -> Long.parseLong(matcher.group(1)))
+                .sorted()
+                .toList();
+        }
+    }
+
+    // Makes created and renamed files survive a crash. Not every platform can sync a directory.
+    private static void syncDirectory(Path directory) {
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            log.debug("Cannot sync directory {}: {}", directory, e.getMessage());
+        }
+    }
+
+    private static Path segmentPath(Path directory, long generation) {
+        return directory.resolve(String.format("changes-%016d.log", generation));
+    }
+
+    private static Path checkpointPath(Path directory, long generation) {
+        return directory.resolve(String.format("checkpoint-%016d.catalog", generation));
+    }
+
+    private static Path writtenPath(Path directory, long generation) {
+        return directory.resolve(String.format("written-%016d.log", generation));
+    }
+
+    private static byte[] utf8(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String string(ByteBuffer payload) {
+        byte[] bytes = new byte[payload.getInt()];
+        payload.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,44 @@
+package edu.byui.apj.storefront.api.catalog;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Keyset position in one of the stable card orders. A cursor records the sort key of the last card
+ * returned rather than its position, so later pages stay correct when cards are added or removed,
+ * and seeking to it is a binary search however deep the page is.
+ */
+public record CardCursor(CardOrder order, long id, long priceCents, String name) {
+
+    public static CardCursor at(CardOrder order, CardCatalog catalog, int row) {
+        return switch (order) {
+            case ID -> new CardCursor(order, catalog.id(row), 0, "");
+            case PRICE -> new CardCursor(order, catalog.id(row), catalog.priceCents(row), "");
+            case NAME -> new CardCursor(order, catalog.id(row), 0, catalog.name(row));
+            case CATALOG -> throw new IllegalArgumentException("Catalog order has no stable cursor");
+        };
+    }
+
+    public String encode() {
+        String key = order + "|" + id + "|" + priceCents + "|" + name;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(key.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static CardCursor decode(String token) {
+        try {
+            String key = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            String[] parts = key.split("\\|", 4);
+            if (parts.length != 4) {
+                throw new IllegalArgumentException("Malformed cursor");
+            }
+            CardOrder order = CardOrder.valueOf(parts[0]);
+            if (order == CardOrder.CATALOG) {
+                throw new IllegalArgumentException("Malformed cursor");
+            }
+            return new CardCursor(order, Long.parseLong(parts[1]), Long.parseLong(parts[2]), parts[3]);
+        } catch (IllegalArgumentException e) {
+            // Covers bad Base64, unknown orders and unparsable numbers alike.
+            throw new IllegalArgumentException("Invalid cursor: " + token, e);
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package edu.byui.apj.storefront.api.catalog;
+
+public enum CardOrder {
+    CATALOG,
+    ID,
+    PRICE,
+    NAME;
+
+    // Maps the sort parameter of the filter endpoint; an absent sort keeps catalog order.
+    public static CardOrder fromSort(String sort) {
+        return switch (sort) {
+            case "price" -> PRICE;
+            case "name" -> NAME;
+            default -> throw new AssertionError("Invalid sort: " + sort); // Should be caught in controller
+        };
+    }
+}
@@ -0,0 +1,23 @@
+package edu.byui.apj.storefront.api.catalog;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import edu.byui.apj.storefront.api.model.TradingCard;
+
+// Result rows of a catalog query, tied to the snapshot they index into.
+public record CardRows(CatalogSnapshot snapshot, int[] rows) {
+
+    public int size() {
+        return rows.length;
+    }
+
+    public List<TradingCard> toCards() {
+        CardCatalog catalog = snapshot.catalog();
+        List<TradingCard> cards = new ArrayList<>(rows.length);
+        for (int row : rows) {
+            cards.add(catalog.toCard(row));
+        }
+        return cards;
+    }
+}
@@ -0,0 +1,358 @@
+package edu.byui.apj.storefront.api.catalog;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntPredicate;
+
+import org.roaringbitmap.PeekableIntIterator;
+import org.roaringbitmap.RoaringBitmap;
+
+/**
+ * The cards written since the base catalog was indexed, as one catalog version sees them. Written
+ * cards are appended to the catalog and the rows they replace or delete are marked dead, so the
+ * base indexes stay valid for every row they cover: a query runs on the base indexes with the dead
+ * rows left out and on the live appended rows, and merges the two in the requested order.
+ * <p>
+ * Appended rows stay few until a compaction folds them into a new base, so they are kept in plain
+ * arrays sorted in each {@link CardOrder}. Applying a batch of changes drops the replaced rows and
+ * merges in the new ones; nothing is re-sorted and the base indexes are not touched. A delta is
+ * immutable once built, and versions share its append-only arrays as they share the catalog tail.
+ */
+public final class CatalogDelta {
+
+    private static final int[] NO_ROWS = new int[0];
+    private static final String[] NO_TEXT = new String[0];
+    private static final int MIN_TEXT_CAPACITY = 16;
+
+    private final CardCatalog base;
+    private final CardCatalog catalog;
+    private final RoaringBitmap dead;
+    private final int[][] orders;
+    private final String[] cleanNames;
+    private final String[] cleanContributions;
+    private final int nextSequence;
+    private final long maxWrittenId;
+
+    private CatalogDelta(
+        CardCatalog base,
+        CardCatalog catalog,
+        RoaringBitmap dead,
+        int[][] orders,
+        String[] cleanNames,
+        String[] cleanContributions,
+        int nextSequence,
+        long maxWrittenId
+    ) {
+        this.base = base;
+        this.catalog = catalog;
+        this.dead = dead;
+        this.orders = orders;
+        this.cleanNames = cleanNames;
+        this.cleanContributions = cleanContributions;
+        this.nextSequence = nextSequence;
+        this.maxWrittenId = maxWrittenId;
+    }
+
+    public static CatalogDelta empty(CardCatalog catalog) {
+        int[][] orders = new int[CardOrder.values().length][];
+        Arrays.fill(orders, NO_ROWS);
+        return new CatalogDelta(catalog, catalog, new RoaringBitmap(), orders, NO_TEXT, NO_TEXT, catalog.size(),
+            Long.MIN_VALUE);
+    }
+
+    // The catalog the base indexes were built from; every version of it shares its rows.
+    public CardCatalog base() {
+        return base;
+    }
+
+    public CardCatalog catalog() {
+        return catalog;
+    }
+
+    // Largest id put since the base, deleted or not; Long.MIN_VALUE when there was none.
+    public long maxWrittenId() {
+        return maxWrittenId;
+    }
+
+    public boolean isEmpty() {
+        return catalog.size() == base.size() && dead.isEmpty();
+    }
+
+    public boolean hasDeadRows() {
+        return !dead.isEmpty();
+    }
+
+    public boolean isLive(int row) {
+        return !dead.contains(row);
+    }
+
+    public int liveCount() {
+        return catalog.size() - dead.getCardinality();
+    }
+
+    // Rows the next compaction folds in or drops: every appended row and every dead base row.
+    public int pendingRows() {
+        int deadBase = base.size() == 0 ? 0 : (int) dead.rankLong(base.size() - 1);
+        return catalog.size() - base.size() + deadBase;
+    }
+
+    // Live appended rows.
+    public int size() {
+        return orders[CardOrder.CATALOG.ordinal()].length;
+    }
+
+    public int row(CardOrder order, int index) {
+        return orders[order.ordinal()][index];
+    }
+
+    // Base rows replaced or deleted since the base, in row order.
+    public int[] deadBaseRows() {
+        int deadBase = base.size() == 0 ? 0 : (int) dead.rankLong(base.size() - 1);
+        int[] rows = new int[deadBase];
+        PeekableIntIterator iterator = dead.getIntIterator();
+        for (int i = 0; i < deadBase; i++) {
+            rows[i] = iterator.next();
+        }
+        return rows;
+    }
+
+    // The rows without the dead ones; the argument is returned as is when nothing has died.
+    public RoaringBitmap withoutDead(RoaringBitmap rows) {
+        return dead.isEmpty() ? rows : RoaringBitmap.andNot(rows, dead);
+    }
+
+    // The live row of the card with this id, looked up among the appended rows first.
+    public int liveRow(long id, LongIntHashMap baseRowsById) {
+        int[] byId = orders[CardOrder.ID.ordinal()];
+        int low = 0;
+        int high = byId.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (catalog.id(byId[mid]) < id) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        if (low < byId.length && catalog.id(byId[low]) == id) {
+            return byId[low];
+        }
+        int row = baseRowsById.get(id);
+        return row == LongIntHashMap.MISSING || dead.contains(row) ? LongIntHashMap.MISSING : row;
+    }
+
+    // The row itself when live, else the live row that replaced it, else MISSING when its card was deleted.
+    public int current(int row) {
+        if (!dead.contains(row)) {
+            return row;
+        }
+        int[] byCatalog = orders[CardOrder.CATALOG.ordinal()];
+        int sequence = catalog.sequence(row);
+        int low = 0;
+        int high = byCatalog.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (catalog.sequence(byCatalog[mid]) < sequence) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low < byCatalog.length && catalog.sequence(byCatalog[low]) == sequence
+            ? byCatalog[low] : LongIntHashMap.MISSING;
+    }
+
+    // Substring match on an appended row, as TrigramIndex.matches does for base rows.
+    public boolean matches(int row, String cleanQuery) {
+        int index = row - catalog.baseSize();
+        return cleanNames[index].contains(cleanQuery) || cleanContributions[index].contains(cleanQuery);
+    }
+
+    // First index in the cursor's order whose row sorts after the cursor's key.
+    public int positionAfter(CardCursor cursor) {
+        int[] rows = orders[cursor.order().ordinal()];
+        int low = 0;
+        int high = rows.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (SortIndex.compareToCursor(catalog, rows[mid], cursor) <= 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    // Live appended rows from the given index of the order on that pass the filter, stopping after wanted of them.
+    public int[] firstMatches(CardOrder order, int from, IntPredicate filter, int wanted) {
+        int[] rows = orders[order.ordinal()];
+        int[] matches = new int[Math.max(0, Math.min(rows.length - from, wanted))];
+        int count = 0;
+        for (int i = from; i < rows.length && count < matches.length; i++) {
+            if (filter.test(rows[i])) {
+                matches[count++] = rows[i];
+            }
+        }
+        return count == matches.length ? matches : Arrays.copyOf(matches, count);
+    }
+
+    // The first wanted rows of two results that are each sorted in the order.
+    public int[] merge(CardOrder order, int[] baseRows, int[] appendedRows, int wanted) {
+        return merge(catalog, order, baseRows, baseRows.length, appendedRows, wanted);
+    }
+
+    // Live rows at ranks [fromRank, fromRank + count) of catalog order.
+    public int[] catalogRange(int fromRank, int count) {
+        int[] appended = orders[CardOrder.CATALOG.ordinal()];
+        int baseSize = base.size();
+        // An appended row's rank is its index plus the live base rows before its sequence; both grow together.
+        int low = 0;
+        int high = appended.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (mid + liveBaseRowsBefore(catalog.sequence(appended[mid])) < fromRank) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        int next = low;
+        int row = nthLiveBaseRow(fromRank - next);
+
+        int[] rows = new int[Math.max(0, Math.min(count, liveCount() - fromRank))];
+        for (int i = 0; i < rows.length; i++) {
+            if (row < baseSize && (next == appended.length || row < catalog.sequence(appended[next]))) {
+                rows[i] = row;
+                row = nextLiveBaseRow(row + 1);
+            } else {
+                rows[i] = appended[next++];
+            }
+        }
+        return rows;
+    }
+
+    // The live rows in catalog order as a catalog of their own, which a compaction indexes as the next base.
+    public CardCatalog liveCatalog() {
+        int[] rows = catalogRange(0, liveCount());
+        CardCatalog.Builder builder = CardCatalog.builder(rows.length);
+        for (int row : rows) {
+            builder.add(catalog.id(row), catalog.name(row), catalog.specialty(catalog.specialtyCode(row)),
+                catalog.contribution(row), catalog.priceCents(row), catalog.imageUrl(row));
+        }
+        return builder.build();
+    }
+
+    // Applies the changes in order as one new version. Ids are resolved against the live rows, so a put
+    // replaces the card wherever it lives and a delete of an unknown id changes nothing.
+    public CatalogDelta apply(List<CardChange> changes, LongIntHashMap baseRowsById) {
+        CardCatalog.Appender appender = catalog.appender();
+        RoaringBitmap nextDead = dead.clone();
+        String[] names = cleanNames;
+        String[] contributions = cleanContributions;
+        int sequence = nextSequence;
+        long maxId = maxWrittenId;
+        // Rows this batch has written so far, by id; an id it deleted maps to MISSING.
+        Map<Long, Integer> written = new HashMap<>();
+
+        for (CardChange change : changes) {
+            Integer writtenRow = written.get(change.id());
+            int row = writtenRow != null ? writtenRow : liveRow(change.id(), baseRowsById);
+            if (row != LongIntHashMap.MISSING) {
+                nextDead.add(row);
+            }
+            if (change.isDelete()) {
+                written.put(change.id(), LongIntHashMap.MISSING);
+                continue;
+            }
+            int index = appender.size() - catalog.baseSize();
+            if (index == names.length) {
+                int capacity = Math.max(MIN_TEXT_CAPACITY, index + (index >> 1));
+                names = Arrays.copyOf(names, capacity);
+                contributions = Arrays.copyOf(contributions, capacity);
+            }
+            int rowSequence = row == LongIntHashMap.MISSING ? sequence++ : appender.sequence(row);
+            int appendedRow = appender.append(change.id(), change.name(), change.specialty(), change.contribution(),
+                change.priceCents(), change.imageUrl(), rowSequence);
+            names[index] = CardCatalog.clean(change.name());
+            contributions[index] = CardCatalog.clean(change.contribution());
+            written.put(change.id(), appendedRow);
+            maxId = Math.max(maxId, change.id());
+        }
+
+        CardCatalog next = appender.build();
+        int[] added = new int[next.size() - catalog.size()];
+        int addedCount = 0;
+        for (int row = catalog.size(); row < next.size(); row++) {
+            if (!nextDead.contains(row)) {
+                added[addedCount++] = row;
+            }
+        }
+        int[][] nextOrders = new int[orders.length][];
+        for (CardOrder order : CardOrder.values()) {
+            nextOrders[order.ordinal()] = withChanges(next, order, orders[order.ordinal()], nextDead, added, addedCount);
+        }
+        return new CatalogDelta(base, next, nextDead, nextOrders, names, contributions, sequence, maxId);
+    }
+
+    // The live rows of an order after a batch: the survivors keep their order and the new rows are merged in.
+    private static int[] withChanges(
+        CardCatalog catalog, CardOrder order, int[] rows, RoaringBitmap dead, int[] added, int addedCount
+    ) {
+        int[] kept = new int[rows.length];
+        int keptCount = 0;
+        for (int row : rows) {
+            if (!dead.contains(row)) {
+                kept[keptCount++] = row;
+            }
+        }
+        int[] sorted = SortIndex.sortRows(addedCount, (a, b) -> SortIndex.compare(catalog, order, added[a], added[b]));
+        for (int i = 0; i < sorted.length; i++) {
+            sorted[i] = added[sorted[i]];
+        }
+        return merge(catalog, order, kept, keptCount, sorted, Integer.MAX_VALUE);
+    }
+
+    private static int[] merge(CardCatalog catalog, CardOrder order, int[] a, int aLength, int[] b, int wanted) {
+        int[] rows = new int[(int) Math.min((long) aLength + b.length, wanted)];
+        int i = 0;
+        int j = 0;
+        for (int n = 0; n < rows.length; n++) {
+            rows[n] = j >= b.length || (i < aLength && SortIndex.compare(catalog, order, a[i], b[j]) <= 0)
+                ? a[i++] : b[j++];
+        }
+        return rows;
+    }
+
+    private int liveBaseRowsBefore(int row) {
+        int end = Math.min(row, base.size());
+        return end == 0 ? 0 : end - (int) dead.rankLong(end - 1);
+    }
+
+    // The base row with n live base rows before it, or the base size when there are not that many.
+    private int nthLiveBaseRow(int n) {
+        if (dead.isEmpty()) {
+            return Math.min(n, base.size());
+        }
+        int low = n;
+        int high = base.size();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (liveBaseRowsBefore(mid + 1) <= n) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private int nextLiveBaseRow(int row) {
+        while (row < base.size() && dead.contains(row)) {
+            row++;
+        }
+        return row;
+    }
+}
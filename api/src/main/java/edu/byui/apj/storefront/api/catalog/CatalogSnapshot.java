@@ -0,0 +1,134 @@
+package edu.byui.apj.storefront.api.catalog;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * One immutable version of the catalog together with the indexes derived from it. Requests read a
+ * single snapshot for their whole lifetime, so a reload can publish a new one without locking.
+ * <p>
+ * The version hash mixes the catalog content with the load number and time, so it changes on
+ * every load, including across restarts, and ETags derived from it never outlive the snapshot.
+ * <p>
+ * A write publishes a version that shares the indexes of the one before and differs only in its
+ * {@link CatalogDelta}; the indexes cover the base rows, and the delta the rows written since.
+ */
+public record CatalogSnapshot(
+    long version,
+    Instant loadedAt,
+    long versionHash,
+    CardCatalog catalog,
+    LongIntHashMap rowsById,
+    TrigramIndex searchIndex,
+    FuzzyIndex fuzzyIndex,
+    Bm25Index relevanceIndex,
+    SortIndex sortIndex,
+    FilterBitmaps filterBitmaps,
+    SuggestIndex suggestIndex,
+    CatalogDelta delta
+) {
+
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    // The indexes only read the catalog, so they are built side by side on the common pool; the slowest one
+    // bounds the build rather than their sum.
+    public static CatalogSnapshot build(long version, CardCatalog catalog) {
+        Instant loadedAt = Instant.now();
+        CompletableFuture<Long> contentHash = CompletableFuture.supplyAsync(() -> contentHash(catalog));
+        CompletableFuture<LongIntHashMap> rowsById = CompletableFuture.supplyAsync(() -> rowsById(catalog));
+        CompletableFuture<TrigramIndex> searchIndex = CompletableFuture.supplyAsync(() -> new TrigramIndex(catalog));
+        CompletableFuture<FuzzyIndex> fuzzyIndex = CompletableFuture.supplyAsync(() -> new FuzzyIndex(catalog));
+        CompletableFuture<Bm25Index> relevanceIndex = CompletableFuture.supplyAsync(() -> new Bm25Index(catalog));
+        CompletableFuture<SuggestIndex> suggestIndex = CompletableFuture.supplyAsync(() -> new SuggestIndex(catalog));
+        CompletableFuture<SortIndex> sortIndex = CompletableFuture.supplyAsync(() -> new SortIndex(catalog));
+        CompletableFuture<FilterBitmaps> filterBitmaps =
+            sortIndex.thenApplyAsync(sorted -> new FilterBitmaps(catalog, sorted));
+
+        long hash = mix(join(contentHash) ^ version);
+        hash = mix(hash ^ loadedAt.getEpochSecond());
+        hash = mix(hash ^ loadedAt.getNano());
+        return new CatalogSnapshot(version, loadedAt, hash, catalog, join(rowsById), join(searchIndex),
+            join(fuzzyIndex), join(relevanceIndex), join(sortIndex), join(filterBitmaps), join(suggestIndex),
+            CatalogDelta.empty(catalog));
+    }
+
+    // The next version after the changes. Its hash follows from this one's, so writes cost nothing per base row.
+    public CatalogSnapshot apply(long nextVersion, List<CardChange> changes) {
+        CatalogDelta next = delta.apply(changes, rowsById);
+        return new CatalogSnapshot(nextVersion, Instant.now(), mix(versionHash ^ mix(nextVersion)), next.catalog(),
+            rowsById, searchIndex, fuzzyIndex, relevanceIndex, sortIndex, filterBitmaps, suggestIndex, next);
+    }
+
+    // Row of the live card with this id, or LongIntHashMap.MISSING.
+    public int rowOf(long id) {
+        return delta.liveRow(id, rowsById);
+    }
+
+    // Largest id among the base rows and the cards written since, so a new card never takes a deleted
+    // card's id before the next compaction.
+    public long maxId() {
+        int size = sortIndex.size();
+        long baseMax = size == 0 ? 0 : catalog.id(sortIndex.row(CardOrder.ID, size - 1));
+        return Math.max(baseMax, delta.maxWrittenId());
+    }
+
+    public int liveCount() {
+        return delta.liveCount();
+    }
+
+    // Strong ETag for a response computed from this snapshot; requestKey must identify the response body.
+    public String etag(String requestKey) {
+        long keyHash = FNV_OFFSET;
+        for (int i = 0; i < requestKey.length(); i++) {
+            keyHash = (keyHash ^ requestKey.charAt(i)) * FNV_PRIME;
+        }
+        return "\"" + Long.toHexString(versionHash) + "-" + Long.toHexString(mix(keyHash)) + "\"";
+    }
+
+    // Row of each card id; if an id repeats, its first row wins.
+    // A failed index build fails the snapshot with its own exception.
+    private static <T> T join(CompletableFuture<T> part) {
+        try {
+            return part.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            if (e.getCause() instanceof Error cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    private static LongIntHashMap rowsById(CardCatalog catalog) {
+        LongIntHashMap rowsById = new LongIntHashMap(catalog.size());
+        for (int row = 0; row < catalog.size(); row++) {
+            rowsById.putIfAbsent(catalog.id(row), row);
+        }
+        return rowsById;
+    }
+
+    private static long contentHash(CardCatalog catalog) {
+        long hash = FNV_OFFSET;
+        for (int row = 0; row < catalog.size(); row++) {
+            hash = (hash ^ catalog.id(row)) * FNV_PRIME;
+            hash = (hash ^ catalog.priceCents(row)) * FNV_PRIME;
+            hash = (hash ^ catalog.specialty(catalog.specialtyCode(row)).hashCode()) * FNV_PRIME;
+            hash = (hash ^ catalog.name(row).hashCode()) * FNV_PRIME;
+            hash = (hash ^ catalog.contribution(row).hashCode()) * FNV_PRIME;
+            hash = (hash ^ catalog.imageUrl(row).hashCode()) * FNV_PRIME;
+        }
+        return hash;
+    }
+
+    // Finalizer from SplitMix64, so that nearby inputs give unrelated hashes.
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -0,0 +1,215 @@
+package edu.byui.apj.storefront.api.catalog;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Binary catalog snapshot: fixed-width columns followed by a UTF-8 string heap, all little-endian
+ * and 8-byte aligned.
+ * <pre>
+ * header   magic (8) | format version (4) | rows (4) | specialties (4) | padding (4)
+ * columns  ids long[rows] | price cents long[rows] | specialty codes int[rows], padded to 8
+ * strings  heap offsets int[specialties + 3 * rows + 1], padded to 8 | heap bytes
+ * </pre>
+ * The string table holds the specialty dictionary and then name, contribution and image URL for
+ * each row. Reading maps the file and uses the fixed-width columns and the string table in place,
+ * as the catalog's {@link TextHeap}, so several JVMs that open the same snapshot share its pages in
+ * the OS page cache. Only the specialties and the distinct image URLs are decoded on open.
+ */
+@Slf4j
+public final class CatalogSnapshotFile {
+
+    private static final long MAGIC = 0x3130_5441_434A_5041L; // "APJCAT01" read little-endian
+    private static final int FORMAT_VERSION = 1;
+    private static final int HEADER_BYTES = 24;
+
+    private CatalogSnapshotFile() {
+    }
+
+    // Writes to a temporary file and moves it into place, so a JVM that has the old file mapped never sees it change.
+    public static void write(CardCatalog catalog, Path target) throws IOException {
+        int rows = catalog.size();
+        int specialties = catalog.specialtyCount();
+
+        byte[][] strings = new byte[specialties + 3 * rows][];
+        int index = 0;
+        for (int code = 0; code < specialties; code++) {
+            strings[index++] = utf8(catalog.specialty(code));
+        }
+        for (int row = 0; row < rows; row++) {
+            strings[index++] = utf8(catalog.name(row));
+            strings[index++] = utf8(catalog.contribution(row));
+            strings[index++] = utf8(catalog.imageUrl(row));
+        }
+        long heapBytes = 0;
+        for (byte[] string : strings) {
+            heapBytes += string.length;
+        }
+
+        Layout layout = new Layout(rows, specialties);
+        long fileBytes = layout.heapStart() + heapBytes;
+        if (fileBytes > Integer.MAX_VALUE) {
+            throw new IOException("Catalog snapshot would be larger than 2 GB");
+        }
+
+        ByteBuffer out = ByteBuffer.allocate((int) fileBytes).order(ByteOrder.LITTLE_ENDIAN);
+        out.putLong(MAGIC).putInt(FORMAT_VERSION).putInt(rows).putInt(specialties).putInt(0);
+        for (int row = 0; row < rows; row++) {
+            out.putLong((int) (layout.ids() + 8L * row), catalog.id(row));
+            out.putLong((int) (layout.prices() + 8L * row), catalog.priceCents(row));
+            out.putInt((int) (layout.specialtyCodes() + 4L * row), catalog.specialtyCode(row));
+        }
+        int offset = 0;
+        for (int i = 0; i < strings.length; i++) {
+            out.putInt((int) (layout.offsets() + 4L * i), offset);
+            out.put((int) (layout.heapStart() + offset), strings[i]);
+            offset += strings[i].length;
+        }
+        out.putInt((int) (layout.offsets() + 4L * strings.length), offset);
+
+        Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp,
+            StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            out.clear();
+            while (out.hasRemaining()) {
+                channel.write(out);
+            }
+            channel.force(true);
+        }
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    public static CardCatalog read(Path file) throws IOException {
+        long started = System.nanoTime();
+        MappedByteBuffer mapped;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Catalog snapshot is larger than 2 GB: " + file);
+            }
+            // The mapping stays valid after the channel is closed.
+            mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        ByteBuffer data = mapped.order(ByteOrder.LITTLE_ENDIAN);
+
+        if (data.limit() < HEADER_BYTES || data.getLong(0) != MAGIC) {
+            throw new IOException("Not a catalog snapshot: " + file);
+        }
+        if (data.getInt(8) != FORMAT_VERSION) {
+            throw new IOException("Unsupported catalog snapshot version " + data.getInt(8) + ": " + file);
+        }
+        int rows = data.getInt(12);
+        int specialties = data.getInt(16);
+        if (rows < 0 || specialties < 0) {
+            throw new IOException("Corrupt catalog snapshot header: " + file);
+        }
+        Layout layout = new Layout(rows, specialties);
+        if (layout.heapStart() > data.limit()) {
+            throw new IOException("Truncated catalog snapshot: " + file);
+        }
+        int entries = specialties + 3 * rows;
+        validate(data, layout, entries, file);
+
+        TextHeap table = new TextHeap(
+            slice(data, layout.offsets(), 4L * (entries + 1)).asIntBuffer(),
+            slice(data, layout.heapStart(), data.limit() - layout.heapStart()));
+        String[] specialtyDictionary = new String[specialties];
+        for (int code = 0; code < specialties; code++) {
+            specialtyDictionary[code] = table.get(code);
+        }
+        int[] imageUrlCodes = new int[rows];
+        Map<String, Integer> imageUrlCodesByValue = new HashMap<>();
+        List<String> imageUrls = new ArrayList<>();
+        for (int row = 0; row < rows; row++) {
+            String imageUrl = table.get(specialties + 3 * row + 2);
+            Integer code = imageUrlCodesByValue.putIfAbsent(imageUrl, imageUrls.size());
+            if (code == null) {
+                code = imageUrls.size();
+                imageUrls.add(imageUrl);
+            }
+            imageUrlCodes[row] = code;
+        }
+
+        CardCatalog catalog = new CardCatalog(
+            rows,
+            slice(data, layout.ids(), 8L * rows).asLongBuffer(),
+            slice(data, layout.prices(), 8L * rows).asLongBuffer(),
+            slice(data, layout.specialtyCodes(), 4L * rows).asIntBuffer(),
+            specialtyDictionary,
+            table,
+            specialties,
+            3,
+            IntBuffer.wrap(imageUrlCodes),
+            imageUrls.toArray(new String[0]));
+        log.info("Opened catalog snapshot {} with {} cards in {} ms",
+            file, rows, (System.nanoTime() - started) / 1_000_000);
+        return catalog;
+    }
+
+    // Columns and text are read lazily, so anything that would fail on some later request is caught here.
+    private static void validate(ByteBuffer data, Layout layout, int entries, Path file) throws IOException {
+        int heapBytes = (int) (data.limit() - layout.heapStart());
+        int previous = 0;
+        for (int i = 0; i <= entries; i++) {
+            int offset = data.getInt((int) (layout.offsets() + 4L * i));
+            if (offset < previous || offset > heapBytes) {
+                throw new IOException("Corrupt catalog snapshot string offsets: " + file);
+            }
+            previous = offset;
+        }
+        for (int row = 0; row < layout.rows(); row++) {
+            int code = data.getInt((int) (layout.specialtyCodes() + 4L * row));
+            if (code < 0 || code >= layout.specialties()) {
+                throw new IOException("Corrupt catalog snapshot specialty code at row " + row + ": " + file);
+            }
+        }
+    }
+
+    private static ByteBuffer slice(ByteBuffer data, long offset, long length) {
+        return data.slice((int) offset, (int) length).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    private static byte[] utf8(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static long align(long position) {
+        return (position + 7) & ~7L;
+    }
+
+    private record Layout(int rows, int specialties) {
+        long ids() {
+            return HEADER_BYTES;
+        }
+
+        long prices() {
+            return ids() + 8L * rows;
+        }
+
+        long specialtyCodes() {
+            return prices() + 8L * rows;
+        }
+
+        long offsets() {
+            return align(specialtyCodes() + 4L * rows);
+        }
+
+        long heapStart() {
+            return align(offsets() + 4L * (specialties + 3L * rows + 1));
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package edu.byui.apj.storefront.api.catalog;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * Offline converter from a catalog CSV to a binary {@link CatalogSnapshotFile}. It runs from the
+ * repackaged Boot jar, which carries the dependencies; the plain api jar does not.
+ * <pre>
+ * java -cp target/api-0.0.1-SNAPSHOT-exec.jar -Dloader.main=edu.byui.apj.storefront.api.catalog.CatalogSnapshotTool \
+ *     org.springframework.boot.loader.launch.PropertiesLauncher pioneers.csv pioneers.catalog
+ * </pre>
+ */
+public final class CatalogSnapshotTool {
+
+    private CatalogSnapshotTool() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.err.println("Usage: CatalogSnapshotTool <catalog.csv> <snapshot file>");
+            System.exit(2);
+        }
+        Path csv = Path.of(args[0]);
+        Path snapshot = Path.of(args[1]);
+
+        CsvCatalogLoader.Result result = new CsvCatalogLoader().load(csv);
+        CatalogSnapshotFile.write(result.catalog(), snapshot);
+        System.out.printf("Wrote %d cards to %s (%d rows rejected)%n",
+            result.catalog().size(), snapshot, result.rejectedRows());
+    }
+}
@@ -0,0 +1,232 @@
+package edu.byui.apj.storefront.api.catalog;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVParser;
+import org.apache.commons.csv.CSVRecord;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Loads a catalog CSV by splitting it into chunks on record boundaries and parsing the chunks in
+ * parallel. Files are memory-mapped, so the loader never copies the whole file onto the heap.
+ * <p>
+ * Record boundaries are found without a sequential scan: every segment counts its quote
+ * characters in parallel, a prefix sum of those counts tells each segment whether it starts
+ * inside a quoted field, and each segment then finds its first newline outside quotes. The parsed
+ * chunks are joined by copying their columns and text as they are.
+ */
+@Slf4j
+public class CsvCatalogLoader {
+
+    private static final int DEFAULT_MIN_CHUNK_BYTES = 1 << 20;
+    private static final int MAX_LOGGED_REJECTS = 10;
+    private static final CSVFormat FORMAT = CSVFormat.DEFAULT;
+
+    private final ForkJoinPool pool;
+    private final int minChunkBytes;
+
+    public CsvCatalogLoader() {
+        this(ForkJoinPool.commonPool(), DEFAULT_MIN_CHUNK_BYTES);
+    }
+
+    public CsvCatalogLoader(ForkJoinPool pool, int minChunkBytes) {
+        this.pool = pool;
+        this.minChunkBytes = minChunkBytes;
+    }
+
+    public record Result(CardCatalog catalog, int rejectedRows, long elapsedNanos) {
+        public long rowsPerSecond() {
+            return elapsedNanos == 0 ? 0 : catalog.size() * 1_000_000_000L / elapsedNanos;
+        }
+    }
+
+    public Result load(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Catalog file is larger than 2 GB: " + file);
+            }
+            MappedByteBuffer data = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return load(data, file.toString());
+        }
+    }
+
+    public Result load(ByteBuffer data, String source) throws IOException {
+        long started = System.nanoTime();
+
+        int headerEnd = nextRecordStart(data, 0, false);
+        Columns columns = Columns.fromHeader(decode(data, 0, headerEnd));
+
+        int[] boundaries = chunkBoundaries(data, headerEnd);
+        List<Callable<ChunkResult>> tasks = new ArrayList<>();
+        AtomicInteger loggedRejects = new AtomicInteger();
+        for (int i = 0; i + 1 < boundaries.length; i++) {
+            int start = boundaries[i];
+            int end = boundaries[i + 1];
+            tasks.add(() -> parseChunk(data, start, end, columns, loggedRejects));
+        }
+
+        List<CardCatalog.Builder> parts = new ArrayList<>(tasks.size());
+        int rejected = 0;
+        for (ChunkResult chunk : invokeAll(tasks)) {
+            parts.add(chunk.builder());
+            rejected += chunk.rejected();
+        }
+
+        Result result = new Result(CardCatalog.Builder.concat(parts), rejected, System.nanoTime() - started);
+        log.info("Loaded {} cards from {} in {} ms ({} rows/s, {} chunks, {} rejected)",
+            result.catalog().size(), source, result.elapsedNanos() / 1_000_000, result.rowsPerSecond(),
+            tasks.size(), rejected);
+        return result;
+    }
+
+    private int[] chunkBoundaries(ByteBuffer data, int bodyStart) throws IOException {
+        int length = data.limit() - bodyStart;
+        int chunkBytes = Math.max(minChunkBytes, length / (pool.getParallelism() * 4));
+        int segments = Math.max(1, (int) Math.ceil((double) length / chunkBytes));
+
+        List<Callable<Integer>> quoteCounts = new ArrayList<>();
+        for (int i = 0; i < segments; i++) {
+            int start = bodyStart + (int) ((long) i * length / segments);
+            int end = bodyStart + (int) ((long) (i + 1) * length / segments);
+            quoteCounts.add(() -> countQuotes(data, start, end));
+        }
+        List<Integer> counts = invokeAll(quoteCounts);
+
+        List<Callable<Integer>> starts = new ArrayList<>();
+        boolean inQuotes = false;
+        for (int i = 1; i < segments; i++) {
+            inQuotes ^= (counts.get(i - 1) & 1) == 1;
+            int segmentStart = bodyStart + (int) ((long) i * length / segments);
+            boolean startsQuoted = inQuotes;
+            starts.add(() -> nextRecordStart(data, segmentStart, startsQuoted));
+        }
+
+        int[] boundaries = new int[segments + 1];
+        boundaries[0] = bodyStart;
+        List<Integer> recordStarts = invokeAll(starts);
+        for (int i = 0; i < recordStarts.size(); i++) {
+            // A record longer than a segment can push a boundary past the next one; that chunk is then empty.
+            boundaries[i + 1] = Math.max(recordStarts.get(i), boundaries[i]);
+        }
+        boundaries[segments] = data.limit();
+        return boundaries;
+    }
+
+    private static int countQuotes(ByteBuffer data, int start, int end) {
+        int count = 0;
+        for (int i = start; i < end; i++) {
+            if (data.get(i) == '"') {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    // Position just after the first newline at or after start that is not inside a quoted field.
+    private static int nextRecordStart(ByteBuffer data, int start, boolean inQuotes) {
+        for (int i = start; i < data.limit(); i++) {
+            byte b = data.get(i);
+            if (b == '"') {
+                inQuotes = !inQuotes;
+            } else if (b == '\n' && !inQuotes) {
+                return i + 1;
+            }
+        }
+        return data.limit();
+    }
+
+    private static ChunkResult parseChunk(
+        ByteBuffer data, int start, int end, Columns columns, AtomicInteger loggedRejects
+    ) throws IOException {
+        CardCatalog.Builder builder = CardCatalog.builder((end - start) / 128);
+        int rejected = 0;
+        try (CSVParser parser = FORMAT.parse(new StringReader(decode(data, start, end)))) {
+            for (CSVRecord record : parser) {
+                try {
+                    builder.add(
+                        Long.parseLong(record.get(columns.id())),
+                        record.get(columns.name()),
+                        record.get(columns.specialty()),
+                        record.get(columns.contribution()),
+                        new BigDecimal(record.get(columns.price())),
+                        record.get(columns.imageUrl()));
+                } catch (RuntimeException e) {
+                    rejected++;
+                    if (loggedRejects.incrementAndGet() <= MAX_LOGGED_REJECTS) {
+                        log.warn("Rejected catalog row {}: {}", record.values(), e.toString());
+                    }
+                }
+            }
+        }
+        return new ChunkResult(builder, rejected);
+    }
+
+    private static String decode(ByteBuffer data, int start, int end) {
+        return StandardCharsets.UTF_8.decode(data.slice(start, end - start)).toString();
+    }
+
+    private <T> List<T> invokeAll(List<Callable<T>> tasks) throws IOException {
+        List<T> results = new ArrayList<>(tasks.size());
+        try {
+            for (Future<T> future : pool.invokeAll(tasks)) {
+                results.add(future.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while loading the catalog", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException io) {
+                throw io;
+            }
+            if (e.getCause() instanceof UncheckedIOException io) {
+                throw io.getCause();
+            }
+            throw new IOException("Failed to load the catalog", e.getCause());
+        }
+        return results;
+    }
+
+    private record ChunkResult(CardCatalog.Builder builder, int rejected) {
+    }
+
+    private record Columns(int id, int name, int specialty, int contribution, int price, int imageUrl) {
+
+        static Columns fromHeader(String headerLine) throws IOException {
+            try (CSVParser parser = FORMAT.builder().setHeader().build().parse(new StringReader(headerLine))) {
+                return new Columns(
+                    column(parser, "ID"),
+                    column(parser, "Name"),
+                    column(parser, "Specialty"),
+                    column(parser, "Contribution"),
+                    column(parser, "Price"),
+                    column(parser, "ImageUrl"));
+            }
+        }
+
+        private static int column(CSVParser parser, String name) throws IOException {
+            Integer index = parser.getHeaderMap().get(name);
+            if (index == null) {
+                throw new IOException("Catalog CSV is missing the " + name + " column");
+            }
+            return index;
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package edu.byui.apj.storefront.api.catalog;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.roaringbitmap.FastAggregation;
+import org.roaringbitmap.RoaringBitmap;
+import org.roaringbitmap.RoaringBitmapWriter;
+
+/**
+ * Compressed row bitmaps for the filter fields. Each specialty code has the bitmap of its rows,
+ * and the price order is cut into {@link #PRICE_BUCKETS} buckets of equal row count, each with the
+ * bitmap of its rows. A filter becomes an OR over the matching specialties and the covered price
+ * buckets, plus the few rows at the range edges, and an AND of the two.
+ * <p>
+ * Rows come out of a bitmap in catalog order, and the bitmaps are Roaring bitmaps, so the set
+ * operations work a 64-bit word or a sorted 16-bit array at a time.
+ */
+public final class FilterBitmaps {
+
+    static final int PRICE_BUCKETS = 256;
+
+    private final int size;
+    private final SortIndex sortIndex;
+    private final RoaringBitmap[] specialtyRows;
+    private final RoaringBitmap[] priceBucketRows;
+    private final int bucketWidth;
+
+    public FilterBitmaps(CardCatalog catalog, SortIndex sortIndex) {
+        this.size = catalog.size();
+        this.sortIndex = sortIndex;
+
+        List<RoaringBitmapWriter<RoaringBitmap>> writers = new ArrayList<>();
+        for (int code = 0; code < catalog.specialtyCount(); code++) {
+            writers.add(RoaringBitmapWriter.writer().runCompress(true).get());
+        }
+        for (int row = 0; row < size; row++) {
+            writers.get(catalog.specialtyCode(row)).add(row);
+        }
+        specialtyRows = writers.stream().map(RoaringBitmapWriter::get).toArray(RoaringBitmap[]::new);
+
+        bucketWidth = Math.max(1, (size + PRICE_BUCKETS - 1) / PRICE_BUCKETS);
+        int buckets = (size + bucketWidth - 1) / bucketWidth;
+        priceBucketRows = new RoaringBitmap[buckets];
+        for (int bucket = 0; bucket < buckets; bucket++) {
+            int start = bucket * bucketWidth;
+            int[] rows = new int[Math.min(bucketWidth, size - start)];
+            for (int i = 0; i < rows.length; i++) {
+                rows[i] = sortIndex.row(CardOrder.PRICE, start + i);
+            }
+            Arrays.sort(rows);
+            priceBucketRows[bucket] = RoaringBitmap.bitmapOf(rows);
+            priceBucketRows[bucket].runOptimize();
+        }
+    }
+
+    // Rows passing both filters, or null when neither filter excludes any row.
+    public RoaringBitmap rows(int priceStart, int priceEnd, boolean[] specialtyMatches) {
+        RoaringBitmap bySpecialty = specialtyMatches == null ? null : specialtyRows(specialtyMatches);
+        if (priceStart <= 0 && priceEnd >= size) {
+            return bySpecialty;
+        }
+        RoaringBitmap byPrice = priceRows(priceStart, priceEnd);
+        return bySpecialty == null ? byPrice : RoaringBitmap.and(bySpecialty, byPrice);
+    }
+
+    // Number of rows whose specialty code is marked in matches, without building their bitmap.
+    // Specialties added to the dictionary after these bitmaps were built have no base rows.
+    public long specialtyCardinality(boolean[] matches) {
+        long rows = 0;
+        for (int code = 0; code < Math.min(matches.length, specialtyRows.length); code++) {
+            if (matches[code]) {
+                rows += specialtyRows[code].getLongCardinality();
+            }
+        }
+        return rows;
+    }
+
+    // Rows per price bucket; a price range that does not start and end on a bucket boundary sorts up to two buckets.
+    public int bucketWidth() {
+        return bucketWidth;
+    }
+
+    // Rows whose specialty code is marked in matches, as resolved against the specialty dictionary.
+    public RoaringBitmap specialtyRows(boolean[] matches) {
+        List<RoaringBitmap> matching = new ArrayList<>();
+        for (int code = 0; code < Math.min(matches.length, specialtyRows.length); code++) {
+            if (matches[code]) {
+                matching.add(specialtyRows[code]);
+            }
+        }
+        return FastAggregation.or(matching.iterator());
+    }
+
+    // Rows at price positions [priceStart, priceEnd): whole buckets are ORed and the partial ones at the edges added row by row.
+    public RoaringBitmap priceRows(int priceStart, int priceEnd) {
+        if (priceStart >= priceEnd) {
+            return new RoaringBitmap();
+        }
+        int firstFull = (priceStart + bucketWidth - 1) / bucketWidth;
+        int endFull = priceEnd / bucketWidth;
+        if (firstFull >= endFull) {
+            return edgeRows(priceStart, priceEnd);
+        }
+        RoaringBitmap rows = FastAggregation.or(Arrays.copyOfRange(priceBucketRows, firstFull, endFull));
+        rows.or(edgeRows(priceStart, firstFull * bucketWidth));
+        rows.or(edgeRows(endFull * bucketWidth, priceEnd));
+        return rows;
+    }
+
+    private RoaringBitmap edgeRows(int from, int to) {
+        if (from >= to) {
+            return new RoaringBitmap();
+        }
+        int[] rows = new int[to - from];
+        for (int i = 0; i < rows.length; i++) {
+            rows[i] = sortIndex.row(CardOrder.PRICE, from + i);
+        }
+        Arrays.sort(rows);
+        return RoaringBitmap.bitmapOf(rows);
+    }
+}
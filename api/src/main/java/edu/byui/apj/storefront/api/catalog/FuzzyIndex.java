@@ -0,0 +1,328 @@
+package edu.byui.apj.storefront.api.catalog;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.IntPredicate;
+
+/**
+ * Typo-tolerant search over the words of card names and contributions. Query words are matched
+ * against the word dictionary rather than the rows: words sharing the most trigrams with a query
+ * word are the candidates, and a bounded Levenshtein distance decides which of them match.
+ * <p>
+ * Every stage has a fixed budget (posting entries read, candidate words verified, rows examined),
+ * so a query costs about the same on a catalog of a hundred cards as on one of millions. Results
+ * are ordered by total edit distance and then catalog order.
+ * <p>
+ * Rows appended to the catalog since the index was built are not indexed; a search can be given
+ * them to match word by word against their text and merge in.
+ */
+public final class FuzzyIndex {
+
+    static final int POSTING_BUDGET = 1 << 16;
+    static final int MAX_CANDIDATE_TERMS = 256;
+    static final int MAX_ROWS = 10_000;
+
+    private static final int[] NO_ROWS = new int[0];
+
+    private final String[] terms;
+    private final int[][] termRows;
+    private final int[][] rowTerms;
+    private final Map<Long, int[]> gramTerms;
+
+    public FuzzyIndex(CardCatalog catalog) {
+        int size = catalog.size();
+        Map<String, Integer> termIds = new HashMap<>();
+        List<String> termList = new ArrayList<>();
+        List<IntList> rowsOfTerm = new ArrayList<>();
+        rowTerms = new int[size][];
+
+        for (int row = 0; row < size; row++) {
+            IntList ids = new IntList();
+            for (String text : new String[] {catalog.name(row), catalog.contribution(row)}) {
+                for (String word : CardCatalog.words(CardCatalog.clean(text))) {
+                    Integer id = termIds.get(word);
+                    if (id == null) {
+                        id = termList.size();
+                        termIds.put(word, id);
+                        termList.add(word);
+                        rowsOfTerm.add(new IntList());
+                    }
+                    ids.add(id);
+                }
+            }
+            rowTerms[row] = ids.toSortedDistinctArray();
+            for (int id : rowTerms[row]) {
+                rowsOfTerm.get(id).add(row);
+            }
+        }
+
+        terms = termList.toArray(new String[0]);
+        termRows = new int[terms.length][];
+        Map<Long, IntList> grams = new HashMap<>();
+        for (int id = 0; id < terms.length; id++) {
+            termRows[id] = rowsOfTerm.get(id).toArray();
+            for (long gram : grams(terms[id])) {
+                grams.computeIfAbsent(gram, key -> new IntList()).add(id);
+            }
+        }
+        gramTerms = new HashMap<>(grams.size() * 4 / 3 + 1);
+        grams.forEach((gram, ids) -> gramTerms.put(gram, ids.toArray()));
+    }
+
+    // Allowed edits for a query word: none for very short words, where one edit changes the meaning.
+    public static int maxEdits(int length) {
+        return length <= 2 ? 0 : length <= 5 ? 1 : 2;
+    }
+
+    // Rows containing a close match for every word of the cleaned query, best matches first.
+    public int[] search(String cleanQuery, int limit) {
+        return search(cleanQuery, limit, row -> true);
+    }
+
+    // As search(cleanQuery, limit), over the rows that pass the filter only.
+    public int[] search(String cleanQuery, int limit, IntPredicate filter) {
+        return search(cleanQuery, limit, filter, null, NO_ROWS);
+    }
+
+    // As search(cleanQuery, limit, filter), with the given appended rows of the catalog matched on their text.
+    // They take their place among the indexed rows by their catalog sequence.
+    public int[] search(String cleanQuery, int limit, IntPredicate filter, CardCatalog catalog, int[] appendedRows) {
+        String[] tokens = Arrays.stream(CardCatalog.words(cleanQuery)).distinct().toArray(String[]::new);
+        if (tokens.length == 0 || limit == 0) {
+            return NO_ROWS;
+        }
+
+        // Each entry is (score, sequence, row); an indexed row is its own sequence.
+        List<long[]> scored = new ArrayList<>();
+        for (int row : appendedRows) {
+            int score = scoreText(tokens, catalog.name(row), catalog.contribution(row));
+            if (score >= 0) {
+                scored.add(new long[] {score, catalog.sequence(row), row});
+            }
+        }
+        scoreIndexed(tokens, filter, scored);
+
+        scored.sort((a, b) -> a[0] != b[0] ? Long.compare(a[0], b[0]) : Long.compare(a[1], b[1]));
+        int count = Math.min(scored.size(), limit);
+        int[] rows = new int[count];
+        for (int i = 0; i < count; i++) {
+            rows[i] = (int) scored.get(i)[2];
+        }
+        return rows;
+    }
+
+    private void scoreIndexed(String[] tokens, IntPredicate filter, List<long[]> scored) {
+        List<Map<Integer, Integer>> matches = new ArrayList<>(tokens.length);
+        for (String token : tokens) {
+            Map<Integer, Integer> distances = matchTerms(token);
+            if (distances.isEmpty()) {
+                return;
+            }
+            matches.add(distances);
+        }
+
+        // Rows are enumerated from the word with the fewest rows; the other words are checked per row.
+        Map<Integer, Integer> driver = matches.getFirst();
+        long driverRows = Long.MAX_VALUE;
+        for (Map<Integer, Integer> distances : matches) {
+            long rows = distances.keySet().stream().mapToLong(id -> termRows[id].length).sum();
+            if (rows < driverRows) {
+                driverRows = rows;
+                driver = distances;
+            }
+        }
+        Map<Integer, Integer> driverDistances = driver;
+        Integer[] driverTerms = driver.keySet().toArray(new Integer[0]);
+        Arrays.sort(driverTerms, (a, b) -> {
+            int byDistance = Integer.compare(driverDistances.get(a), driverDistances.get(b));
+            return byDistance != 0 ? byDistance : Integer.compare(a, b);
+        });
+
+        Set<Integer> seen = new HashSet<>();
+        examine:
+        for (int term : driverTerms) {
+            for (int row : termRows[term]) {
+                if (!seen.add(row) || !filter.test(row)) {
+                    continue;
+                }
+                int score = scoreRow(row, matches);
+                if (score >= 0) {
+                    scored.add(new long[] {score, row, row});
+                }
+                if (seen.size() >= MAX_ROWS) {
+                    break examine;
+                }
+            }
+        }
+    }
+
+    // As scoreRow, against the words of text that is not indexed.
+    private static int scoreText(String[] tokens, String name, String contribution) {
+        String[] nameWords = CardCatalog.words(CardCatalog.clean(name));
+        String[] contributionWords = CardCatalog.words(CardCatalog.clean(contribution));
+        int score = 0;
+        for (String token : tokens) {
+            int maxEdits = maxEdits(token.length());
+            int best = maxEdits + 1;
+            for (String[] words : new String[][] {nameWords, contributionWords}) {
+                for (String word : words) {
+                    best = Math.min(best, boundedLevenshtein(token, word, maxEdits));
+                }
+            }
+            if (best > maxEdits) {
+                return -1;
+            }
+            score += best;
+        }
+        return score;
+    }
+
+    // Sum over the query words of the closest matching word in the row, or -1 if a word has no match.
+    private int scoreRow(int row, List<Map<Integer, Integer>> matches) {
+        int score = 0;
+        for (Map<Integer, Integer> distances : matches) {
+            int best = Integer.MAX_VALUE;
+            for (int term : rowTerms[row]) {
+                Integer distance = distances.get(term);
+                if (distance != null && distance < best) {
+                    best = distance;
+                }
+            }
+            if (best == Integer.MAX_VALUE) {
+                return -1;
+            }
+            score += best;
+        }
+        return score;
+    }
+
+    // Dictionary words within maxEdits of the token, with their distances.
+    private Map<Integer, Integer> matchTerms(String token) {
+        long[] queryGrams = grams(token);
+        int[][] lists = new int[queryGrams.length][];
+        int present = 0;
+        for (long gram : queryGrams) {
+            int[] ids = gramTerms.get(gram);
+            if (ids != null) {
+                lists[present++] = ids;
+            }
+        }
+        lists = Arrays.copyOf(lists, present);
+        Arrays.sort(lists, (a, b) -> Integer.compare(a.length, b.length));
+
+        // Rarest trigrams first, until the posting budget is spent.
+        IntList postings = new IntList();
+        for (int[] ids : lists) {
+            if (postings.size() > 0 && postings.size() + ids.length > POSTING_BUDGET) {
+                break;
+            }
+            postings.addAll(ids, Math.min(ids.length, POSTING_BUDGET));
+        }
+        int[] all = postings.toArray();
+        Arrays.sort(all);
+
+        // Count shared trigrams per word and keep the words sharing the most.
+        IntList candidates = new IntList();
+        IntList overlaps = new IntList();
+        for (int i = 0; i < all.length; ) {
+            int j = i;
+            while (j < all.length && all[j] == all[i]) {
+                j++;
+            }
+            candidates.add(all[i]);
+            overlaps.add(j - i);
+            i = j;
+        }
+        int[] order = SortIndex.sortRows(candidates.size(), (a, b) -> Integer.compare(overlaps.get(b), overlaps.get(a)));
+
+        int maxEdits = maxEdits(token.length());
+        Map<Integer, Integer> distances = new HashMap<>();
+        for (int i = 0; i < order.length && i < MAX_CANDIDATE_TERMS; i++) {
+            int term = candidates.get(order[i]);
+            int distance = boundedLevenshtein(token, terms[term], maxEdits);
+            if (distance <= maxEdits) {
+                distances.put(term, distance);
+            }
+        }
+        return distances;
+    }
+
+    // Edit distance between a and b, or maxEdits + 1 as soon as it is known to exceed maxEdits.
+    static int boundedLevenshtein(String a, String b, int maxEdits) {
+        if (Math.abs(a.length() - b.length()) > maxEdits) {
+            return maxEdits + 1;
+        }
+        int[] previous = new int[b.length() + 1];
+        int[] current = new int[b.length() + 1];
+        for (int j = 0; j <= b.length(); j++) {
+            previous[j] = j;
+        }
+        for (int i = 1; i <= a.length(); i++) {
+            current[0] = i;
+            int rowMin = current[0];
+            for (int j = 1; j <= b.length(); j++) {
+                int substitution = previous[j - 1] + (a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1);
+                current[j] = Math.min(substitution, Math.min(previous[j], current[j - 1]) + 1);
+                rowMin = Math.min(rowMin, current[j]);
+            }
+            if (rowMin > maxEdits) {
+                return maxEdits + 1;
+            }
+            int[] swap = previous;
+            previous = current;
+            current = swap;
+        }
+        return Math.min(previous[b.length()], maxEdits + 1);
+    }
+
+    // Trigrams of the word padded with boundary markers, so that words of one or two letters have some.
+    private static long[] grams(String word) {
+        String padded = "^" + word + "$";
+        long[] grams = new long[padded.length() - 2];
+        for (int i = 0; i < grams.length; i++) {
+            grams[i] = TrigramIndex.trigram(padded, i);
+        }
+        return Arrays.stream(grams).distinct().toArray();
+    }
+
+    private static final class IntList {
+        private int[] values = new int[4];
+        private int size;
+
+        void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        void addAll(int[] source, int length) {
+            if (size + length > values.length) {
+                values = Arrays.copyOf(values, Math.max(size + length, size * 2));
+            }
+            System.arraycopy(source, 0, values, size, length);
+            size += length;
+        }
+
+        int get(int index) {
+            return values[index];
+        }
+
+        int size() {
+            return size;
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(values, size);
+        }
+
+        int[] toSortedDistinctArray() {
+            return Arrays.stream(values, 0, size).sorted().distinct().toArray();
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package edu.byui.apj.storefront.api.catalog;
+
+import java.util.Arrays;
+
+/**
+ * Map from long keys to non-negative int values in two flat arrays with linear probing, so a
+ * lookup is a hash and usually one or two array reads, with no boxing. The table is kept at most
+ * half full. Only insertion is supported: the index it backs is rebuilt with each snapshot. An index
+ * whose key count is only known as it is built copies the map into a larger one once it is full.
+ */
+public final class LongIntHashMap {
+
+    public static final int MISSING = -1;
+
+    private final long[] keys;
+    private final int[] values;
+    private final int mask;
+    private int size;
+
+    public LongIntHashMap(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(expectedSize, 2) * 2 - 1) << 1;
+        keys = new long[capacity];
+        values = new int[capacity];
+        Arrays.fill(values, MISSING);
+        mask = capacity - 1;
+    }
+
+    // Returns false, leaving the map unchanged, when the key is already present.
+    public boolean putIfAbsent(long key, int value) {
+        if (value < 0) {
+            throw new IllegalArgumentException("Values must not be negative: " + value);
+        }
+        if (isFull()) {
+            throw new IllegalStateException("LongIntHashMap is full");
+        }
+        int slot = slot(key);
+        while (values[slot] != MISSING) {
+            if (keys[slot] == key) {
+                return false;
+            }
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = key;
+        values[slot] = value;
+        size++;
+        return true;
+    }
+
+    public int get(long key) {
+        int slot = slot(key);
+        while (values[slot] != MISSING) {
+            if (keys[slot] == key) {
+                return values[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+        return MISSING;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isFull() {
+        return size + 1 > (mask + 1) / 2;
+    }
+
+    // A copy with room for expectedSize keys.
+    public LongIntHashMap withCapacity(int expectedSize) {
+        LongIntHashMap copy = new LongIntHashMap(Math.max(expectedSize, size));
+        for (int slot = 0; slot < keys.length; slot++) {
+            if (values[slot] != MISSING) {
+                copy.putIfAbsent(keys[slot], values[slot]);
+            }
+        }
+        return copy;
+    }
+
+    // Finalizer from MurmurHash3, so that sequential ids spread over the whole table.
+    private int slot(long key) {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        key *= 0xc4ceb9fe1a85ec53L;
+        key ^= key >>> 33;
+        return (int) key & mask;
+    }
+}
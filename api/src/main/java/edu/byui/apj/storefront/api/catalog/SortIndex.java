@@ -0,0 +1,176 @@
+package edu.byui.apj.storefront.api.catalog;
+
+/**
+ * Precomputed sort orders over the catalog rows. Rows are ordered by id, by price and by name, with
+ * ties broken by id, so sorted results are a walk over a permutation instead of a sort.
+ */
+public final class SortIndex {
+
+    private final CardCatalog catalog;
+    private final int[] idOrder;
+    private final int[] idPositions;
+    private final int[] priceOrder;
+    private final int[] pricePositions;
+    private final long[] sortedPrices;
+    private final int[] nameOrder;
+    private final int[] namePositions;
+
+    public SortIndex(CardCatalog catalog) {
+        this.catalog = catalog;
+        int size = catalog.size();
+
+        idOrder = sortRows(size, (a, b) -> compare(catalog, CardOrder.ID, a, b));
+        idPositions = inverse(idOrder);
+        priceOrder = sortRows(size, (a, b) -> compare(catalog, CardOrder.PRICE, a, b));
+        pricePositions = inverse(priceOrder);
+        sortedPrices = new long[size];
+        for (int i = 0; i < size; i++) {
+            sortedPrices[i] = catalog.priceCents(priceOrder[i]);
+        }
+
+        // Names are decoded once for the sort instead of twice per comparison.
+        String[] names = new String[size];
+        for (int row = 0; row < size; row++) {
+            names[row] = catalog.name(row);
+        }
+        nameOrder = sortRows(size, (a, b) -> {
+            int byName = names[a].compareTo(names[b]);
+            return byName != 0 ? byName : compare(catalog, CardOrder.ID, a, b);
+        });
+        namePositions = inverse(nameOrder);
+    }
+
+    public int size() {
+        return priceOrder.length;
+    }
+
+    public int row(CardOrder order, int position) {
+        return switch (order) {
+            case CATALOG -> position;
+            case ID -> idOrder[position];
+            case PRICE -> priceOrder[position];
+            case NAME -> nameOrder[position];
+        };
+    }
+
+    // Inverse of row(): where a row sits in the order, so comparing positions compares sort keys.
+    public int position(CardOrder order, int row) {
+        return switch (order) {
+            case CATALOG -> row;
+            case ID -> idPositions[row];
+            case PRICE -> pricePositions[row];
+            case NAME -> namePositions[row];
+        };
+    }
+
+    // First position in price order whose price is at least minCents.
+    public int priceLowerBound(long minCents) {
+        int low = 0;
+        int high = sortedPrices.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (sortedPrices[mid] < minCents) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    // First position in price order whose price is greater than maxCents.
+    public int priceUpperBound(long maxCents) {
+        int low = 0;
+        int high = sortedPrices.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (sortedPrices[mid] <= maxCents) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    // First position in the cursor's order that sorts after the cursor's key.
+    public int positionAfter(CardCursor cursor) {
+        int low = 0;
+        int high = size();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (compareToCursor(catalog, row(cursor.order(), mid), cursor) <= 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    // The order's sort key, then id, then catalog order; the precomputed orders are sorted this way.
+    public static int compare(CardCatalog catalog, CardOrder order, int a, int b) {
+        int byKey = switch (order) {
+            case CATALOG, ID -> 0;
+            case PRICE -> Long.compare(catalog.priceCents(a), catalog.priceCents(b));
+            case NAME -> catalog.name(a).compareTo(catalog.name(b));
+        };
+        if (byKey == 0 && order != CardOrder.CATALOG) {
+            byKey = Long.compare(catalog.id(a), catalog.id(b));
+        }
+        return byKey != 0 ? byKey : Integer.compare(catalog.sequence(a), catalog.sequence(b));
+    }
+
+    public static int compareToCursor(CardCatalog catalog, int row, CardCursor cursor) {
+        int byKey = switch (cursor.order()) {
+            case PRICE -> Long.compare(catalog.priceCents(row), cursor.priceCents());
+            case NAME -> catalog.name(row).compareTo(cursor.name());
+            default -> 0;
+        };
+        return byKey != 0 ? byKey : Long.compare(catalog.id(row), cursor.id());
+    }
+
+    private static int[] inverse(int[] order) {
+        int[] positions = new int[order.length];
+        for (int i = 0; i < order.length; i++) {
+            positions[order[i]] = i;
+        }
+        return positions;
+    }
+
+    @FunctionalInterface
+    public interface RowComparator {
+        int compare(int a, int b);
+    }
+
+    // Stable merge sort of the row numbers 0..size-1, without boxing them.
+    public static int[] sortRows(int size, RowComparator comparator) {
+        int[] rows = new int[size];
+        for (int i = 0; i < size; i++) {
+            rows[i] = i;
+        }
+        int[] buffer = new int[size];
+        for (int width = 1; width < size; width *= 2) {
+            for (int start = 0; start < size; start += 2 * width) {
+                int mid = Math.min(start + width, size);
+                int end = Math.min(start + 2 * width, size);
+                int i = start;
+                int j = mid;
+                int k = start;
+                while (i < mid && j < end) {
+                    buffer[k++] = comparator.compare(rows[j], rows[i]) < 0 ? rows[j++] : rows[i++];
+                }
+                while (i < mid) {
+                    buffer[k++] = rows[i++];
+                }
+                while (j < end) {
+                    buffer[k++] = rows[j++];
+                }
+            }
+            int[] swap = rows;
+            rows = buffer;
+            buffer = swap;
+        }
+        return rows;
+    }
+}
@@ -0,0 +1,286 @@
+package edu.byui.apj.storefront.api.catalog;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+/**
+ * Prefix suggestions over card names and specialties. Every word start of every suggestion is a
+ * key, so "love" finds "Ada Lovelace". Keys are kept as (suggestion, offset) pairs in sorted order,
+ * a flattened trie in which the keys under a prefix form one contiguous range found by two binary
+ * searches; no key string is ever materialized.
+ * <p>
+ * A segment tree over the key weights answers "heaviest key in a range", so the top k of a range
+ * come out of a small priority queue in O(k log n) however many keys share the prefix.
+ * <p>
+ * Cards written since the index was built change the weights by card name and specialty; a
+ * suggestion can be given those changes, which it applies to the indexed weights it finds.
+ */
+public final class SuggestIndex {
+
+    public enum Kind { CARD, SPECIALTY }
+
+    public record Suggestion(String text, Kind kind, int weight) {
+    }
+
+    private final String[] texts;
+    private final String[] cleanTexts;
+    private final Kind[] kinds;
+    private final int[] weights;
+    private final int[] keySuggestions;
+    private final int[] keyOffsets;
+    private final int[] tree;
+    private final int leaves;
+
+    // Card names weigh the number of cards with that name; specialties the number of cards in them.
+    public SuggestIndex(CardCatalog catalog) {
+        Map<String, int[]> names = new LinkedHashMap<>();
+        for (int row = 0; row < catalog.size(); row++) {
+            names.computeIfAbsent(catalog.name(row), name -> new int[1])[0]++;
+        }
+        int[] specialtyCounts = new int[catalog.specialtyCount()];
+        for (int row = 0; row < catalog.size(); row++) {
+            specialtyCounts[catalog.specialtyCode(row)]++;
+        }
+
+        int count = names.size() + specialtyCounts.length;
+        texts = new String[count];
+        kinds = new Kind[count];
+        weights = new int[count];
+        int index = 0;
+        for (Map.Entry<String, int[]> name : names.entrySet()) {
+            texts[index] = name.getKey();
+            kinds[index] = Kind.CARD;
+            weights[index++] = name.getValue()[0];
+        }
+        for (int code = 0; code < specialtyCounts.length; code++) {
+            texts[index] = catalog.specialty(code);
+            kinds[index] = Kind.SPECIALTY;
+            weights[index++] = specialtyCounts[code];
+        }
+
+        // A key is a suggestion and the offset of a word start in its cleaned text, packed in a long.
+        cleanTexts = new String[count];
+        long[] keys = new long[count];
+        int keyCount = 0;
+        for (int suggestion = 0; suggestion < count; suggestion++) {
+            String clean = CardCatalog.clean(texts[suggestion]);
+            cleanTexts[suggestion] = clean;
+            for (int offset = 0; offset < clean.length(); offset++) {
+                if (isWordStart(clean, offset)) {
+                    if (keyCount == keys.length) {
+                        keys = Arrays.copyOf(keys, keyCount * 2);
+                    }
+                    keys[keyCount++] = (long) suggestion << 32 | offset;
+                }
+            }
+        }
+        long[] packed = keys;
+        int[] order = SortIndex.sortRows(keyCount, (a, b) -> compareKeys(packed[a], packed[b]));
+        keySuggestions = new int[keyCount];
+        keyOffsets = new int[keyCount];
+        for (int i = 0; i < keyCount; i++) {
+            keySuggestions[i] = (int) (packed[order[i]] >>> 32);
+            keyOffsets[i] = (int) packed[order[i]];
+        }
+
+        leaves = Math.max(1, Integer.highestOneBit(Math.max(keySuggestions.length, 1) * 2 - 1));
+        tree = new int[2 * leaves];
+        for (int i = 0; i < leaves; i++) {
+            tree[leaves + i] = i < keySuggestions.length ? i : -1;
+        }
+        for (int node = leaves - 1; node > 0; node--) {
+            tree[node] = heavier(tree[2 * node], tree[2 * node + 1]);
+        }
+    }
+
+    // The heaviest suggestions with a word starting with the cleaned prefix; ties go alphabetically.
+    public List<Suggestion> suggest(String cleanPrefix, int limit) {
+        int start = bound(cleanPrefix, false);
+        int end = bound(cleanPrefix, true);
+        List<Suggestion> suggestions = new ArrayList<>();
+        if (start >= end || limit <= 0) {
+            return suggestions;
+        }
+
+        // Each queued range carries its heaviest key; taking a key splits its range around it.
+        PriorityQueue<int[]> ranges = new PriorityQueue<>((a, b) -> compareWeight(a[2], b[2]));
+        ranges.add(new int[] {start, end, heaviest(start, end)});
+        Set<Integer> taken = new HashSet<>();
+        while (!ranges.isEmpty() && suggestions.size() < limit) {
+            int[] range = ranges.poll();
+            int key = range[2];
+            // A suggestion with two words under the prefix has two keys in the range.
+            if (taken.add(keySuggestions[key])) {
+                int suggestion = keySuggestions[key];
+                suggestions.add(new Suggestion(texts[suggestion], kinds[suggestion], weights[suggestion]));
+            }
+            if (range[0] < key) {
+                ranges.add(new int[] {range[0], key, heaviest(range[0], key)});
+            }
+            if (key + 1 < range[1]) {
+                ranges.add(new int[] {key + 1, range[1], heaviest(key + 1, range[1])});
+            }
+        }
+        return suggestions;
+    }
+
+    // As suggest(cleanPrefix, limit), with the weights of the given names and specialties changed by the given
+    // counts. A changed text the index lacks is added, and one whose weight drops to zero is left out.
+    public List<Suggestion> suggest(String cleanPrefix, int limit, Map<String, Integer> nameChanges,
+                                    Map<String, Integer> specialtyChanges) {
+        if (nameChanges.isEmpty() && specialtyChanges.isEmpty()) {
+            return suggest(cleanPrefix, limit);
+        }
+        List<Suggestion> changed = new ArrayList<>();
+        Set<Suggestion> changedTexts = new HashSet<>();
+        for (Kind kind : Kind.values()) {
+            for (Map.Entry<String, Integer> change : (kind == Kind.CARD ? nameChanges : specialtyChanges).entrySet()) {
+                String text = change.getKey();
+                if (!hasWordStart(CardCatalog.clean(text), cleanPrefix)) {
+                    continue;
+                }
+                changedTexts.add(new Suggestion(text, kind, 0));
+                int weight = weight(text, kind) + change.getValue();
+                if (weight > 0) {
+                    changed.add(new Suggestion(text, kind, weight));
+                }
+            }
+        }
+
+        // Only changed suggestions can fall below unchanged ones, so this many indexed ones always suffice.
+        List<Suggestion> merged = new ArrayList<>(changed);
+        for (Suggestion suggestion : suggest(cleanPrefix, limit + changedTexts.size())) {
+            if (!changedTexts.contains(new Suggestion(suggestion.text(), suggestion.kind(), 0))) {
+                merged.add(suggestion);
+            }
+        }
+        merged.sort(Comparator.comparingInt(Suggestion::weight).reversed().thenComparing(Suggestion::text));
+        return merged.subList(0, Math.min(limit, merged.size()));
+    }
+
+    // Indexed weight of the suggestion, found by the key of its first word; 0 when the index lacks it.
+    private int weight(String text, Kind kind) {
+        String clean = CardCatalog.clean(text);
+        int first = nextWordStart(clean, 0);
+        if (first == clean.length()) {
+            return 0;
+        }
+        String rest = clean.substring(first);
+        int end = bound(rest, true);
+        for (int key = bound(rest, false); key < end; key++) {
+            int suggestion = keySuggestions[key];
+            if (keyOffsets[key] == first && kinds[suggestion] == kind && texts[suggestion].equals(text)) {
+                return weights[suggestion];
+            }
+        }
+        return 0;
+    }
+
+    private static boolean hasWordStart(String cleanText, String cleanPrefix) {
+        for (int offset = nextWordStart(cleanText, 0); offset < cleanText.length();
+             offset = nextWordStart(cleanText, offset + 1)) {
+            if (cleanText.startsWith(cleanPrefix, offset)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // First offset from the given one that starts a word, or the length of the text.
+    private static int nextWordStart(String cleanText, int from) {
+        for (int offset = from; offset < cleanText.length(); offset++) {
+            if (isWordStart(cleanText, offset)) {
+                return offset;
+            }
+        }
+        return cleanText.length();
+    }
+
+    private static boolean isWordStart(String cleanText, int offset) {
+        return Character.isLetterOrDigit(cleanText.charAt(offset))
+            && (offset == 0 || !Character.isLetterOrDigit(cleanText.charAt(offset - 1)));
+    }
+
+    // Heaviest key in [from, to).
+    private int heaviest(int from, int to) {
+        int best = -1;
+        for (int low = from + leaves, high = to + leaves; low < high; low >>>= 1, high >>>= 1) {
+            if ((low & 1) == 1) {
+                best = heavier(best, tree[low++]);
+            }
+            if ((high & 1) == 1) {
+                best = heavier(best, tree[--high]);
+            }
+        }
+        return best;
+    }
+
+    private int heavier(int a, int b) {
+        if (a < 0) {
+            return b;
+        }
+        if (b < 0) {
+            return a;
+        }
+        return compareWeight(a, b) <= 0 ? a : b;
+    }
+
+    // Negative when key a should be suggested before key b.
+    private int compareWeight(int a, int b) {
+        int byWeight = Integer.compare(weights[keySuggestions[b]], weights[keySuggestions[a]]);
+        if (byWeight != 0) {
+            return byWeight;
+        }
+        int byText = texts[keySuggestions[a]].compareTo(texts[keySuggestions[b]]);
+        return byText != 0 ? byText : Integer.compare(a, b);
+    }
+
+    // First key whose first prefix.length() characters compare at least (or, when strict, more) than the prefix.
+    private int bound(String prefix, boolean strict) {
+        int low = 0;
+        int high = keySuggestions.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            int compared = comparePrefix(cleanTexts[keySuggestions[mid]], keyOffsets[mid], prefix);
+            if (compared < 0 || (strict && compared == 0)) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private static int comparePrefix(String text, int offset, String prefix) {
+        int length = Math.min(text.length() - offset, prefix.length());
+        for (int i = 0; i < length; i++) {
+            int compared = Character.compare(text.charAt(offset + i), prefix.charAt(i));
+            if (compared != 0) {
+                return compared;
+            }
+        }
+        return text.length() - offset < prefix.length() ? -1 : 0;
+    }
+
+    private int compareKeys(long a, long b) {
+        String textA = cleanTexts[(int) (a >>> 32)];
+        String textB = cleanTexts[(int) (b >>> 32)];
+        int offsetA = (int) a;
+        int offsetB = (int) b;
+        int length = Math.min(textA.length() - offsetA, textB.length() - offsetB);
+        for (int i = 0; i < length; i++) {
+            int compared = Character.compare(textA.charAt(offsetA + i), textB.charAt(offsetB + i));
+            if (compared != 0) {
+                return compared;
+            }
+        }
+        return Integer.compare(textA.length() - offsetA, textB.length() - offsetB);
+    }
+}
@@ -0,0 +1,182 @@
+package edu.byui.apj.storefront.api.catalog;
+
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Strings packed as UTF-8 into one byte buffer, with an offset table: entry i spans bytes
+ * [offset(i), offset(i + 1)). A heap of a million card texts is two buffers instead of a million
+ * String objects, and ASCII text takes one byte per character. Entries are decoded only when read,
+ * and substring tests run on the bytes without decoding: UTF-8 is self-synchronizing, so the
+ * encoded needle only matches at character boundaries.
+ * <p>
+ * Like the fixed-width catalog columns, both buffers can be heap arrays or views of a mapped
+ * {@link CatalogSnapshotFile}, whose string table has this layout.
+ */
+public final class TextHeap {
+
+    private final IntBuffer offsets;
+    private final ByteBuffer bytes;
+
+    TextHeap(IntBuffer offsets, ByteBuffer bytes) {
+        this.offsets = offsets;
+        this.bytes = bytes;
+    }
+
+    public static Builder builder(int expectedEntries) {
+        return new Builder(expectedEntries);
+    }
+
+    public static byte[] utf8(String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+
+    // The entries of every builder in order, as one heap: the bytes are copied and the offsets shifted.
+    public static TextHeap concat(List<Builder> parts) {
+        long bytes = 0;
+        int entries = 0;
+        for (Builder part : parts) {
+            bytes += part.offsets[part.size];
+            entries += part.size;
+        }
+        if (bytes > Integer.MAX_VALUE - 8) {
+            throw new IllegalStateException("Text heap would be larger than 2 GB");
+        }
+        int[] offsets = new int[entries + 1];
+        byte[] text = new byte[(int) bytes];
+        int entry = 0;
+        int end = 0;
+        for (Builder part : parts) {
+            for (int i = 1; i <= part.size; i++) {
+                offsets[entry + i] = end + part.offsets[i];
+            }
+            int length = part.offsets[part.size];
+            System.arraycopy(part.bytes, 0, text, end, length);
+            entry += part.size;
+            end += length;
+        }
+        return new TextHeap(IntBuffer.wrap(offsets), ByteBuffer.wrap(text));
+    }
+
+    public int size() {
+        return offsets.limit() - 1;
+    }
+
+    public String get(int entry) {
+        int start = offsets.get(entry);
+        int length = offsets.get(entry + 1) - start;
+        if (bytes.hasArray()) {
+            return new String(bytes.array(), bytes.arrayOffset() + start, length, StandardCharsets.UTF_8);
+        }
+        byte[] copy = new byte[length];
+        bytes.get(start, copy);
+        return new String(copy, StandardCharsets.UTF_8);
+    }
+
+    // Whether the entry contains the UTF-8 needle.
+    public boolean contains(int entry, byte[] needle) {
+        int start = offsets.get(entry);
+        int last = offsets.get(entry + 1) - needle.length;
+        if (needle.length == 0) {
+            return last >= start;
+        }
+        byte first = needle[0];
+        for (int i = start; i <= last; i++) {
+            if (bytes.get(i) != first) {
+                continue;
+            }
+            int j = 1;
+            while (j < needle.length && bytes.get(i + j) == needle[j]) {
+                j++;
+            }
+            if (j == needle.length) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Whether the entry, cleaned as CardCatalog.clean does, contains the cleaned UTF-8 needle. ASCII letters are
+    // folded byte by byte; only an entry with other characters and no match that way is decoded and lowercased.
+    public boolean containsIgnoreCase(int entry, byte[] cleanNeedle) {
+        int start = offsets.get(entry);
+        int end = offsets.get(entry + 1);
+        int last = end - cleanNeedle.length;
+        if (cleanNeedle.length == 0) {
+            return last >= start;
+        }
+        byte first = cleanNeedle[0];
+        boolean ascii = true;
+        for (int i = start; i < end; i++) {
+            byte b = bytes.get(i);
+            ascii &= b >= 0;
+            if (i > last) {
+                if (!ascii) {
+                    break;
+                }
+                continue;
+            }
+            if (lowerAscii(b) != first) {
+                continue;
+            }
+            int j = 1;
+            while (j < cleanNeedle.length && lowerAscii(bytes.get(i + j)) == cleanNeedle[j]) {
+                j++;
+            }
+            if (j == cleanNeedle.length) {
+                return true;
+            }
+        }
+        return !ascii && CardCatalog.clean(get(entry)).contains(new String(cleanNeedle, StandardCharsets.UTF_8));
+    }
+
+    private static byte lowerAscii(byte b) {
+        return b >= 'A' && b <= 'Z' ? (byte) (b + ('a' - 'A')) : b;
+    }
+
+    public static final class Builder {
+        private int[] offsets;
+        private byte[] bytes;
+        private int size;
+
+        private Builder(int expectedEntries) {
+            offsets = new int[Math.max(expectedEntries, 16) + 1];
+            bytes = new byte[Math.max(expectedEntries, 16) * 16];
+        }
+
+        // Returns the entry.
+        public int add(String text) {
+            byte[] encoded = utf8(text);
+            int end = offsets[size];
+            if ((long) end + encoded.length > Integer.MAX_VALUE - 8) {
+                throw new IllegalStateException("Text heap would be larger than 2 GB");
+            }
+            if (end + encoded.length > bytes.length) {
+                bytes = Arrays.copyOf(bytes, (int) Math.min(Integer.MAX_VALUE - 8,
+                    Math.max((long) end + encoded.length, bytes.length + ((long) bytes.length >> 1))));
+            }
+            if (size + 1 == offsets.length) {
+                offsets = Arrays.copyOf(offsets, offsets.length + (offsets.length >> 1));
+            }
+            System.arraycopy(encoded, 0, bytes, end, encoded.length);
+            offsets[size + 1] = end + encoded.length;
+            return size++;
+        }
+
+        public String get(int entry) {
+            return new String(bytes, offsets[entry], offsets[entry + 1] - offsets[entry], StandardCharsets.UTF_8);
+        }
+
+        public int size() {
+            return size;
+        }
+
+        public TextHeap build() {
+            return new TextHeap(IntBuffer.wrap(Arrays.copyOf(offsets, size + 1)),
+                ByteBuffer.wrap(Arrays.copyOf(bytes, offsets[size])));
+        }
+    }
+}
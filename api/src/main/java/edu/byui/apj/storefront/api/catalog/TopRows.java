@@ -0,0 +1,82 @@
+package edu.byui.apj.storefront.api.catalog;
+
+import java.util.Arrays;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * Keeps the k rows with the smallest keys seen so far in a binary max-heap, so selecting the first
+ * k of m rows costs O(m log k) and O(k) memory instead of a full sort. Keys must be distinct, as
+ * {@link SortIndex#position} is.
+ */
+public final class TopRows {
+
+    private final int k;
+    private final IntUnaryOperator key;
+    private final int[] heap;
+    private int size;
+
+    public TopRows(int k, IntUnaryOperator key) {
+        this.k = k;
+        this.key = key;
+        this.heap = new int[k];
+    }
+
+    public void offer(int row) {
+        if (size < k) {
+            heap[size] = row;
+            siftUp(size++);
+        } else if (k > 0 && key.applyAsInt(row) < key.applyAsInt(heap[0])) {
+            heap[0] = row;
+            siftDown(0);
+        }
+    }
+
+    // The kept rows in ascending key order.
+    public int[] toSortedArray() {
+        int[] rows = Arrays.copyOf(heap, size);
+        int[] keys = new int[size];
+        for (int i = 0; i < size; i++) {
+            keys[i] = key.applyAsInt(rows[i]);
+        }
+        int[] order = SortIndex.sortRows(size, (a, b) -> Integer.compare(keys[a], keys[b]));
+        int[] sorted = new int[size];
+        for (int i = 0; i < size; i++) {
+            sorted[i] = rows[order[i]];
+        }
+        return sorted;
+    }
+
+    private void siftUp(int index) {
+        int row = heap[index];
+        int rowKey = key.applyAsInt(row);
+        while (index > 0) {
+            int parent = (index - 1) >>> 1;
+            if (key.applyAsInt(heap[parent]) >= rowKey) {
+                break;
+            }
+            heap[index] = heap[parent];
+            index = parent;
+        }
+        heap[index] = row;
+    }
+
+    private void siftDown(int index) {
+        int row = heap[index];
+        int rowKey = key.applyAsInt(row);
+        while (true) {
+            int child = 2 * index + 1;
+            if (child >= size) {
+                break;
+            }
+            if (child + 1 < size && key.applyAsInt(heap[child + 1]) > key.applyAsInt(heap[child])) {
+                child++;
+            }
+            if (key.applyAsInt(heap[child]) <= rowKey) {
+                break;
+            }
+            heap[index] = heap[child];
+            index = child;
+        }
+        heap[index] = row;
+    }
+}
@@ -0,0 +1,188 @@
+package edu.byui.apj.storefront.api.catalog;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Inverted index from character trigrams to the catalog rows whose cleaned name or contribution
+ * contains them. Substring queries intersect the posting lists of the query's trigrams and then
+ * verify the few surviving candidates against the catalog's own {@link TextHeap}, comparing
+ * without case and without decoding, so the index keeps no copy of the text.
+ */
+public final class TrigramIndex {
+
+    private static final int[] NO_ROWS = new int[0];
+
+    private final int size;
+    private final CardCatalog catalog;
+    // Posting list of each trigram, found through its index in postings; trigrams are packed into longs unboxed.
+    private final LongIntHashMap trigramIds;
+    private final int[][] postings;
+
+    public TrigramIndex(CardCatalog catalog) {
+        this.size = catalog.size();
+        this.catalog = catalog;
+
+        PostingsBuilder builder = new PostingsBuilder();
+        for (int row = 0; row < size; row++) {
+            builder.addTrigrams(CardCatalog.clean(catalog.name(row)), row);
+            builder.addTrigrams(CardCatalog.clean(catalog.contribution(row)), row);
+        }
+
+        this.trigramIds = builder.ids;
+        this.postings = new int[builder.lists.size()][];
+        for (int i = 0; i < postings.length; i++) {
+            postings[i] = builder.lists.get(i).toArray();
+        }
+    }
+
+    // Returns the matching rows in catalog order. The query must already be cleaned.
+    public int[] search(String cleanQuery) {
+        return search(cleanQuery, Integer.MAX_VALUE);
+    }
+
+    // Returns the first limit matching rows in catalog order; verification stops once they are found.
+    public int[] search(String cleanQuery, int limit) {
+        return limit == 0 ? NO_ROWS : verify(candidates(cleanQuery), cleanQuery, limit);
+    }
+
+    // Rows that contain every trigram of the cleaned query, in catalog order, still to be verified with
+    // matches. Null means every row: queries shorter than a trigram cannot be narrowed down.
+    public int[] candidates(String cleanQuery) {
+        if (cleanQuery.length() < 3) {
+            return null;
+        }
+
+        long[] trigrams = trigrams(cleanQuery);
+        int[][] lists = new int[trigrams.length][];
+        for (int i = 0; i < trigrams.length; i++) {
+            lists[i] = postings(trigrams[i]);
+            if (lists[i] == null) {
+                return NO_ROWS;
+            }
+        }
+        // Start from the rarest trigram so every intersection step shrinks the smallest list.
+        Arrays.sort(lists, Comparator.comparingInt(list -> list.length));
+
+        int[] candidates = lists[0];
+        for (int i = 1; i < lists.length && candidates.length > 0; i++) {
+            candidates = intersect(candidates, lists[i]);
+        }
+        return candidates;
+    }
+
+    // Upper bound on the candidates for the cleaned query: the length of its rarest trigram's posting list.
+    public int estimateCandidates(String cleanQuery) {
+        if (cleanQuery.length() < 3) {
+            return size;
+        }
+        int estimate = size;
+        for (long trigram : trigrams(cleanQuery)) {
+            int[] rows = postings(trigram);
+            estimate = Math.min(estimate, rows == null ? 0 : rows.length);
+        }
+        return estimate;
+    }
+
+    public boolean matches(int row, String cleanQuery) {
+        return matches(row, TextHeap.utf8(cleanQuery));
+    }
+
+    // For scans that test many rows: the query is encoded once, with TextHeap.utf8.
+    public boolean matches(int row, byte[] cleanQuery) {
+        return catalog.textContains(row, cleanQuery);
+    }
+
+    private int[] postings(long trigram) {
+        int id = trigramIds.get(trigram);
+        return id == LongIntHashMap.MISSING ? null : postings[id];
+    }
+
+    private int[] verify(int[] candidates, String cleanQuery, int limit) {
+        byte[] needle = TextHeap.utf8(cleanQuery);
+        int count = candidates == null ? size : candidates.length;
+        int[] rows = new int[Math.min(count, limit)];
+        int matched = 0;
+        for (int i = 0; i < count && matched < limit; i++) {
+            int row = candidates == null ? i : candidates[i];
+            if (matches(row, needle)) {
+                rows[matched++] = row;
+            }
+        }
+        return matched == rows.length ? rows : Arrays.copyOf(rows, matched);
+    }
+
+    private static int[] intersect(int[] a, int[] b) {
+        int[] out = new int[Math.min(a.length, b.length)];
+        int i = 0;
+        int j = 0;
+        int n = 0;
+        while (i < a.length && j < b.length) {
+            if (a[i] < b[j]) {
+                i++;
+            } else if (a[i] > b[j]) {
+                j++;
+            } else {
+                out[n++] = a[i];
+                i++;
+                j++;
+            }
+        }
+        return Arrays.copyOf(out, n);
+    }
+
+    private static long[] trigrams(String text) {
+        long[] trigrams = new long[text.length() - 2];
+        for (int i = 0; i < trigrams.length; i++) {
+            trigrams[i] = trigram(text, i);
+        }
+        return Arrays.stream(trigrams).distinct().toArray();
+    }
+
+    static long trigram(String text, int start) {
+        return ((long) text.charAt(start) << 32) | ((long) text.charAt(start + 1) << 16) | text.charAt(start + 2);
+    }
+
+    private static final class PostingsBuilder {
+        private LongIntHashMap ids = new LongIntHashMap(1024);
+        private final List<PostingBuilder> lists = new ArrayList<>();
+
+        void addTrigrams(String text, int row) {
+            for (int i = 0; i + 2 < text.length(); i++) {
+                long trigram = trigram(text, i);
+                int id = ids.get(trigram);
+                if (id == LongIntHashMap.MISSING) {
+                    if (ids.isFull()) {
+                        ids = ids.withCapacity(2 * ids.size());
+                    }
+                    id = lists.size();
+                    ids.putIfAbsent(trigram, id);
+                    lists.add(new PostingBuilder());
+                }
+                lists.get(id).add(row);
+            }
+        }
+    }
+
+    private static final class PostingBuilder {
+        private int[] rows = new int[4];
+        private int size;
+
+        // Rows are added in ascending order, so a repeated trigram within one row is a repeat of the last entry.
+        void add(int row) {
+            if (size > 0 && rows[size - 1] == row) {
+                return;
+            }
+            if (size == rows.length) {
+                rows = Arrays.copyOf(rows, size * 2);
+            }
+            rows[size++] = row;
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(rows, size);
+        }
+    }
+}
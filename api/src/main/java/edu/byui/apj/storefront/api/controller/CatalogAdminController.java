@@ -0,0 +1,55 @@
+package edu.byui.apj.storefront.api.controller;
+
+import edu.byui.apj.storefront.api.catalog.CatalogSnapshot;
+import edu.byui.apj.storefront.api.model.CatalogStatus;
+import edu.byui.apj.storefront.api.service.TradingCardService;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.concurrent.CompletionException;
+
+@RestController
+@RequestMapping("/api/admin/catalog")
+public class CatalogAdminController {
+
+    private final TradingCardService tcService;
+
+    public CatalogAdminController(TradingCardService tcService) {
+        this.tcService = tcService;
+    }
+
+    @GetMapping
+    public CatalogStatus getStatus() {
+        return toStatus(tcService.getSnapshot());
+    }
+
+    // Waits for the background reload so the caller sees the version that was published, or why it failed.
+    @PostMapping("/reload")
+    public CatalogStatus reload() {
+        try {
+            return toStatus(tcService.reload().join());
+        } catch (CompletionException e) {
+            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR,
+                "Catalog reload failed: " + e.getCause().getMessage(), e.getCause());
+        }
+    }
+
+    // Folds the cards written since the last build into freshly built indexes without waiting for the threshold.
+    @PostMapping("/compact")
+    public CatalogStatus compact() {
+        try {
+            return toStatus(tcService.compact().join());
+        } catch (CompletionException e) {
+            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR,
+                "Catalog compaction failed: " + e.getCause().getMessage(), e.getCause());
+        }
+    }
+
+    private CatalogStatus toStatus(CatalogSnapshot snapshot) {
+        return new CatalogStatus(snapshot.version(), snapshot.liveCount(), snapshot.loadedAt());
+    }
+}
@@ -1,64 +1,377 @@
 package edu.byui.apj.storefront.api.controller;
 
+import edu.byui.apj.storefront.api.catalog.CardCatalog;
+import edu.byui.apj.storefront.api.catalog.CardRows;
+import edu.byui.apj.storefront.api.model.CardFacets;
+import edu.byui.apj.storefront.api.model.CardPage;
+import edu.byui.apj.storefront.api.model.CardSuggestion;
 import edu.byui.apj.storefront.api.model.TradingCard;
+import edu.byui.apj.storefront.api.service.CardJsonCache;
+import edu.byui.apj.storefront.api.service.CardQuery;
 import edu.byui.apj.storefront.api.service.TradingCardService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 
 import java.math.BigDecimal;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.BiFunction;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
 
+// Card lists are written from pre-encoded JSON fragments rather than serialized per request.
+// Filter and search results are also streamed as NDJSON when the client accepts application/x-ndjson.
 @RestController
 @RequestMapping("/api")
 public class TradingCardController {
+    static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+    static final int MAX_IDS = 1000;
+    static final int MAX_SUGGESTIONS = 50;
+    private static final String NDJSON_KEY_SUFFIX = "&format=ndjson";
+
     TradingCardService tcService;
+    CardJsonCache jsonCache;
 
     @Autowired
-    public TradingCardController(TradingCardService tcService) {
+    public TradingCardController(TradingCardService tcService, CardJsonCache jsonCache) {
         this.tcService = tcService;
+        this.jsonCache = jsonCache;
     }
 
     @GetMapping("/cards")
-    public List<TradingCard> getCards(
+    public ResponseEntity<byte[]> getCards(
         @RequestParam(name = "page", defaultValue = "0") int page,
-        @RequestParam(name = "size", defaultValue = "20") int size
+        @RequestParam(name = "size", defaultValue = "20") int size,
+        @RequestParam(name = "cursor", required = false) String cursor,
+        @RequestHeader(name = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch
+    ) {
+        if (cursor != null) {
+            String key = "cards?cursor=" + cursor + "&size=" + size;
+            return withNextCursor(key, ifNoneMatch, () -> tcService.getCardsPage(cursor, size),
+                (response, rows) -> json(response, jsonCache.toJson(rows)));
+        }
+        String key = "cards?page=" + page + "&size=" + size;
+        if (isNotModified(ifNoneMatch, key)) {
+            return notModified(key);
+        }
+        CardRows rows = tcService.getCardRows(page, size);
+        return json(ResponseEntity.ok().eTag(rows.snapshot().etag(key)), jsonCache.toJsonPage(rows));
+    }
+
+    @GetMapping(path = "/cards", params = "ids")
+    public ResponseEntity<byte[]> getCardsByIds(
+        @RequestParam(name = "ids") List<Long> ids,
+        @RequestHeader(name = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch
+    ) {
+        if (ids.size() > MAX_IDS) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "at most " + MAX_IDS + " ids can be requested at once");
+        }
+        String key = "cards?ids=" + ids.stream().map(String::valueOf).collect(Collectors.joining(","));
+        if (isNotModified(ifNoneMatch, key)) {
+            return notModified(key);
+        }
+        CardRows rows = tcService.getCardRowsByIds(ids);
+        return json(ResponseEntity.ok().eTag(rows.snapshot().etag(key)), jsonCache.toJson(rows));
+    }
+
+    @GetMapping("/cards/{id}")
+    public ResponseEntity<byte[]> getCard(
+        @PathVariable("id") long id,
+        @RequestHeader(name = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch
     ) {
-        return tcService.getCards(page, size);
+        String key = "card?id=" + id;
+        if (isNotModified(ifNoneMatch, key)) {
+            return notModified(key);
+        }
+        CardRows rows = tcService.getCardRowsByIds(List.of(id));
+        if (rows.size() == 0) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "No card with id " + id);
+        }
+        return json(ResponseEntity.ok().eTag(rows.snapshot().etag(key)),
+            jsonCache.toJsonObject(rows.snapshot(), rows.rows()[0]));
+    }
+
+    // The response carries the card as stored, with its id, and the ETag a GET of it would return.
+    @PostMapping("/cards")
+    public ResponseEntity<byte[]> createCard(@RequestBody TradingCard card) {
+        CardRows rows;
+        try {
+            rows = tcService.createCard(card);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        } catch (IllegalStateException e) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT, e.getMessage());
+        }
+        long id = rows.snapshot().catalog().id(rows.rows()[0]);
+        return writtenCard(ResponseEntity.created(
+            ServletUriComponentsBuilder.fromCurrentRequest().path("/{id}").buildAndExpand(id).toUri()), rows, id);
+    }
+
+    @PutMapping("/cards/{id}")
+    public ResponseEntity<byte[]> updateCard(@PathVariable("id") long id, @RequestBody TradingCard card) {
+        Optional<CardRows> updated;
+        try {
+            updated = tcService.updateCard(id, card);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+        CardRows rows = updated.orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "No card with id " + id));
+        return writtenCard(ResponseEntity.ok(), rows, id);
+    }
+
+    @DeleteMapping("/cards/{id}")
+    public ResponseEntity<Void> deleteCard(@PathVariable("id") long id) {
+        if (!tcService.deleteCard(id)) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "No card with id " + id);
+        }
+        return ResponseEntity.noContent().build();
     }
 
     @GetMapping("/cards/filter")
-    public ResponseEntity<List<TradingCard>> getCardsFilter(
+    public ResponseEntity<byte[]> getCardsFilter(
         @RequestParam(name = "minPrice", required = false) Optional<BigDecimal> maybeMinPrice,
         @RequestParam(name = "maxPrice", required = false) Optional<BigDecimal> maybeMaxPrice,
         @RequestParam(name = "specialty", required = false) Optional<String> maybeSpecialty,
-        @RequestParam(name = "sort", required = false) Optional<String> maybeSort
+        @RequestParam(name = "sort", required = false) Optional<String> maybeSort,
+        @RequestParam(name = "query", required = false) Optional<String> maybeQuery,
+        @RequestParam(name = "size", defaultValue = "20") int size,
+        @RequestParam(name = "cursor", required = false) String cursor,
+        @RequestParam(name = "offset", defaultValue = "0") int offset,
+        @RequestParam(name = "limit", defaultValue = "" + CardQuery.NO_LIMIT) int limit,
+        @RequestHeader(name = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch
     ) {
-        if (maybeSort.isPresent()) {
-            if (!maybeSort.get().isBlank()) {
-                String sort = maybeSort.get();
+        CardQuery unwindowed = CardQuery.filter(maybeMinPrice, maybeMaxPrice, maybeSpecialty, filterSort(maybeSort), maybeQuery);
+        CardQuery filter = window(unwindowed, offset, limit);
+        String filterKey = "filter?" + filter.key();
+        if (cursor != null) {
+            String key = filterKey + "&cursor=" + cursor + "&size=" + size;
+            return withNextCursor(key, ifNoneMatch, () -> tcService.getCardsFilterPage(unwindowed, cursor, size),
+                (response, rows) -> json(response.varyBy(HttpHeaders.ACCEPT), jsonCache.toJson(rows)));
+        }
+        if (isNotModified(ifNoneMatch, filterKey)) {
+            return notModified(filterKey);
+        }
+        CardRows rows = tcService.getCardsFilterRows(filter);
+        return json(ResponseEntity.ok().eTag(rows.snapshot().etag(filterKey)).varyBy(HttpHeaders.ACCEPT), jsonCache.toJson(rows));
+    }
 
-                if (!sort.equals("name") && !sort.equals("price")) {
-                    throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "sort must be either 'name' or 'price'");
-                }
-            }
-            else {
-                maybeSort = Optional.empty();
-            }
+    // Picked over the JSON mapping only when the client asks for NDJSON by name; a wildcard Accept gets the array.
+    @GetMapping(path = "/cards/filter", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> getCardsFilterNdjson(
+        @RequestParam(name = "minPrice", required = false) Optional<BigDecimal> maybeMinPrice,
+        @RequestParam(name = "maxPrice", required = false) Optional<BigDecimal> maybeMaxPrice,
+        @RequestParam(name = "specialty", required = false) Optional<String> maybeSpecialty,
+        @RequestParam(name = "sort", required = false) Optional<String> maybeSort,
+        @RequestParam(name = "query", required = false) Optional<String> maybeQuery,
+        @RequestParam(name = "size", defaultValue = "20") int size,
+        @RequestParam(name = "cursor", required = false) String cursor,
+        @RequestParam(name = "offset", defaultValue = "0") int offset,
+        @RequestParam(name = "limit", defaultValue = "" + CardQuery.NO_LIMIT) int limit,
+        @RequestHeader(name = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch
+    ) {
+        CardQuery unwindowed = CardQuery.filter(maybeMinPrice, maybeMaxPrice, maybeSpecialty, filterSort(maybeSort), maybeQuery);
+        CardQuery filter = window(unwindowed, offset, limit);
+        String filterKey = "filter?" + filter.key();
+        if (cursor != null) {
+            String key = filterKey + "&cursor=" + cursor + "&size=" + size + NDJSON_KEY_SUFFIX;
+            return withNextCursor(key, ifNoneMatch, () -> tcService.getCardsFilterPage(unwindowed, cursor, size), this::ndjson);
+        }
+        String key = filterKey + NDJSON_KEY_SUFFIX;
+        if (isNotModified(ifNoneMatch, key)) {
+            return notModified(key);
         }
-        return ResponseEntity.ok(tcService.getCardsFilter(maybeMinPrice, maybeMaxPrice, maybeSpecialty, maybeSort));
+        CardRows rows = tcService.getCardsFilterRows(filter);
+        return ndjson(ResponseEntity.ok().eTag(rows.snapshot().etag(key)), rows);
     }
 
     @GetMapping("/cards/search")
-    public List<TradingCard> getCardsSearch(
-        @RequestParam(name = "query") String query
+    public ResponseEntity<byte[]> getCardsSearch(
+        @RequestParam(name = "query") String query,
+        @RequestParam(name = "offset", defaultValue = "0") int offset,
+        @RequestParam(name = "limit", defaultValue = "" + CardQuery.NO_LIMIT) int limit,
+        @RequestParam(name = "fuzzy", defaultValue = "false") boolean fuzzy,
+        @RequestParam(name = "sort", required = false) Optional<String> maybeSort,
+        @RequestHeader(name = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch
     ) {
-        return tcService.getCardsSearch(query);
+        CardQuery search = window(searchQuery(query, fuzzy, maybeSort), offset, limit);
+        String key = "search?" + search.key();
+        if (isNotModified(ifNoneMatch, key)) {
+            return notModified(key);
+        }
+        CardRows rows = searchRows(search, query);
+        return json(ResponseEntity.ok().eTag(rows.snapshot().etag(key)).varyBy(HttpHeaders.ACCEPT), jsonCache.toJson(rows));
+    }
+
+    @GetMapping(path = "/cards/search", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> getCardsSearchNdjson(
+        @RequestParam(name = "query") String query,
+        @RequestParam(name = "offset", defaultValue = "0") int offset,
+        @RequestParam(name = "limit", defaultValue = "" + CardQuery.NO_LIMIT) int limit,
+        @RequestParam(name = "fuzzy", defaultValue = "false") boolean fuzzy,
+        @RequestParam(name = "sort", required = false) Optional<String> maybeSort,
+        @RequestHeader(name = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch
+    ) {
+        CardQuery search = window(searchQuery(query, fuzzy, maybeSort), offset, limit);
+        String key = "search?" + search.key() + NDJSON_KEY_SUFFIX;
+        if (isNotModified(ifNoneMatch, key)) {
+            return notModified(key);
+        }
+        CardRows rows = searchRows(search, query);
+        return ndjson(ResponseEntity.ok().eTag(rows.snapshot().etag(key)), rows);
+    }
+
+    @GetMapping("/cards/facets")
+    public ResponseEntity<CardFacets> getCardsFacets(
+        @RequestParam(name = "minPrice", required = false) Optional<BigDecimal> maybeMinPrice,
+        @RequestParam(name = "maxPrice", required = false) Optional<BigDecimal> maybeMaxPrice,
+        @RequestParam(name = "specialty", required = false) Optional<String> maybeSpecialty,
+        @RequestParam(name = "query", required = false) Optional<String> maybeQuery,
+        @RequestParam(name = "bucketWidth", defaultValue = "10") BigDecimal bucketWidth,
+        @RequestHeader(name = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch
+    ) {
+        String key = "facets?" + CardQuery.filter(maybeMinPrice, maybeMaxPrice, maybeSpecialty, Optional.empty(), maybeQuery).key()
+            + "&bucketWidth=" + bucketWidth.stripTrailingZeros().toPlainString();
+        if (isNotModified(ifNoneMatch, key)) {
+            return notModified(key);
+        }
+        // Taken before the counts: if a reload slips in between, the client just refetches once.
+        String etag = tcService.currentETag(key);
+        try {
+            return ResponseEntity.ok().eTag(etag)
+                .body(tcService.getCardsFacets(maybeMinPrice, maybeMaxPrice, maybeSpecialty, maybeQuery, bucketWidth));
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+    }
+
+    @GetMapping("/cards/suggest")
+    public ResponseEntity<List<CardSuggestion>> getSuggestions(
+        @RequestParam(name = "prefix") String prefix,
+        @RequestParam(name = "limit", defaultValue = "10") int limit,
+        @RequestHeader(name = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch
+    ) {
+        if (limit < 1 || limit > MAX_SUGGESTIONS) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "limit must be between 1 and " + MAX_SUGGESTIONS);
+        }
+        String key = "suggest?prefix=" + CardCatalog.clean(prefix) + "&limit=" + limit;
+        if (isNotModified(ifNoneMatch, key)) {
+            return notModified(key);
+        }
+        String etag = tcService.currentETag(key);
+        return ResponseEntity.ok().eTag(etag).body(tcService.getSuggestions(prefix, limit));
+    }
+
+    // Cursor mode keeps the list body, JSON or NDJSON, and returns the next cursor in a header; it is absent on the last page.
+    private <T> ResponseEntity<T> withNextCursor(
+        String key, String ifNoneMatch, Supplier<CardPage> pageSupplier,
+        BiFunction<ResponseEntity.BodyBuilder, CardRows, ResponseEntity<T>> body
+    ) {
+        if (isNotModified(ifNoneMatch, key)) {
+            return notModified(key);
+        }
+        CardPage page;
+        try {
+            page = pageSupplier.get();
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok().eTag(page.rows().snapshot().etag(key));
+        if (page.nextCursor() != null) {
+            response.header(NEXT_CURSOR_HEADER, page.nextCursor());
+        }
+        return body.apply(response, page.rows());
+    }
+
+    // A blank sort means catalog order.
+    private static Optional<String> filterSort(Optional<String> maybeSort) {
+        Optional<String> sort = maybeSort.filter(value -> !value.isBlank());
+        if (sort.isPresent() && !sort.get().equals("name") && !sort.get().equals("price")) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "sort must be either 'name' or 'price'");
+        }
+        return sort;
+    }
+
+    private static CardQuery searchQuery(String query, boolean fuzzy, Optional<String> maybeSort) {
+        boolean ranked = maybeSort.filter(sort -> !sort.isBlank()).isPresent();
+        if (ranked && !maybeSort.get().equals(CardQuery.SORT_RELEVANCE)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "sort must be 'relevance'");
+        }
+        if (ranked && fuzzy) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "fuzzy results are ordered by edit distance");
+        }
+        return fuzzy ? CardQuery.fuzzySearch(query)
+            : ranked ? CardQuery.rankedSearch(query)
+            : CardQuery.search(query);
+    }
+
+    private CardRows searchRows(CardQuery search, String query) {
+        if (CardQuery.SORT_EDIT_DISTANCE.equals(search.sort())) {
+            return tcService.getCardsFuzzySearchRows(query, search.offset(), search.limit());
+        }
+        if (CardQuery.SORT_RELEVANCE.equals(search.sort())) {
+            return tcService.getCardsRankedSearchRows(query, search.offset(), search.limit());
+        }
+        return tcService.getCardsSearchRows(query, search.offset(), search.limit());
+    }
+
+    // Both representations share a URL, so caches must key on Accept as well.
+    private ResponseEntity<StreamingResponseBody> ndjson(ResponseEntity.BodyBuilder response, CardRows rows) {
+        return response
+            .varyBy(HttpHeaders.ACCEPT)
+            .contentType(MediaType.APPLICATION_NDJSON)
+            .body(out -> jsonCache.writeNdjson(rows, out));
+    }
+
+    private static CardQuery window(CardQuery query, int offset, int limit) {
+        try {
+            return query.window(offset, limit);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+    }
+
+    // Checked against the current snapshot before any filtering runs. The 304 repeats the ETag, as RFC 9110 requires.
+    private boolean isNotModified(String ifNoneMatch, String key) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        String etag = tcService.currentETag(key);
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            // If-None-Match uses weak comparison, so a W/ prefix still matches.
+            if (tag.equals("*") || tag.equals(etag) || tag.equals("W/" + etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private <T> ResponseEntity<T> notModified(String key) {
+        return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(tcService.currentETag(key)).build();
+    }
+
+    private ResponseEntity<byte[]> writtenCard(ResponseEntity.BodyBuilder response, CardRows rows, long id) {
+        return json(response.eTag(rows.snapshot().etag("card?id=" + id)),
+            jsonCache.toJsonObject(rows.snapshot(), rows.rows()[0]));
+    }
+
+    private ResponseEntity<byte[]> json(ResponseEntity.BodyBuilder response, byte[] body) {
+        return response.contentType(MediaType.APPLICATION_JSON).body(body);
     }
 }
@@ -0,0 +1,15 @@
+package edu.byui.apj.storefront.api.model;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+// Specialty counts ignore the specialty filter so that the other specialties can still be offered.
+public record CardFacets(int total, List<SpecialtyCount> specialties, List<PriceBucket> prices) {
+
+    public record SpecialtyCount(String specialty, int count) {
+    }
+
+    // Cards priced from min (inclusive) up to max (exclusive); empty buckets are left out.
+    public record PriceBucket(BigDecimal min, BigDecimal max, int count) {
+    }
+}
@@ -0,0 +1,13 @@
+package edu.byui.apj.storefront.api.model;
+
+import edu.byui.apj.storefront.api.catalog.CardRows;
+
+import java.util.List;
+
+// A page of cards in cursor mode; nextCursor is null on the last page.
+public record CardPage(CardRows rows, String nextCursor) {
+
+    public List<TradingCard> cards() {
+        return rows.toCards();
+    }
+}
@@ -0,0 +1,5 @@
+package edu.byui.apj.storefront.api.model;
+
+// Kind is "card" for a card name and "specialty" for a specialty; weight is the number of cards behind it.
+public record CardSuggestion(String text, String kind, int weight) {
+}
@@ -0,0 +1,6 @@
+package edu.byui.apj.storefront.api.model;
+
+import java.time.Instant;
+
+public record CatalogStatus(long version, int cards, Instant loadedAt) {
+}
@@ -2,11 +2,13 @@ package edu.byui.apj.storefront.api.model;
 
 import lombok.AllArgsConstructor;
 import lombok.Data;
+import lombok.NoArgsConstructor;
 
 import java.math.BigDecimal;
 
 @Data
 @AllArgsConstructor
+@NoArgsConstructor
 public class TradingCard {
     private Long id;
     private String name;
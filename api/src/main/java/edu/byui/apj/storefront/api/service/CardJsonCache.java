@@ -0,0 +1,180 @@
+package edu.byui.apj.storefront.api.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import edu.byui.apj.storefront.api.catalog.CardCatalog;
+import edu.byui.apj.storefront.api.catalog.CardRows;
+import edu.byui.apj.storefront.api.catalog.CatalogSnapshot;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+/**
+ * Pre-encoded JSON for catalog responses. Cards are serialized with the application's ObjectMapper,
+ * and responses are assembled by concatenating those fragments. NDJSON bodies are streamed from the
+ * same fragments. Whole page bodies for /api/cards are kept as well, per snapshot. A row never
+ * changes once written, so versions that only add writes to the same base share the card
+ * fragments; a new base drops them.
+ * <p>
+ * Fragments and pages share one Caffeine cache bounded by their size in bytes, so only the cards
+ * that are actually requested stay encoded. A size of 0 encodes every response afresh.
+ */
+@Component
+public class CardJsonCache {
+
+    static final long DEFAULT_MAX_BYTES = 64L << 20;
+
+    // Rough heap cost of one entry besides its bytes: the key, the array header and the cache node.
+    private static final int ENTRY_OVERHEAD_BYTES = 96;
+
+    private final ObjectMapper objectMapper;
+    private final boolean enabled;
+    private final Cache<Object, byte[]> cache;
+    private final AtomicLong bases = new AtomicLong();
+    private final AtomicReference<Encodings> encodings = new AtomicReference<>();
+
+    public CardJsonCache(ObjectMapper objectMapper) {
+        this(objectMapper, DEFAULT_MAX_BYTES);
+    }
+
+    @Autowired
+    public CardJsonCache(ObjectMapper objectMapper, @Value("${catalog.json-cache.max-bytes:67108864}") long maxBytes) {
+        this.objectMapper = objectMapper;
+        this.enabled = maxBytes > 0;
+        this.cache = Caffeine.newBuilder()
+            .maximumWeight(Math.max(maxBytes, 0))
+            .weigher((Object key, byte[] json) -> json.length + ENTRY_OVERHEAD_BYTES)
+            .build();
+    }
+
+    public byte[] toJson(CardRows rows) {
+        return encodingsFor(rows.snapshot()).array(rows.rows());
+    }
+
+    // A single card as a JSON object rather than an array.
+    public byte[] toJsonObject(CatalogSnapshot snapshot, int row) {
+        return encodingsFor(snapshot).card(row);
+    }
+
+    // One card per line, written fragment by fragment, so the body is never held in memory as a whole.
+    // The first line is flushed at once so that clients can start reading before the rest is written.
+    public void writeNdjson(CardRows rows, OutputStream out) throws IOException {
+        Encodings current = encodingsFor(rows.snapshot());
+        int[] rowArray = rows.rows();
+        for (int i = 0; i < rowArray.length; i++) {
+            out.write(current.card(rowArray[i]));
+            out.write('\n');
+            if (i == 0) {
+                out.flush();
+            }
+        }
+        out.flush();
+    }
+
+    // For rows that form a contiguous catalog range, as the pages of getCardRows do.
+    public byte[] toJsonPage(CardRows rows) {
+        if (rows.size() == 0) {
+            return toJson(rows);
+        }
+        Encodings current = encodingsFor(rows.snapshot());
+        return cached(new PageKey(rows.snapshot().version(), rows.rows()[0], rows.size()),
+            () -> current.array(rows.rows()));
+    }
+
+    long weightedSize() {
+        cache.cleanUp();
+        return cache.policy().eviction().orElseThrow().weightedSize().orElse(0);
+    }
+
+    private Encodings encodingsFor(CatalogSnapshot snapshot) {
+        Encodings current = encodings.get();
+        if (current != null && current.snapshot == snapshot) {
+            return current;
+        }
+        CardCatalog base = snapshot.delta().base();
+        boolean sameBase = current != null && current.base == base;
+        Encodings fresh = new Encodings(snapshot, base, sameBase ? current.baseId : bases.incrementAndGet());
+        // A request still running on an older snapshot must not replace the cache of a newer one.
+        if ((current == null || current.snapshot.version() < snapshot.version())
+            && encodings.compareAndSet(current, fresh) && !sameBase) {
+            // Fragments of the old base could never be hit again.
+            cache.invalidateAll();
+        }
+        return fresh;
+    }
+
+    // A page is assembled from cached cards, so it is not computed inside the cache, which forbids nested updates.
+    // Two requests may encode the same entry at once; either result will do.
+    private byte[] cached(Object key, Supplier<byte[]> encode) {
+        byte[] json = enabled ? cache.getIfPresent(key) : null;
+        if (json == null) {
+            json = encode.get();
+            if (enabled) {
+                cache.put(key, json);
+            }
+        }
+        return json;
+    }
+
+    private byte[] encode(CardCatalog catalog, int row) {
+        try {
+            return objectMapper.writeValueAsBytes(catalog.toCard(row));
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // Rows of one base and the rows written on top of it are the same card in every version that shares the base.
+    private record CardKey(long baseId, int row) {
+    }
+
+    private record PageKey(long version, int firstRow, int size) {
+    }
+
+    private final class Encodings {
+        private final CatalogSnapshot snapshot;
+        private final CardCatalog base;
+        private final long baseId;
+
+        Encodings(CatalogSnapshot snapshot, CardCatalog base, long baseId) {
+            this.snapshot = snapshot;
+            this.base = base;
+            this.baseId = baseId;
+        }
+
+        byte[] card(int row) {
+            return cached(new CardKey(baseId, row), () -> encode(snapshot.catalog(), row));
+        }
+
+        byte[] array(int[] rows) {
+            byte[][] fragments = new byte[rows.length][];
+            int length = 2 + Math.max(rows.length - 1, 0);
+            for (int i = 0; i < rows.length; i++) {
+                fragments[i] = card(rows[i]);
+                length += fragments[i].length;
+            }
+
+            byte[] json = new byte[length];
+            int position = 0;
+            json[position++] = '[';
+            for (int i = 0; i < fragments.length; i++) {
+                if (i > 0) {
+                    json[position++] = ',';
+                }
+                System.arraycopy(fragments[i], 0, json, position, fragments[i].length);
+                position += fragments[i].length;
+            }
+            json[position] = ']';
+            return json;
+        }
+    }
+}
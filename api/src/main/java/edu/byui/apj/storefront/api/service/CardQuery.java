@@ -0,0 +1,85 @@
+package edu.byui.apj.storefront.api.service;
+
+import edu.byui.apj.storefront.api.catalog.CardCatalog;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Optional;
+
+/**
+ * Normalized filter and search parameters. Prices are whole-cent bounds and text is cleaned, so
+ * requests that must return the same cards produce equal queries and the same {@link #key()}.
+ * The offset and limit select a window of the result; an unlimited query has limit {@link #NO_LIMIT}.
+ */
+public record CardQuery(
+    long minCents,
+    long maxCents,
+    String specialty,
+    String sort,
+    String text,
+    int offset,
+    int limit
+) {
+
+    public static final int NO_LIMIT = Integer.MAX_VALUE;
+    public static final String SORT_EDIT_DISTANCE = "edit-distance";
+    public static final String SORT_RELEVANCE = "relevance";
+
+    public static CardQuery filter(
+        Optional<BigDecimal> maybeMinPrice,
+        Optional<BigDecimal> maybeMaxPrice,
+        Optional<String> maybeSpecialty,
+        Optional<String> maybeSort
+    ) {
+        return filter(maybeMinPrice, maybeMaxPrice, maybeSpecialty, maybeSort, Optional.empty());
+    }
+
+    // A filter that also requires the text in the name or contribution, as search does; blank text is no filter.
+    public static CardQuery filter(
+        Optional<BigDecimal> maybeMinPrice,
+        Optional<BigDecimal> maybeMaxPrice,
+        Optional<String> maybeSpecialty,
+        Optional<String> maybeSort,
+        Optional<String> maybeText
+    ) {
+        return new CardQuery(
+            maybeMinPrice.map(price -> CardCatalog.toCents(price, RoundingMode.CEILING)).orElse(Long.MIN_VALUE),
+            maybeMaxPrice.map(price -> CardCatalog.toCents(price, RoundingMode.FLOOR)).orElse(Long.MAX_VALUE),
+            maybeSpecialty.map(CardCatalog::clean).orElse(null),
+            maybeSort.orElse(null),
+            maybeText.map(CardCatalog::clean).filter(text -> !text.isEmpty()).orElse(null),
+            0,
+            NO_LIMIT);
+    }
+
+    public static CardQuery search(String query) {
+        return new CardQuery(Long.MIN_VALUE, Long.MAX_VALUE, null, null, CardCatalog.clean(query), 0, NO_LIMIT);
+    }
+
+    // Typo-tolerant search; its results are ordered by edit distance rather than catalog order.
+    public static CardQuery fuzzySearch(String query) {
+        return new CardQuery(Long.MIN_VALUE, Long.MAX_VALUE, null, SORT_EDIT_DISTANCE, CardCatalog.clean(query), 0, NO_LIMIT);
+    }
+
+    // Relevance-ranked search; its results are ordered by BM25 score.
+    public static CardQuery rankedSearch(String query) {
+        return new CardQuery(Long.MIN_VALUE, Long.MAX_VALUE, null, SORT_RELEVANCE, CardCatalog.clean(query), 0, NO_LIMIT);
+    }
+
+    public CardQuery window(int offset, int limit) {
+        if (offset < 0 || limit < 0) {
+            throw new IllegalArgumentException("offset and limit must not be negative");
+        }
+        return new CardQuery(minCents, maxCents, specialty, sort, text, offset, limit);
+    }
+
+    // Number of matches to find before the window is complete.
+    public int end() {
+        return (int) Math.min((long) offset + limit, NO_LIMIT);
+    }
+
+    public String key() {
+        return "min=" + minCents + "&max=" + maxCents + "&specialty=" + specialty + "&sort=" + sort + "&text=" + text
+            + "&offset=" + offset + "&limit=" + limit;
+    }
+}
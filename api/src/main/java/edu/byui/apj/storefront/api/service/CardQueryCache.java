@@ -0,0 +1,97 @@
+package edu.byui.apj.storefront.api.service;
+
+import java.util.function.Supplier;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import edu.byui.apj.storefront.api.catalog.CatalogSnapshot;
+
+/**
+ * Result rows of filter and search queries, keyed by the normalized {@link CardQuery} and the
+ * snapshot version. The cache is bounded by an estimate of its size in bytes and uses Caffeine's
+ * W-TinyLFU policy, so a burst of one-off queries cannot push out the popular ones. A size of 0
+ * turns the cache off.
+ * <p>
+ * Metrics are published under the {@code cache.*} names with {@code cache=catalogQuery}.
+ */
+@Component
+public class CardQueryCache implements MeterBinder {
+
+    static final String NAME = "catalogQuery";
+    static final long DEFAULT_MAX_BYTES = 16L << 20;
+
+    // Rough heap cost of one entry besides its rows: the key, the query strings and the cache node.
+    private static final int ENTRY_OVERHEAD_BYTES = 160;
+
+    private final boolean enabled;
+    private final Cache<Key, int[]> cache;
+
+    public CardQueryCache() {
+        this(DEFAULT_MAX_BYTES);
+    }
+
+    @Autowired
+    public CardQueryCache(@Value("${catalog.query-cache.max-bytes:16777216}") long maxBytes) {
+        this.enabled = maxBytes > 0;
+        this.cache = Caffeine.newBuilder()
+            .maximumWeight(maxBytes)
+            .weigher((Key key, int[] rows) -> weigh(key, rows))
+            .recordStats()
+            .build();
+    }
+
+    // Rows are computed at most once per key at a time; concurrent callers wait for the same result.
+    public int[] rows(CatalogSnapshot snapshot, CardQuery query, Supplier<int[]> compute) {
+        if (!enabled) {
+            return compute.get();
+        }
+        return cache.get(new Key(snapshot.version(), query), key -> compute.get());
+    }
+
+    // Entries of older versions could never be hit again, so a reload or compaction drops them all at once.
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    // Caffeine applies writes to its policy asynchronously; they are drained first so the size is current.
+    public long weightedSize() {
+        cache.cleanUp();
+        return cache.policy().eviction().orElseThrow().weightedSize().orElse(0);
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        CaffeineCacheMetrics.monitor(registry, cache, NAME);
+        Gauge.builder("cache.weighted.size", this, CardQueryCache::weightedSize)
+            .tag("cache", NAME)
+            .baseUnit("bytes")
+            .description("Estimated heap size of the cached query results")
+            .register(registry);
+    }
+
+    Cache<Key, int[]> cache() {
+        return cache;
+    }
+
+    private static int weigh(Key key, int[] rows) {
+        CardQuery query = key.query();
+        long bytes = ENTRY_OVERHEAD_BYTES + 16L + 4L * rows.length
+            + length(query.specialty()) + length(query.sort()) + length(query.text());
+        return (int) Math.min(bytes, Integer.MAX_VALUE);
+    }
+
+    private static int length(String value) {
+        return value == null ? 0 : value.length();
+    }
+
+    record Key(long version, CardQuery query) {
+    }
+}
@@ -0,0 +1,58 @@
+package edu.byui.apj.storefront.api.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+
+// Reloads the catalog when its source file changes: catalog.snapshot-path if set, otherwise catalog.csv-path.
+// Enabled with catalog.watch=true.
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "catalog.watch", havingValue = "true")
+public class CatalogFileWatcher {
+
+    private final TradingCardService tcService;
+    private final Path sourcePath;
+    private FileTime lastModified;
+
+    public CatalogFileWatcher(
+        TradingCardService tcService,
+        @Value("${catalog.csv-path:}") String csvPath,
+        @Value("${catalog.snapshot-path:}") String snapshotPath
+    ) {
+        this.tcService = tcService;
+        this.sourcePath = Path.of(snapshotPath.isBlank() ? csvPath : snapshotPath);
+        this.lastModified = modifiedTime();
+    }
+
+    @Scheduled(fixedDelayString = "${catalog.watch-interval-ms:5000}")
+    public void checkForChanges() {
+        FileTime modified = modifiedTime();
+        if (modified == null || modified.equals(lastModified)) {
+            return;
+        }
+        log.info("Catalog file {} changed, reloading", sourcePath);
+        lastModified = modified;
+        tcService.reload().whenComplete((snapshot, error) -> {
+            if (error != null) {
+                log.error("Catalog reload after file change failed", error);
+            }
+        });
+    }
+
+    private FileTime modifiedTime() {
+        try {
+            return Files.getLastModifiedTime(sourcePath);
+        } catch (IOException e) {
+            log.warn("Cannot read modification time of {}: {}", sourcePath, e.getMessage());
+            return null;
+        }
+    }
+}
@@ -0,0 +1,235 @@
+package edu.byui.apj.storefront.api.service;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.IntPredicate;
+import java.util.function.IntUnaryOperator;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import edu.byui.apj.storefront.api.catalog.TopRows;
+
+/**
+ * Runs scans over a range of positions (in a sort order or a candidate list) on a dedicated
+ * {@link ForkJoinPool}. The range is split into segments of {@link #SEGMENT_ROWS} positions, each
+ * evaluated by one worker, and the segment results are merged back in position order, so callers
+ * see the same rows as a sequential scan.
+ * <p>
+ * Scans shorter than the parallel threshold run on the calling thread. A scan that only needs the
+ * first k matches is estimated from a sequential probe of its first segment, so a broad filter that
+ * fills its page early never leaves the request thread. Request threads wait for the pool rather
+ * than work in it, and the pool is sized apart from Tomcat's, so a burst of large scans queues up
+ * instead of taking request threads away.
+ */
+@Component
+public class CatalogScanExecutor {
+
+    static final int SEGMENT_ROWS = 1 << 14;
+    public static final int DEFAULT_PARALLEL_THRESHOLD = 1 << 18;
+
+    private static final int[] NO_ROWS = new int[0];
+
+    private final int parallelism;
+    private final int parallelThreshold;
+    private final ForkJoinPool pool;
+
+    public CatalogScanExecutor() {
+        this(0, DEFAULT_PARALLEL_THRESHOLD);
+    }
+
+    // A parallelism of 0 uses every available processor; 1 keeps all scans on the calling thread.
+    @Autowired
+    public CatalogScanExecutor(
+        @Value("${catalog.scan.parallelism:0}") int parallelism,
+        @Value("${catalog.scan.parallel-threshold:262144}") int parallelThreshold
+    ) {
+        this.parallelism = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+        this.parallelThreshold = Math.max(parallelThreshold, SEGMENT_ROWS);
+        this.pool = this.parallelism == 1 ? null : new ForkJoinPool(this.parallelism, pool -> {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+            thread.setName("catalog-scan-" + thread.getPoolIndex());
+            thread.setDaemon(true);
+            return thread;
+        }, null, false);
+    }
+
+    public int parallelism() {
+        return parallelism;
+    }
+
+    int parallelThreshold() {
+        return parallelThreshold;
+    }
+
+    // Rows at positions [from, to) that pass the filter, in position order, stopping after wanted of them.
+    public int[] firstMatches(int from, int to, IntUnaryOperator rowAt, IntPredicate filter, int wanted) {
+        if (from >= to || wanted <= 0) {
+            return NO_ROWS;
+        }
+        if (!worthSplitting(to - from)) {
+            return scan(from, to, rowAt, filter, wanted);
+        }
+
+        int probeEnd = from + SEGMENT_ROWS;
+        int[] probe = scan(from, probeEnd, rowAt, filter, wanted);
+        if (probe.length >= wanted) {
+            return probe;
+        }
+        // Positions a sequential scan would still read to find the rest, at the probe's match rate.
+        long remaining = probe.length == 0
+            ? to - probeEnd
+            : Math.min(to - probeEnd, (long) (wanted - probe.length) * SEGMENT_ROWS / probe.length);
+        if (!worthSplitting(remaining)) {
+            return concat(probe, scan(probeEnd, to, rowAt, filter, wanted - probe.length), wanted);
+        }
+
+        // The rest is scanned in waves that keep every worker busy; a wave ends early once wanted is reached.
+        int[] rows = probe;
+        int waveRows = SEGMENT_ROWS * parallelism * 4;
+        for (int position = probeEnd; position < to && rows.length < wanted; ) {
+            int waveEnd = (int) Math.min(to, (long) position + waveRows);
+            rows = concat(rows, pool.invoke(new MatchTask(position, waveEnd, rowAt, filter, wanted - rows.length)), wanted);
+            position = waveEnd;
+        }
+        return rows;
+    }
+
+    // The k rows at positions [from, to) that pass the filter and have the smallest keys, in key order.
+    public int[] smallestKeys(int from, int to, IntUnaryOperator rowAt, IntPredicate filter, int k, IntUnaryOperator key) {
+        if (from >= to || k <= 0) {
+            return NO_ROWS;
+        }
+        if (!worthSplitting(to - from)) {
+            return top(from, to, rowAt, filter, k, key);
+        }
+        return pool.invoke(new TopTask(from, to, rowAt, filter, k, key));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (pool != null) {
+            pool.shutdownNow();
+        }
+    }
+
+    private boolean worthSplitting(long positions) {
+        return pool != null && positions >= parallelThreshold;
+    }
+
+    private static int[] scan(int from, int to, IntUnaryOperator rowAt, IntPredicate filter, int wanted) {
+        int[] rows = new int[Math.min(to - from, Math.min(wanted, SEGMENT_ROWS))];
+        int matched = 0;
+        for (int position = from; position < to && matched < wanted; position++) {
+            int row = rowAt.applyAsInt(position);
+            if (filter.test(row)) {
+                if (matched == rows.length) {
+                    rows = Arrays.copyOf(rows, (int) Math.min((long) matched * 2, wanted));
+                }
+                rows[matched++] = row;
+            }
+        }
+        return matched == rows.length ? rows : Arrays.copyOf(rows, matched);
+    }
+
+    private static int[] top(int from, int to, IntUnaryOperator rowAt, IntPredicate filter, int k, IntUnaryOperator key) {
+        TopRows top = new TopRows(Math.min(k, to - from), key);
+        for (int position = from; position < to; position++) {
+            int row = rowAt.applyAsInt(position);
+            if (filter.test(row)) {
+                top.offer(row);
+            }
+        }
+        return top.toSortedArray();
+    }
+
+    private static int[] concat(int[] first, int[] second, int wanted) {
+        if (second.length == 0 || first.length >= wanted) {
+            return first;
+        }
+        if (first.length == 0) {
+            return second.length <= wanted ? second : Arrays.copyOf(second, wanted);
+        }
+        int length = (int) Math.min((long) first.length + second.length, wanted);
+        int[] rows = Arrays.copyOf(first, length);
+        System.arraycopy(second, 0, rows, first.length, length - first.length);
+        return rows;
+    }
+
+    private static final class MatchTask extends RecursiveTask<int[]> {
+        private final int from;
+        private final int to;
+        private final IntUnaryOperator rowAt;
+        private final IntPredicate filter;
+        private final int wanted;
+
+        MatchTask(int from, int to, IntUnaryOperator rowAt, IntPredicate filter, int wanted) {
+            this.from = from;
+            this.to = to;
+            this.rowAt = rowAt;
+            this.filter = filter;
+            this.wanted = wanted;
+        }
+
+        @Override
+        protected int[] compute() {
+            if (to - from <= SEGMENT_ROWS) {
+                return scan(from, to, rowAt, filter, wanted);
+            }
+            int middle = splitPoint(from, to);
+            MatchTask right = new MatchTask(middle, to, rowAt, filter, wanted);
+            right.fork();
+            int[] left = new MatchTask(from, middle, rowAt, filter, wanted).compute();
+            return concat(left, right.join(), wanted);
+        }
+    }
+
+    private static final class TopTask extends RecursiveTask<int[]> {
+        private final int from;
+        private final int to;
+        private final IntUnaryOperator rowAt;
+        private final IntPredicate filter;
+        private final int k;
+        private final IntUnaryOperator key;
+
+        TopTask(int from, int to, IntUnaryOperator rowAt, IntPredicate filter, int k, IntUnaryOperator key) {
+            this.from = from;
+            this.to = to;
+            this.rowAt = rowAt;
+            this.filter = filter;
+            this.k = k;
+            this.key = key;
+        }
+
+        @Override
+        protected int[] compute() {
+            if (to - from <= SEGMENT_ROWS) {
+                return top(from, to, rowAt, filter, k, key);
+            }
+            int middle = splitPoint(from, to);
+            TopTask right = new TopTask(middle, to, rowAt, filter, k, key);
+            right.fork();
+            int[] left = new TopTask(from, middle, rowAt, filter, k, key).compute();
+            int[] other = right.join();
+            // Both halves are already in key order, so a merge gives the k smallest of the two.
+            int[] merged = new int[Math.min(k, left.length + other.length)];
+            int i = 0;
+            int j = 0;
+            for (int n = 0; n < merged.length; n++) {
+                merged[n] = j >= other.length
+                    || (i < left.length && key.applyAsInt(left[i]) < key.applyAsInt(other[j])) ? left[i++] : other[j++];
+            }
+            return merged;
+        }
+    }
+
+    // Splits on a segment boundary so that every leaf but the last covers whole segments.
+    private static int splitPoint(int from, int to) {
+        int segments = (to - from + SEGMENT_ROWS - 1) / SEGMENT_ROWS;
+        return from + (segments / 2) * SEGMENT_ROWS;
+    }
+}
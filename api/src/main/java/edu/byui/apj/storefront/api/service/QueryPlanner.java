@@ -0,0 +1,141 @@
+package edu.byui.apj.storefront.api.service;
+
+import edu.byui.apj.storefront.api.catalog.CardCatalog;
+import edu.byui.apj.storefront.api.catalog.CardOrder;
+import edu.byui.apj.storefront.api.catalog.CatalogSnapshot;
+
+/**
+ * Chooses how a filter query reaches its rows. Each predicate's selectivity comes from catalog
+ * statistics: the price range is two binary searches in the price order, the specialty count is the
+ * sum of the matching dictionary entries' bitmap sizes, and a text predicate is bounded by its
+ * rarest trigram's posting list. Predicates are assumed independent to estimate the matches.
+ * <p>
+ * The plan drives the query from the access path that costs the fewest rows touched and applies
+ * the other predicates to its candidates only. Costs are in rows: a candidate read and tested is
+ * one, a bitmap word operation a sixteenth. When the candidates do not come out in the requested
+ * order, the best are kept in a bounded heap, unless walking the sort order and stopping after the
+ * window is cheaper.
+ */
+final class QueryPlanner {
+
+    // Roaring set operations process a container word or run at a time instead of one row.
+    static final int BITMAP_ROWS_PER_OP = 16;
+    // A text candidate is verified with a substring search over two strings.
+    static final int TEXT_VERIFY_COST = 4;
+
+    enum Access {
+        // Every row of the requested order, with every predicate applied.
+        WALK_ORDER,
+        PRICE_RANGE,
+        SPECIALTY_BITMAP,
+        SPECIALTY_AND_PRICE_BITMAPS,
+        TEXT_POSTINGS
+    }
+
+    /**
+     * The chosen access path, whether it yields rows in the requested order (so the scan can stop after
+     * the window), and the estimates it was chosen on.
+     */
+    record Plan(Access access, boolean inOrder, long estimatedMatches, long estimatedCost) {
+    }
+
+    // Statistics of one query against one snapshot.
+    record Estimates(
+        int catalogSize,
+        int priceStart,
+        int priceEnd,
+        boolean[] specialtyMatches,
+        long specialtyRows,
+        long textRows
+    ) {
+        static Estimates of(CatalogSnapshot snapshot, CardQuery query) {
+            // Estimates cover the indexed base rows; the few written since are checked one by one.
+            CardCatalog catalog = snapshot.catalog();
+            int size = snapshot.sortIndex().size();
+            int priceStart = snapshot.sortIndex().priceLowerBound(query.minCents());
+            int priceEnd = snapshot.sortIndex().priceUpperBound(query.maxCents());
+            boolean[] specialtyMatches = query.specialty() == null ? null : catalog.matchSpecialties(query.specialty());
+            long specialtyRows = specialtyMatches == null ? size
+                : snapshot.filterBitmaps().specialtyCardinality(specialtyMatches);
+            long textRows = query.text() == null ? size : snapshot.searchIndex().estimateCandidates(query.text());
+            return new Estimates(size, priceStart, priceEnd, specialtyMatches, specialtyRows, textRows);
+        }
+
+        long priceRows() {
+            return Math.max(priceEnd - priceStart, 0);
+        }
+
+        boolean filtersPrice() {
+            return priceRows() < catalogSize;
+        }
+
+        boolean filtersSpecialty() {
+            return specialtyMatches != null;
+        }
+
+        long estimatedMatches() {
+            if (catalogSize == 0) {
+                return 0;
+            }
+            double selectivity = (double) priceRows() / catalogSize
+                * specialtyRows / catalogSize
+                * textRows / catalogSize;
+            return (long) Math.ceil(selectivity * catalogSize);
+        }
+    }
+
+    private QueryPlanner() {
+    }
+
+    static Plan plan(Estimates estimates, CardQuery query, CardOrder order, int bucketWidth, int wanted) {
+        long n = estimates.catalogSize();
+        long matches = estimates.estimatedMatches();
+        int textPredicates = query.text() == null ? 0 : 1;
+
+        // Walking the requested order: about wanted * n / matches rows before the window is full.
+        long walked = matches == 0 ? n : Math.min(n, (long) Math.ceil((double) wanted * n / matches));
+        Plan best = new Plan(Access.WALK_ORDER, true, matches, walked * (1 + textPredicates * TEXT_VERIFY_COST));
+
+        if (estimates.filtersPrice()) {
+            best = cheaper(best, candidates(Access.PRICE_RANGE, order == CardOrder.PRICE,
+                0, estimates.priceRows(), textPredicates, matches, wanted));
+        }
+        if (estimates.filtersSpecialty()) {
+            best = cheaper(best, candidates(Access.SPECIALTY_BITMAP, order == CardOrder.CATALOG,
+                0, estimates.specialtyRows(), textPredicates, matches, wanted));
+        }
+        if (estimates.filtersSpecialty() && estimates.filtersPrice()) {
+            // Building the price bitmap ORs the covered buckets and sorts the rows of the two edge buckets.
+            long setup = (estimates.specialtyRows() + estimates.priceRows()) / BITMAP_ROWS_PER_OP + 2L * bucketWidth;
+            long intersection = n == 0 ? 0 : (long) Math.ceil((double) estimates.specialtyRows() * estimates.priceRows() / n);
+            best = cheaper(best, candidates(Access.SPECIALTY_AND_PRICE_BITMAPS, order == CardOrder.CATALOG,
+                setup, intersection, textPredicates, matches, wanted));
+        }
+        // Only text long enough to have trigrams can be looked up in the postings.
+        if (query.text() != null && query.text().length() >= 3) {
+            // Intersecting the posting lists reads about as many entries as the candidates they leave.
+            best = cheaper(best, candidates(Access.TEXT_POSTINGS, order == CardOrder.CATALOG,
+                estimates.textRows(), estimates.textRows(), textPredicates, matches, wanted));
+        }
+        return best;
+    }
+
+    // An index access: setup, then each candidate tested against the remaining predicates.
+    private static Plan candidates(
+        Access access, boolean inOrder, long setup, long candidates, int textPredicates, long matches, int wanted
+    ) {
+        long perCandidate = 1 + (long) textPredicates * TEXT_VERIFY_COST;
+        if (inOrder) {
+            long tested = matches == 0 ? candidates
+                : Math.min(candidates, (long) Math.ceil((double) wanted * candidates / matches));
+            return new Plan(access, true, matches, setup + tested * perCandidate);
+        }
+        int k = (int) Math.max(Math.min(wanted, matches), 1);
+        long heap = matches * (1 + (31 - Integer.numberOfLeadingZeros(k)));
+        return new Plan(access, false, matches, setup + candidates * perCandidate + heap);
+    }
+
+    private static Plan cheaper(Plan a, Plan b) {
+        return b.estimatedCost() < a.estimatedCost() ? b : a;
+    }
+}
@@ -1,58 +1,559 @@
 package edu.byui.apj.storefront.api.service;
 
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.io.Reader;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
 import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.IntPredicate;
+import java.util.function.IntUnaryOperator;
+import java.util.stream.IntStream;
 
-import org.apache.commons.csv.CSVFormat;
-import org.apache.commons.csv.CSVRecord;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.io.ClassPathResource;
+import org.roaringbitmap.PeekableIntIterator;
+import org.roaringbitmap.RoaringBitmap;
 import org.springframework.stereotype.Service;
 
+import edu.byui.apj.storefront.api.catalog.CardCatalog;
+import edu.byui.apj.storefront.api.catalog.CardChange;
+import edu.byui.apj.storefront.api.catalog.CardChangeLog;
+import edu.byui.apj.storefront.api.catalog.CardCursor;
+import edu.byui.apj.storefront.api.catalog.CardOrder;
+import edu.byui.apj.storefront.api.catalog.CardRows;
+import edu.byui.apj.storefront.api.catalog.CatalogDelta;
+import edu.byui.apj.storefront.api.catalog.CatalogSnapshot;
+import edu.byui.apj.storefront.api.catalog.CatalogSnapshotFile;
+import edu.byui.apj.storefront.api.catalog.CsvCatalogLoader;
+import edu.byui.apj.storefront.api.catalog.FilterBitmaps;
+import edu.byui.apj.storefront.api.catalog.LongIntHashMap;
+import edu.byui.apj.storefront.api.catalog.SortIndex;
+import edu.byui.apj.storefront.api.catalog.TextHeap;
+import edu.byui.apj.storefront.api.catalog.TrigramIndex;
+import edu.byui.apj.storefront.api.model.CardFacets;
+import edu.byui.apj.storefront.api.model.CardPage;
+import edu.byui.apj.storefront.api.model.CardSuggestion;
 import edu.byui.apj.storefront.api.model.TradingCard;
 
+/**
+ * Serves the catalog from immutable {@link CatalogSnapshot} versions. Readers take the current
+ * version from an atomic reference and never wait. Writers take a lock, apply their change to the
+ * current version's delta and publish the result, so a write costs about the size of the delta
+ * rather than of the catalog.
+ * <p>
+ * Once the delta reaches the compaction threshold, or the compaction delay after the first write,
+ * the live rows are indexed as a new base on the maintenance thread. Writes made during the build
+ * are replayed onto the new base before it is published. The indexes only hold the base rows: a
+ * search leaves out dead ones and scans the written rows as well, which the compaction threshold
+ * keeps few.
+ * <p>
+ * With catalog.wal.dir set, every change is appended to a {@link CardChangeLog} under the write
+ * lock, and is published once the log has synced it; writers wait outside the lock, so they share
+ * fsyncs. Until then later writes are checked against it, but readers do not see it, so a failed
+ * sync never shows a change that a restart would lose. Each compaction or reload also writes a
+ * checkpoint, and startup replays the log tail on top of the latest one.
+ * <p>
+ * A reload replaces the source rows only: the latest write per card since the source was first loaded
+ * is kept, applied to the reloaded rows, and saved with each checkpoint so it outlives restarts.
+ */
+@Slf4j
 @Service
 public class TradingCardService {
 
-    private final List<TradingCard> tradingCards = new ArrayList<>();
+    public static final int DEFAULT_COMPACTION_THRESHOLD = 4096;
+    public static final long DEFAULT_COMPACTION_DELAY_MS = 30_000;
+
+    private final String csvPath;
+    private final String snapshotPath;
+    private final CardQueryCache queryCache;
+    private final CatalogScanExecutor scanExecutor;
+    private final int compactionThreshold;
+    private final long compactionDelayMs;
+    // Null when writes are kept in memory only.
+    private final CardChangeLog changeLog;
+    private final AtomicReference<CatalogSnapshot> snapshot = new AtomicReference<>();
+    private final AtomicLong versions = new AtomicLong();
+    private final Object writeLock = new Object();
+    // Reloads and compactions run here one at a time, so they never race each other.
+    private final ScheduledExecutorService maintenanceExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "catalog-maintenance");
+        thread.setDaemon(true);
+        return thread;
+    });
+    // Guarded by writeLock: the compaction waiting to start, and the changes written while one builds.
+    private ScheduledFuture<?> compaction;
+    private List<CardChange> replay;
+    // Guarded by writeLock: the latest change per card written through the API since the source was loaded.
+    private final Map<Long, CardChange> written = new LinkedHashMap<>();
+    // Guarded by writeLock: the newest written version, which writes are checked against and applied to, and the
+    // log sync of its last change. With a change log it runs ahead of the published snapshot until that completes.
+    private CatalogSnapshot head;
+    private CompletableFuture<Void> logged = CompletableFuture.completedFuture(null);
 
     public TradingCardService() {
-        loadAllFromCsv();
+        this("", "", new CardQueryCache());
+    }
+
+    public TradingCardService(String csvPath) {
+        this(csvPath, "", new CardQueryCache());
+    }
+
+    public TradingCardService(String csvPath, String snapshotPath, CardQueryCache queryCache) {
+        this(csvPath, snapshotPath, queryCache, new CatalogScanExecutor());
+    }
+
+    public TradingCardService(
+        String csvPath, String snapshotPath, CardQueryCache queryCache, CatalogScanExecutor scanExecutor
+    ) {
+        this(csvPath, snapshotPath, queryCache, scanExecutor, DEFAULT_COMPACTION_THRESHOLD, DEFAULT_COMPACTION_DELAY_MS,
+            "", 0);
+    }
+
+    // With a change log directory, the catalog source is only read to seed an empty log; afterwards the
+    // latest checkpoint and the log tail are the catalog.
+    @Autowired
+    public TradingCardService(
+        @Value("${catalog.csv-path:}") String csvPath,
+        @Value("${catalog.snapshot-path:}") String snapshotPath,
+        CardQueryCache queryCache,
+        CatalogScanExecutor scanExecutor,
+        @Value("${catalog.write.compaction-threshold:4096}") int compactionThreshold,
+        @Value("${catalog.write.compaction-delay-ms:30000}") long compactionDelayMs,
+        @Value("${catalog.wal.dir:}") String walDirectory,
+        @Value("${catalog.wal.sync-interval-ms:0}") long walSyncIntervalMs
+    ) {
+        this(csvPath, snapshotPath, queryCache, scanExecutor, compactionThreshold, compactionDelayMs, walDirectory,
+            walSyncIntervalMs, CardChangeLog.SegmentFiles.DEFAULT);
+    }
+
+    TradingCardService(
+        String csvPath,
+        String snapshotPath,
+        CardQueryCache queryCache,
+        CatalogScanExecutor scanExecutor,
+        int compactionThreshold,
+        long compactionDelayMs,
+        String walDirectory,
+        long walSyncIntervalMs,
+        CardChangeLog.SegmentFiles walSegmentFiles
+    ) {
+        this.csvPath = csvPath;
+        this.snapshotPath = snapshotPath;
+        this.queryCache = queryCache;
+        this.scanExecutor = scanExecutor;
+        this.compactionThreshold = compactionThreshold;
+        this.compactionDelayMs = compactionDelayMs;
+        if (walDirectory.isBlank()) {
+            changeLog = null;
+            head = CatalogSnapshot.build(versions.incrementAndGet(), loadCatalog());
+            snapshot.set(head);
+            return;
+        }
+
+        CardChangeLog.Opened opened;
+        try {
+            opened = CardChangeLog.open(Path.of(walDirectory), walSyncIntervalMs, this::loadCatalog, walSegmentFiles);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to open the catalog change log", e);
+        }
+        changeLog = opened.log();
+        remember(opened.written());
+        remember(opened.changes());
+        CatalogSnapshot recovered = CatalogSnapshot.build(versions.incrementAndGet(), opened.catalog());
+        if (!opened.changes().isEmpty()) {
+            recovered = recovered.apply(versions.incrementAndGet(), opened.changes());
+        }
+        synchronized (writeLock) {
+            head = recovered;
+            snapshot.set(recovered);
+            if (!recovered.delta().isEmpty()) {
+                scheduleCompaction(recovered);
+            }
+        }
+    }
+
+    public CatalogSnapshot getSnapshot() {
+        return snapshot.get();
+    }
+
+    // The ETag a response to this request would carry if it were answered from the current snapshot.
+    public String currentETag(String requestKey) {
+        return snapshot.get().etag(requestKey);
+    }
+
+    // Builds a new snapshot and its indexes on the maintenance thread, then publishes it with one swap.
+    // Requests already running keep the snapshot they started with; a failed reload keeps the old one.
+    // Cards written through the API are applied again on top of the source, and writes made during the
+    // build are replayed onto the result, as for a compaction.
+    public CompletableFuture<CatalogSnapshot> reload() {
+        return CompletableFuture.supplyAsync(this::reloadNow, maintenanceExecutor);
+    }
+
+    // Folds the written rows into a new base on the maintenance thread. Writers go on meanwhile; their
+    // changes are replayed onto the new base before it is published.
+    public CompletableFuture<CatalogSnapshot> compact() {
+        return CompletableFuture.supplyAsync(this::compactNow, maintenanceExecutor);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        maintenanceExecutor.shutdownNow();
+        if (changeLog != null) {
+            try {
+                changeLog.close();
+            } catch (IOException e) {
+                log.warn("Failed to close the catalog change log", e);
+            }
+        }
+    }
+
+    // Creates the card, with the next free id when it has none. Throws IllegalStateException when the id is taken.
+    public CardRows createCard(TradingCard card) {
+        long id;
+        CompletableFuture<CatalogSnapshot> written;
+        synchronized (writeLock) {
+            CatalogSnapshot current = head;
+            id = card.getId() != null ? card.getId() : current.maxId() + 1;
+            if (current.rowOf(id) != LongIntHashMap.MISSING) {
+                throw new IllegalStateException("A card with id " + id + " already exists");
+            }
+            written = write(current, toChange(id, card));
+        }
+        return writtenRow(durable(written), id);
+    }
+
+    // Replaces every field of the card; empty when there is no card with the id.
+    public Optional<CardRows> updateCard(long id, TradingCard card) {
+        if (card.getId() != null && card.getId() != id) {
+            throw new IllegalArgumentException("Card id " + card.getId() + " does not match " + id);
+        }
+        CardChange change = toChange(id, card);
+        CompletableFuture<CatalogSnapshot> written;
+        synchronized (writeLock) {
+            CatalogSnapshot current = head;
+            if (current.rowOf(id) == LongIntHashMap.MISSING) {
+                return Optional.empty();
+            }
+            written = write(current, change);
+        }
+        return Optional.of(writtenRow(durable(written), id));
+    }
+
+    // False when there is no card with the id.
+    public boolean deleteCard(long id) {
+        CompletableFuture<CatalogSnapshot> written;
+        synchronized (writeLock) {
+            CatalogSnapshot current = head;
+            if (current.rowOf(id) == LongIntHashMap.MISSING) {
+                return false;
+            }
+            written = write(current, CardChange.delete(id));
+        }
+        durable(written);
+        return true;
+    }
+
+    private static CardChange toChange(long id, TradingCard card) {
+        if (card.getName() == null || card.getName().isBlank()) {
+            throw new IllegalArgumentException("name is required");
+        }
+        if (card.getSpecialty() == null || card.getSpecialty().isBlank()) {
+            throw new IllegalArgumentException("specialty is required");
+        }
+        if (card.getPrice() == null || card.getPrice().signum() < 0) {
+            throw new IllegalArgumentException("price must be zero or more");
+        }
+        long cents;
+        try {
+            cents = CardCatalog.toCents(card.getPrice(), RoundingMode.UNNECESSARY);
+        } catch (ArithmeticException e) {
+            throw new IllegalArgumentException("price must be in whole cents");
+        }
+        return CardChange.put(id, card.getName(), card.getSpecialty(),
+            card.getContribution() == null ? "" : card.getContribution(), cents,
+            card.getImageUrl() == null ? "" : card.getImageUrl());
+    }
+
+    private static CardRows writtenRow(CatalogSnapshot written, long id) {
+        return new CardRows(written, new int[] {written.rowOf(id)});
+    }
+
+    // Called with the write lock held. Changes are logged in the order they are written; without a change log the
+    // change is published at once, otherwise by durable() once the log has synced it.
+    private CompletableFuture<CatalogSnapshot> write(CatalogSnapshot current, CardChange change) {
+        CatalogSnapshot next = current.apply(versions.incrementAndGet(), List.of(change));
+        if (changeLog == null) {
+            publish(next);
+        } else {
+            logged = changeLog.append(change);
+        }
+        head = next;
+        remember(List.of(change));
+        if (replay != null) {
+            replay.add(change);
+        }
+        scheduleCompaction(next);
+        return logged.thenApply(ignored -> next);
+    }
+
+    // Waited for outside the write lock, so that writers arriving meanwhile join the same fsync. The log syncs
+    // changes in order, so a later write or a compaction may already have published this one.
+    private CatalogSnapshot durable(CompletableFuture<CatalogSnapshot> written) {
+        CatalogSnapshot next;
+        try {
+            next = written.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof IOException io) {
+                throw new UncheckedIOException("Failed to log the card change", io);
+            }
+            throw e;
+        }
+        synchronized (writeLock) {
+            if (next.version() > snapshot.get().version()) {
+                publish(next);
+            }
+        }
+        return next;
+    }
+
+    // Called with the write lock held. Returns the generation a checkpoint of the current catalog gets, or 0
+    // without a change log.
+    private long rotateLog() {
+        if (changeLog == null) {
+            return 0;
+        }
+        try {
+            return changeLog.rotate();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to rotate the catalog change log", e);
+        }
+    }
+
+    // A compaction's checkpoint holds the cards its segments already log, so a failed one only costs a longer
+    // replay: the segments it would replace are kept.
+    private void checkpoint(long generation, CardCatalog catalog, List<CardChange> carried) {
+        if (changeLog == null) {
+            return;
+        }
+        try {
+            changeLog.checkpoint(generation, catalog, carried);
+        } catch (IOException e) {
+            log.error("Failed to write catalog checkpoint {}", generation, e);
+        }
+    }
+
+    // Called with the write lock held. Query cache entries are keyed by version, so a write leaves the older ones
+    // to age out of the cache; a reload or compaction replaces the base and drops them at once.
+    private void publish(CatalogSnapshot next) {
+        snapshot.set(next);
+    }
+
+    // Called with the write lock held, or from the constructor.
+    private void remember(List<CardChange> changes) {
+        for (CardChange change : changes) {
+            // Removed first, so the map keeps the cards in the order of their latest write.
+            written.remove(change.id());
+            written.put(change.id(), change);
+        }
+    }
+
+    // A snapshot built outside the lock may have been overtaken by writes; it is published as a newer version.
+    private CatalogSnapshot newest(CatalogSnapshot built, CatalogSnapshot current) {
+        return built.version() > current.version() ? built : built.apply(versions.incrementAndGet(), List.of());
+    }
+
+    // Called with the write lock held. A pending compaction is brought forward once the delta is large.
+    private void scheduleCompaction(CatalogSnapshot current) {
+        boolean due = current.delta().pendingRows() >= compactionThreshold;
+        if (compaction != null
+            && !(due && compaction.getDelay(TimeUnit.MILLISECONDS) > 0 && compaction.cancel(false))) {
+            return;
+        }
+        compaction = maintenanceExecutor.schedule(() -> {
+            try {
+                compactNow();
+            } catch (RuntimeException e) {
+                log.error("Catalog compaction failed", e);
+            }
+        }, due ? 0 : compactionDelayMs, TimeUnit.MILLISECONDS);
+    }
+
+    private CatalogSnapshot compactNow() {
+        CatalogSnapshot from;
+        long generation;
+        List<CardChange> carried;
+        synchronized (writeLock) {
+            compaction = null;
+            from = head;
+            if (from.delta().isEmpty()) {
+                return from;
+            }
+            generation = rotateLog();
+            carried = List.copyOf(written.values());
+            replay = new ArrayList<>();
+        }
+        long started = System.nanoTime();
+        CatalogSnapshot built;
+        try {
+            built = CatalogSnapshot.build(versions.incrementAndGet(), from.delta().liveCatalog());
+        } catch (RuntimeException e) {
+            clearReplay();
+            throw e;
+        }
+        CatalogSnapshot next = publishBuilt(built);
+        log.info("Compacted catalog version {} into version {} with {} cards in {} ms",
+            from.version(), next.version(), next.liveCount(), (System.nanoTime() - started) / 1_000_000);
+        checkpoint(generation, built.catalog(), carried);
+        return next;
+    }
+
+    // A rotated segment may still hold writes dropped from the catalog it came from, so the reloaded catalog is
+    // only published once its checkpoint is on disk; until then a restart recovers the catalog the reload replaces.
+    private CatalogSnapshot reloadNow() {
+        long generation;
+        List<CardChange> carried;
+        synchronized (writeLock) {
+            generation = rotateLog();
+            carried = List.copyOf(written.values());
+            replay = new ArrayList<>();
+        }
+        long started = System.nanoTime();
+        CatalogSnapshot previous = snapshot.get();
+        CatalogSnapshot built;
+        try {
+            CardCatalog reloaded = loadCatalog().withChanges(carried);
+            built = CatalogSnapshot.build(versions.incrementAndGet(), reloaded);
+            if (changeLog != null) {
+                changeLog.checkpoint(generation, reloaded, carried);
+            }
+        } catch (IOException e) {
+            clearReplay();
+            throw new UncheckedIOException("Failed to write the checkpoint of the reloaded catalog", e);
+        } catch (RuntimeException e) {
+            clearReplay();
+            throw e;
+        }
+        CatalogSnapshot next = publishBuilt(built);
+        log.info("Published catalog version {} with {} cards, {} written through the API, in {} ms "
+                + "(was version {} with {} cards)", next.version(), next.liveCount(), carried.size(),
+            (System.nanoTime() - started) / 1_000_000, previous.version(), previous.liveCount());
+        return next;
+    }
+
+    private void clearReplay() {
+        synchronized (writeLock) {
+            replay = null;
+        }
+    }
+
+    // Replays the writes made while the snapshot was built on top of it and makes it the head. The rotation synced
+    // the writes before the build; the replayed ones are published once they are synced too.
+    private CatalogSnapshot publishBuilt(CatalogSnapshot built) {
+        CatalogSnapshot next;
+        CompletableFuture<Void> synced;
+        synchronized (writeLock) {
+            next = replay.isEmpty()
+                ? newest(built, head)
+                : built.apply(versions.incrementAndGet(), replay);
+            if (!replay.isEmpty()) {
+                log.info("Replayed {} writes onto catalog version {}", replay.size(), built.version());
+            }
+            replay = null;
+            head = next;
+            synced = logged;
+        }
+        durable(synced.thenApply(ignored -> next));
+        queryCache.invalidateAll();
+        return next;
     }
 
-    private void loadAllFromCsv() {
+    // A binary snapshot is preferred because it opens without parsing.
+    private CardCatalog loadCatalog() {
+        if (snapshotPath.isBlank()) {
+            return loadAllFromCsv();
+        }
         try {
-            ClassPathResource resource = new ClassPathResource("pioneers.csv");
-            Reader reader = new InputStreamReader(resource.getInputStream());
-            Iterable<CSVRecord> records = CSVFormat.DEFAULT.builder()
-                .setHeader()
-                .build()
-                .parse(reader);
-
-            for (CSVRecord record : records) {
-                long id = Integer.parseInt(record.get("ID"));
-                String name = record.get("Name");
-                String specialty = record.get("Specialty");
-                String contribution = record.get("Contribution");
-                BigDecimal price = new BigDecimal(record.get("Price"));
-                String imgURL = record.get("ImageUrl");
-                tradingCards.add(new TradingCard(id, name, specialty, contribution, price, imgURL));
+            return CatalogSnapshotFile.read(Path.of(snapshotPath));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to open the trading card catalog snapshot", e);
+        }
+    }
+
+    // Loads the catalog from csvPath when it is set, otherwise from the bundled pioneers.csv.
+    private CardCatalog loadAllFromCsv() {
+        CsvCatalogLoader loader = new CsvCatalogLoader();
+        try {
+            if (csvPath.isBlank()) {
+                ClassPathResource resource = new ClassPathResource("pioneers.csv");
+                try (InputStream in = resource.getInputStream()) {
+                    return loader.load(ByteBuffer.wrap(in.readAllBytes()), resource.getDescription()).catalog();
+                }
             }
+            return loader.load(Path.of(csvPath)).catalog();
         } catch (IOException e) {
-            e.printStackTrace();
+            throw new UncheckedIOException("Failed to load the trading card catalog", e);
         }
     }
 
     public List<TradingCard> getCards(int page, int size) {
-        List<Integer> pair = handlePagination(page, size);
+        return getCardRows(page, size).toCards();
+    }
+
+    // The rows of a page are always a contiguous range of catalog order.
+    public CardRows getCardRows(int page, int size) {
+        CatalogSnapshot current = snapshot.get();
+        List<Integer> pair = handlePagination(current.liveCount(), page, size);
         int start = pair.getFirst();
         int end = pair.getLast();
-        return tradingCards.subList(start, end);
+        CatalogDelta delta = current.delta();
+        return new CardRows(current,
+            delta.isEmpty() ? IntStream.range(start, end).toArray() : delta.catalogRange(start, end - start));
+    }
+
+    public Optional<TradingCard> getCard(long id) {
+        CardRows rows = getCardRowsByIds(List.of(id));
+        return rows.size() == 0 ? Optional.empty() : Optional.of(rows.toCards().getFirst());
+    }
+
+    // Rows of the given ids in the order asked for; unknown ids are left out.
+    public CardRows getCardRowsByIds(List<Long> ids) {
+        CatalogSnapshot current = snapshot.get();
+        int[] rows = new int[ids.size()];
+        int found = 0;
+        for (long id : ids) {
+            int row = current.rowOf(id);
+            if (row != LongIntHashMap.MISSING) {
+                rows[found++] = row;
+            }
+        }
+        return new CardRows(current, found == rows.length ? rows : Arrays.copyOf(rows, found));
+    }
+
+    // Cursor mode of getCards: cards in id order after the cursor, or from the start for a blank cursor.
+    public CardPage getCardsPage(String cursor, int size) {
+        return getCardsFilterPage(Optional.empty(), Optional.empty(), Optional.empty(), Optional.empty(), cursor, size);
     }
 
     public List<TradingCard> getCardsFilter(
@@ -61,41 +562,366 @@ public class TradingCardService {
         Optional<String> maybeSpecialty,
         Optional<String> maybeSort
     ) {
+        return getCardsFilterRows(maybeMinPrice, maybeMaxPrice, maybeSpecialty, maybeSort).toCards();
+    }
+
+    public CardRows getCardsFilterRows(
+        Optional<BigDecimal> maybeMinPrice,
+        Optional<BigDecimal> maybeMaxPrice,
+        Optional<String> maybeSpecialty,
+        Optional<String> maybeSort
+    ) {
+        return getCardsFilterRows(maybeMinPrice, maybeMaxPrice, maybeSpecialty, maybeSort, 0, CardQuery.NO_LIMIT);
+    }
+
+    public CardRows getCardsFilterRows(
+        Optional<BigDecimal> maybeMinPrice,
+        Optional<BigDecimal> maybeMaxPrice,
+        Optional<String> maybeSpecialty,
+        Optional<String> maybeSort,
+        int offset,
+        int limit
+    ) {
+        return getCardsFilterRows(CardQuery.filter(maybeMinPrice, maybeMaxPrice, maybeSpecialty, maybeSort).window(offset, limit));
+    }
+
+    // Only the requested window is materialized: scans stop once offset + limit rows have matched.
+    public CardRows getCardsFilterRows(CardQuery query) {
+        CatalogSnapshot current = snapshot.get();
+        CardOrder order = query.sort() == null ? CardOrder.CATALOG : CardOrder.fromSort(query.sort());
+        return new CardRows(current, queryCache.rows(current, query,
+            () -> filterRows(current, query, order, null, query.offset(), query.limit())));
+    }
+
+    public CardPage getCardsFilterPage(
+        Optional<BigDecimal> maybeMinPrice,
+        Optional<BigDecimal> maybeMaxPrice,
+        Optional<String> maybeSpecialty,
+        Optional<String> maybeSort,
+        String cursor,
+        int size
+    ) {
+        return getCardsFilterPage(CardQuery.filter(maybeMinPrice, maybeMaxPrice, maybeSpecialty, maybeSort), cursor, size);
+    }
+
+    // Cursor mode of getCardsFilter. Unsorted results come back in id order so that they have a stable key.
+    public CardPage getCardsFilterPage(CardQuery query, String cursor, int size) {
+        CatalogSnapshot current = snapshot.get();
+        CardOrder order = query.sort() == null ? CardOrder.ID : CardOrder.fromSort(query.sort());
+        CardCursor after = null;
+        if (!cursor.isBlank()) {
+            after = CardCursor.decode(cursor);
+            if (after.order() != order) {
+                throw new IllegalArgumentException("Cursor does not match the requested sort");
+            }
+        }
+
+        int pageSize = Math.max(size, 1);
+        // One extra row tells us whether there is a next page without a separate count.
+        int[] rows = filterRows(current, query, order, after, 0, pageSize + 1);
+        if (rows.length <= pageSize) {
+            return new CardPage(new CardRows(current, rows), null);
+        }
+        int[] page = Arrays.copyOf(rows, pageSize);
+        String nextCursor = CardCursor.at(order, current.catalog(), page[pageSize - 1]).encode();
+        return new CardPage(new CardRows(current, page), nextCursor);
+    }
+
+    // The planner picks the access path over the base rows; every predicate it does not guarantee is applied
+    // to the candidates. Matching written rows are merged in afterwards.
+    private int[] filterRows(
+        CatalogSnapshot current, CardQuery query, CardOrder order, CardCursor after, int skip, int limit
+    ) {
+        CardCatalog catalog = current.catalog();
+        SortIndex sortIndex = current.sortIndex();
+        TrigramIndex searchIndex = current.searchIndex();
+        FilterBitmaps bitmaps = current.filterBitmaps();
+        CatalogDelta delta = current.delta();
+        int wanted = (int) Math.min((long) skip + limit, Integer.MAX_VALUE);
+        int fromPosition = after == null ? 0 : sortIndex.positionAfter(after);
+
+        QueryPlanner.Estimates estimates = QueryPlanner.Estimates.of(current, query);
+        QueryPlanner.Plan plan = QueryPlanner.plan(estimates, query, order, bitmaps.bucketWidth(), wanted);
+        log.debug("Filter {} in {} order: {}", query.key(), order, plan);
+
+        long minCents = query.minCents();
+        long maxCents = query.maxCents();
+        boolean[] specialtyMatches = estimates.specialtyMatches();
+        String text = query.text();
+        byte[] needle = text == null ? null : TextHeap.utf8(text);
+        IntPredicate inPriceRange = row -> catalog.priceCents(row) >= minCents && catalog.priceCents(row) <= maxCents;
+        IntPredicate inSpecialty = row -> specialtyMatches == null || specialtyMatches[catalog.specialtyCode(row)];
+        IntPredicate hasText = row -> needle == null || searchIndex.matches(row, needle);
+        IntPredicate afterCursor = row -> sortIndex.position(order, row) >= fromPosition;
+        IntUnaryOperator orderKey = row -> sortIndex.position(order, row);
+        IntPredicate live = delta.hasDeadRows() ? delta::isLive : null;
+
+        int[] rows = switch (plan.access()) {
+            case WALK_ORDER -> scanExecutor.firstMatches(fromPosition, sortIndex.size(),
+                position -> sortIndex.row(order, position), whenLive(inPriceRange.and(inSpecialty).and(hasText), live),
+                wanted);
+            case PRICE_RANGE -> plan.inOrder()
+                ? scanExecutor.firstMatches(Math.max(fromPosition, estimates.priceStart()), estimates.priceEnd(),
+                    position -> sortIndex.row(order, position), whenLive(inSpecialty.and(hasText), live), wanted)
+                : scanExecutor.smallestKeys(estimates.priceStart(), estimates.priceEnd(),
+                    position -> sortIndex.row(CardOrder.PRICE, position),
+                    whenLive(inSpecialty.and(hasText).and(afterCursor), live), wanted, orderKey);
+            case SPECIALTY_BITMAP -> fromBitmap(delta.withoutDead(bitmaps.specialtyRows(specialtyMatches)),
+                plan.inOrder(), inPriceRange.and(hasText), afterCursor, fromPosition, wanted, orderKey);
+            case SPECIALTY_AND_PRICE_BITMAPS -> fromBitmap(
+                delta.withoutDead(bitmaps.rows(estimates.priceStart(), estimates.priceEnd(), specialtyMatches)),
+                plan.inOrder(), hasText, afterCursor, fromPosition, wanted, orderKey);
+            case TEXT_POSTINGS -> fromCandidates(searchIndex.candidates(text), plan.inOrder(),
+                whenLive(inPriceRange.and(inSpecialty).and(hasText), live), afterCursor, fromPosition, wanted, orderKey);
+        };
+
+        if (delta.size() > 0) {
+            IntPredicate appendedMatch = inPriceRange.and(inSpecialty).and(row -> text == null || delta.matches(row, text));
+            int from = after == null ? 0 : delta.positionAfter(after);
+            rows = delta.merge(order, rows, delta.firstMatches(order, from, appendedMatch, wanted), wanted);
+        }
+        return skip(rows, skip);
+    }
+
+    private static IntPredicate whenLive(IntPredicate filter, IntPredicate live) {
+        return live == null ? filter : filter.and(live);
+    }
+
+    // A bitmap iterates in row order, which is catalog order, so an in-order plan stops after the window.
+    private int[] fromBitmap(
+        RoaringBitmap candidates, boolean inOrder, IntPredicate residual, IntPredicate afterCursor,
+        int fromPosition, int wanted, IntUnaryOperator orderKey
+    ) {
+        if (!inOrder) {
+            return fromCandidates(candidates.toArray(), false, residual, afterCursor, fromPosition, wanted, orderKey);
+        }
+        PeekableIntIterator iterator = candidates.getIntIterator();
+        iterator.advanceIfNeeded(fromPosition);
+        int[] rows = new int[(int) Math.min(wanted, candidates.getLongCardinality())];
+        int count = 0;
+        while (count < rows.length && iterator.hasNext()) {
+            int row = iterator.next();
+            if (residual.test(row)) {
+                rows[count++] = row;
+            }
+        }
+        return count == rows.length ? rows : Arrays.copyOf(rows, count);
+    }
+
+    // Candidates are ascending rows; in catalog order the cursor is a binary search into them.
+    private int[] fromCandidates(
+        int[] candidates, boolean inOrder, IntPredicate residual, IntPredicate afterCursor,
+        int fromPosition, int wanted, IntUnaryOperator orderKey
+    ) {
+        if (inOrder) {
+            int start = Arrays.binarySearch(candidates, fromPosition);
+            return scanExecutor.firstMatches(start >= 0 ? start : -start - 1, candidates.length,
+                i -> candidates[i], residual, wanted);
+        }
+        return scanExecutor.smallestKeys(0, candidates.length, i -> candidates[i], residual.and(afterCursor),
+            wanted, orderKey);
+    }
+
+    private static int[] skip(int[] rows, int skip) {
+        return skip == 0 ? rows : Arrays.copyOfRange(rows, Math.min(skip, rows.length), rows.length);
+    }
+
+    public CardFacets getCardsFacets(
+        Optional<BigDecimal> maybeMinPrice,
+        Optional<BigDecimal> maybeMaxPrice,
+        Optional<String> maybeSpecialty,
+        BigDecimal bucketWidth
+    ) {
+        return getCardsFacets(maybeMinPrice, maybeMaxPrice, maybeSpecialty, Optional.empty(), bucketWidth);
+    }
+
+    // One pass over the price range in price order: specialty counts are taken before the specialty filter,
+    // and since prices arrive sorted each bucket is finished before the next one starts. Text narrows the pass
+    // the same way it narrows the filter, so the counts describe the filtered list.
+    public CardFacets getCardsFacets(
+        Optional<BigDecimal> maybeMinPrice,
+        Optional<BigDecimal> maybeMaxPrice,
+        Optional<String> maybeSpecialty,
+        Optional<String> maybeQuery,
+        BigDecimal bucketWidth
+    ) {
+        CatalogSnapshot current = snapshot.get();
+        CardCatalog catalog = current.catalog();
+        SortIndex sortIndex = current.sortIndex();
+        CardQuery query = CardQuery.filter(maybeMinPrice, maybeMaxPrice, maybeSpecialty, Optional.empty(), maybeQuery);
+        boolean[] specialtyMatches = query.specialty() == null ? null : catalog.matchSpecialties(query.specialty());
+        long widthCents = CardCatalog.toCents(bucketWidth, RoundingMode.CEILING);
+        if (widthCents <= 0) {
+            throw new IllegalArgumentException("bucketWidth must be at least 0.01");
+        }
 
-        List<TradingCard> filteredCards = new ArrayList<>(tradingCards.stream()
-            .filter(card ->
-                maybeMinPrice.map(price -> card.getPrice().compareTo(price) >= 0)
-                    .orElse(true))
-            .filter(card ->
-                maybeMaxPrice.map(price -> card.getPrice().compareTo(price) <= 0)
-                    .orElse(true))
-            .filter(card ->
-                maybeSpecialty.map(spec -> clean(card.getSpecialty()).contains(clean(spec)))
-                    .orElse(true))
-            .toList());
-
-        maybeSort.ifPresent(sort -> {
-            if (sort.equals("price")) {
-                filteredCards.sort(Comparator.comparing(TradingCard::getPrice));
-            } else if (sort.equals("name")) {
-                filteredCards.sort(Comparator.comparing(TradingCard::getName));
+        CatalogDelta delta = current.delta();
+        long minCents = query.minCents();
+        long maxCents = query.maxCents();
+        String text = query.text();
+        IntPredicate hasText = text == null ? null : textMatch(current.searchIndex(), text);
+        // Written rows in the price range, merged into the walk over the base rows by price.
+        int[] appended = delta.firstMatches(CardOrder.PRICE, 0,
+            row -> catalog.priceCents(row) >= minCents && catalog.priceCents(row) <= maxCents
+                && (text == null || delta.matches(row, text)),
+            Integer.MAX_VALUE);
+        boolean skipDead = delta.hasDeadRows();
+
+        int[] specialtyCounts = new int[catalog.specialtyCount()];
+        List<CardFacets.PriceBucket> buckets = new ArrayList<>();
+        int total = 0;
+        long bucket = 0;
+        int bucketCount = 0;
+        int end = sortIndex.priceUpperBound(maxCents);
+        int position = sortIndex.priceLowerBound(minCents);
+        int next = 0;
+        while (position < end || next < appended.length) {
+            int row;
+            if (next == appended.length || (position < end
+                && catalog.priceCents(sortIndex.row(CardOrder.PRICE, position)) <= catalog.priceCents(appended[next]))) {
+                row = sortIndex.row(CardOrder.PRICE, position++);
+                if ((skipDead && !delta.isLive(row)) || (hasText != null && !hasText.test(row))) {
+                    continue;
+                }
             } else {
-                throw new AssertionError("Invalid sort: " + sort); // Should be caught in controller
+                row = appended[next++];
+            }
+            int code = catalog.specialtyCode(row);
+            specialtyCounts[code]++;
+            if (specialtyMatches != null && !specialtyMatches[code]) {
+                continue;
             }
-        });
+            long rowBucket = Math.floorDiv(catalog.priceCents(row), widthCents);
+            if (bucketCount > 0 && rowBucket != bucket) {
+                buckets.add(priceBucket(bucket, widthCents, bucketCount));
+                bucketCount = 0;
+            }
+            bucket = rowBucket;
+            bucketCount++;
+            total++;
+        }
+        if (bucketCount > 0) {
+            buckets.add(priceBucket(bucket, widthCents, bucketCount));
+        }
 
-        return filteredCards;
+        List<CardFacets.SpecialtyCount> specialties = new ArrayList<>();
+        for (int code = 0; code < specialtyCounts.length; code++) {
+            if (specialtyCounts[code] > 0) {
+                specialties.add(new CardFacets.SpecialtyCount(catalog.specialty(code), specialtyCounts[code]));
+            }
+        }
+        specialties.sort(Comparator.comparingInt(CardFacets.SpecialtyCount::count).reversed()
+            .thenComparing(CardFacets.SpecialtyCount::specialty));
+        return new CardFacets(total, specialties, buckets);
+    }
+
+    // Rows outside the trigram candidates are rejected before their text is read.
+    private static IntPredicate textMatch(TrigramIndex index, String text) {
+        int[] candidates = index.candidates(text);
+        byte[] needle = TextHeap.utf8(text);
+        if (candidates == null) {
+            return row -> index.matches(row, needle);
+        }
+        RoaringBitmap candidateRows = RoaringBitmap.bitmapOf(candidates);
+        return row -> candidateRows.contains(row) && index.matches(row, needle);
+    }
+
+    private static CardFacets.PriceBucket priceBucket(long bucket, long widthCents, int count) {
+        return new CardFacets.PriceBucket(
+            CardCatalog.fromCents(bucket * widthCents), CardCatalog.fromCents((bucket + 1) * widthCents), count);
     }
 
     public List<TradingCard> getCardsSearch(String query) {
-        return tradingCards.stream()
-            .filter(card -> clean(card.getName()).contains(clean(query))
-                || clean(card.getContribution()).contains(clean(query)))
+        return getCardsSearchRows(query).toCards();
+    }
+
+    public CardRows getCardsSearchRows(String query) {
+        return getCardsSearchRows(query, 0, CardQuery.NO_LIMIT);
+    }
+
+    public CardRows getCardsSearchRows(String query, int offset, int limit) {
+        CatalogSnapshot current = snapshot.get();
+        CardQuery search = CardQuery.search(query).window(offset, limit);
+        return new CardRows(current, queryCache.rows(current, search, () -> {
+            TrigramIndex index = current.searchIndex();
+            CatalogDelta delta = current.delta();
+            String text = search.text();
+            int[] candidates = index.candidates(text);
+            byte[] needle = TextHeap.utf8(text);
+            IntUnaryOperator rowAt = candidates == null ? position -> position : position -> candidates[position];
+            int count = candidates == null ? current.sortIndex().size() : candidates.length;
+            IntPredicate live = delta.hasDeadRows() ? delta::isLive : null;
+            int[] rows = scanExecutor.firstMatches(0, count, rowAt, whenLive(row -> index.matches(row, needle), live),
+                search.end());
+            if (delta.size() > 0) {
+                rows = delta.merge(CardOrder.CATALOG, rows,
+                    delta.firstMatches(CardOrder.CATALOG, 0, row -> delta.matches(row, text), search.end()), search.end());
+            }
+            return skip(rows, search.offset());
+        }));
+    }
+
+    public CardRows getCardsFuzzySearchRows(String query, int offset, int limit) {
+        CatalogSnapshot current = snapshot.get();
+        CardQuery search = CardQuery.fuzzySearch(query).window(offset, limit);
+        return new CardRows(current, queryCache.rows(current, search, () -> {
+            CatalogDelta delta = current.delta();
+            int[] rows = current.fuzzyIndex().search(search.text(), search.end(), liveBase(delta), delta.catalog(),
+                appendedRows(delta));
+            return Arrays.copyOfRange(rows, Math.min(search.offset(), rows.length), rows.length);
+        }));
+    }
+
+    // Only the best offset + limit rows are kept while scoring.
+    public CardRows getCardsRankedSearchRows(String query, int offset, int limit) {
+        CatalogSnapshot current = snapshot.get();
+        CardQuery search = CardQuery.rankedSearch(query).window(offset, limit);
+        return new CardRows(current, queryCache.rows(current, search, () -> {
+            CatalogDelta delta = current.delta();
+            int[] rows = current.relevanceIndex().search(search.text(), search.end(), liveBase(delta), delta.catalog(),
+                appendedRows(delta));
+            return Arrays.copyOfRange(rows, Math.min(search.offset(), rows.length), rows.length);
+        }));
+    }
+
+    // Fuzzy and relevance search only index the base rows: replaced and deleted ones are left out, and the live
+    // written rows are scored on their text instead.
+    private static IntPredicate liveBase(CatalogDelta delta) {
+        return delta.hasDeadRows() ? delta::isLive : row -> true;
+    }
+
+    private static int[] appendedRows(CatalogDelta delta) {
+        return delta.firstMatches(CardOrder.CATALOG, 0, row -> true, delta.size());
+    }
+
+    // Matches any word start in a card name or specialty, heaviest first. Written cards count by their current
+    // name and specialty.
+    public List<CardSuggestion> getSuggestions(String prefix, int limit) {
+        CatalogSnapshot current = snapshot.get();
+        CatalogDelta delta = current.delta();
+        CardCatalog catalog = delta.catalog();
+        Map<String, Integer> nameChanges = new HashMap<>();
+        Map<String, Integer> specialtyChanges = new HashMap<>();
+        for (int row : delta.deadBaseRows()) {
+            nameChanges.merge(catalog.name(row), -1, Integer::sum);
+            specialtyChanges.merge(catalog.specialty(catalog.specialtyCode(row)), -1, Integer::sum);
+        }
+        for (int row : appendedRows(delta)) {
+            nameChanges.merge(catalog.name(row), 1, Integer::sum);
+            specialtyChanges.merge(catalog.specialty(catalog.specialtyCode(row)), 1, Integer::sum);
+        }
+        return current.suggestIndex().suggest(CardCatalog.clean(prefix), limit, nameChanges, specialtyChanges).stream()
+            .map(suggestion -> new CardSuggestion(
+                suggestion.text(), suggestion.kind().name().toLowerCase(Locale.ROOT), suggestion.weight()))
             .toList();
     }
 
-    private List<Integer> handlePagination(int page, int size) {
-        int maxSize = tradingCards.size();
+    private List<Integer> handlePagination(int count, int page, int size) {
+        // Deletes can empty the catalog, and there is no page size to clamp to then.
+        if (count == 0) {
+            return List.of(0, 0);
+        }
+        int maxSize = count;
 
         int clampedSize = Math.clamp(size, 1, maxSize);
         int clampedPage = Math.clamp(page, 0, (int)Math.ceil((double)(maxSize - clampedSize) / clampedSize));
@@ -103,12 +929,7 @@ public class TradingCardService {
         // subtracting 1 size because page is zero-indexed
 
         int start = clampedPage * clampedSize;
-        int end = Math.min(clampedPage * clampedSize + clampedSize, tradingCards.size());
+        int end = Math.min(clampedPage * clampedSize + clampedSize, count);
         return List.of(start, end);
     }
-
-    private String clean(String str) {
-        if (str == null) throw new AssertionError("string was null");
-        return str.trim().toLowerCase();
-    }
 }
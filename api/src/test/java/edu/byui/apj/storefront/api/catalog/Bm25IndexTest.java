@@ -0,0 +1,61 @@
+package edu.byui.apj.storefront.api.catalog;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class Bm25IndexTest {
+
+    private CardCatalog catalog;
+    private Bm25Index index;
+
+    @BeforeEach
+    void setUp() {
+        catalog = CardCatalog.builder()
+            .add(1L, "Ada Lovelace", "Algorithms_Theory", "Wrote the first algorithm for the engine.", new BigDecimal("75.99"), "img")
+            .add(2L, "Charles Babbage", "Computer Architecture", "Designed the analytical engine with Ada Lovelace.", new BigDecimal("80.00"), "img")
+            .add(3L, "Grace Hopper", "Programming Languages", "Developed the first compiler.", new BigDecimal("189.99"), "img")
+            .add(4L, "Alan Kay", "Programming Languages", "Pioneered object-oriented programming.", new BigDecimal("10.00"), "img")
+            .build();
+        index = new Bm25Index(catalog);
+    }
+
+    @Test
+    void search_NameMatchOutranksContributionMatch() {
+        assertThat(index.search("lovelace", 10)).containsExactly(0, 1);
+        assertThat(index.search("engine", 10)).containsExactly(0, 1);
+    }
+
+    @Test
+    void search_RareTermsWeighMore() {
+        // "first" appears in two rows and "compiler" in one, so the row with both comes first.
+        assertThat(index.search("first compiler", 10)).containsExactly(2, 0);
+        assertThat(index.search("babbage first", 10).length).isEqualTo(3);
+        assertThat(index.search("babbage first", 10)[0]).isEqualTo(1);
+    }
+
+    @Test
+    void search_KeepsOnlyTheTopRows() {
+        // Row 0 has "the" twice; row 2 beats row 1 because its contribution is shorter.
+        assertThat(index.search("the", 2)).containsExactly(0, 2);
+        assertThat(index.search("the ada", 1)).containsExactly(0);
+        assertThat(index.search("unknown words", 10)).isEmpty();
+        assertThat(index.search("the", 0)).isEmpty();
+    }
+
+    @Test
+    void search_ScoresAppendedRowsWithTheIndexStatistics() {
+        CardCatalog.Appender appender = catalog.appender();
+        int appended = appender.append(5L, "Compiler Zephyr", "Testing", "Wrote a compiler.", 100, "img", 4);
+        CardCatalog written = appender.build();
+        int[] rows = {appended};
+
+        assertThat(index.search("compiler", 10, row -> true, written, rows)).containsExactly(appended, 2);
+        assertThat(index.search("zephyr", 10, row -> true, written, rows)).containsExactly(appended);
+        assertThat(index.search("compiler", 1, row -> row != 2, written, rows)).containsExactly(appended);
+        assertThat(index.search("unknown", 10, row -> true, written, rows)).isEmpty();
+    }
+}
@@ -0,0 +1,115 @@
+package edu.byui.apj.storefront.api.catalog;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class CardChangeLogTest {
+
+    private static final CardChange ADA = CardChange.put(2, "Ada Lovelace", "Algorithms", "First program", 7_599, "img");
+    private static final CardChange GRACE = CardChange.put(3, "Grace Hopper", "Compilers", "Zürich, COBOL", 4_200, "");
+
+    @Test
+    void open_ReplaysLoggedChangesOnTheSeedCheckpoint(@TempDir Path dir) throws IOException {
+        CardChangeLog.Opened first = CardChangeLog.open(dir, 0, CardChangeLogTest::seed);
+        first.log().append(ADA).join();
+        first.log().append(CardChange.delete(1)).join();
+        first.log().append(GRACE).join();
+        first.log().close();
+
+        CardChangeLog.Opened second = CardChangeLog.open(dir, 0, () -> {
+            throw new AssertionError("a checkpoint exists, the seed must not be loaded");
+        });
+
+        assertThat(second.catalog().size()).isEqualTo(1);
+        assertThat(second.catalog().name(0)).isEqualTo("Alan Turing");
+        assertThat(second.changes()).containsExactly(ADA, CardChange.delete(1), GRACE);
+        second.log().close();
+    }
+
+    @Test
+    void open_CutsOffTornRecord(@TempDir Path dir) throws IOException {
+        CardChangeLog.Opened first = CardChangeLog.open(dir, 0, CardChangeLogTest::seed);
+        first.log().append(ADA).join();
+        first.log().append(GRACE).join();
+        first.log().close();
+        Path segment = files(dir, "changes-").getLast();
+        long intact = Files.size(segment);
+        // A record whose payload never made it to disk.
+        Files.write(segment, new byte[] {40, 0, 0, 0, 1, 2}, StandardOpenOption.APPEND);
+
+        CardChangeLog.Opened second = CardChangeLog.open(dir, 0, CardChangeLogTest::seed);
+
+        assertThat(second.changes()).containsExactly(ADA, GRACE);
+        assertThat(Files.size(segment)).isEqualTo(intact);
+        second.log().close();
+    }
+
+    @Test
+    void checkpoint_ReplacesOlderSegments(@TempDir Path dir) throws IOException {
+        CardChangeLog.Opened first = CardChangeLog.open(dir, 0, CardChangeLogTest::seed);
+        first.log().append(ADA).join();
+        long generation = first.log().rotate();
+        first.log().append(GRACE).join();
+        first.log().checkpoint(generation, CardCatalog.builder()
+            .add(1, "Alan Turing", "Algorithms", "Turing machine", 6_799, "img")
+            .add(ADA.id(), ADA.name(), ADA.specialty(), ADA.contribution(), ADA.priceCents(), ADA.imageUrl())
+            .build(), List.of(ADA));
+        first.log().close();
+
+        assertThat(files(dir, "checkpoint-")).hasSize(1);
+        assertThat(files(dir, "written-")).hasSize(1);
+        CardChangeLog.Opened second = CardChangeLog.open(dir, 0, CardChangeLogTest::seed);
+
+        assertThat(second.catalog().size()).isEqualTo(2);
+        assertThat(second.written()).containsExactly(ADA);
+        assertThat(second.changes()).containsExactly(GRACE);
+        second.log().close();
+    }
+
+    @Test
+    void append_ConcurrentWritersAreAllSynced(@TempDir Path dir) throws IOException {
+        CardChangeLog.Opened opened = CardChangeLog.open(dir, 1, CardChangeLogTest::seed);
+        List<CompletableFuture<Void>> synced = new ArrayList<>();
+        List<CompletableFuture<Void>> writers = IntStream.range(0, 8)
+            .mapToObj(writer -> CompletableFuture.runAsync(() -> {
+                for (int i = 0; i < 50; i++) {
+                    CompletableFuture<Void> durable = opened.log().append(CardChange.delete(writer * 100L + i));
+                    synchronized (synced) {
+                        synced.add(durable);
+                    }
+                }
+            }))
+            .toList();
+        writers.forEach(CompletableFuture::join);
+        CompletableFuture.allOf(synced.toArray(CompletableFuture[]::new)).join();
+        opened.log().close();
+
+        assertThatThrownBy(() -> opened.log().append(ADA)).isInstanceOf(IllegalStateException.class);
+        CardChangeLog.Opened reopened = CardChangeLog.open(dir, 0, CardChangeLogTest::seed);
+        assertThat(reopened.changes()).hasSize(400);
+        reopened.log().close();
+    }
+
+    private static CardCatalog seed() {
+        return CardCatalog.builder().add(1, "Alan Turing", "Algorithms", "Turing machine", 6_799, "img").build();
+    }
+
+    private static List<Path> files(Path dir, String prefix) throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.filter(file -> file.getFileName().toString().startsWith(prefix)).sorted().toList();
+        }
+    }
+}
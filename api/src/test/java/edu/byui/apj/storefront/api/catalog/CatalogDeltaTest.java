@@ -0,0 +1,137 @@
+package edu.byui.apj.storefront.api.catalog;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class CatalogDeltaTest {
+
+    private static final String[] SPECIALTIES = {"Algorithms_Theory", "Programming Languages", "Operating Systems"};
+
+    private CatalogSnapshot snapshot;
+    // Expected live cards in catalog order: a put on a known id keeps its place, a new id goes last.
+    private Map<Long, CardChange> expected;
+
+    @BeforeEach
+    void setUp() {
+        SplittableRandom random = new SplittableRandom(11);
+        CardCatalog.Builder builder = CardCatalog.builder();
+        expected = new LinkedHashMap<>();
+        for (long id = 1; id <= 500; id++) {
+            CardChange card = randomCard(random, id);
+            builder.add(id, card.name(), card.specialty(), card.contribution(), card.priceCents(), card.imageUrl());
+            expected.put(id, card);
+        }
+        snapshot = CatalogSnapshot.build(1, builder.build());
+    }
+
+    @Test
+    void apply_MatchesCatalogRebuiltFromLiveCards() {
+        SplittableRandom random = new SplittableRandom(3);
+        for (int batch = 0; batch < 40; batch++) {
+            List<CardChange> changes = new ArrayList<>();
+            for (int i = random.nextInt(1, 12); i > 0; i--) {
+                long id = random.nextLong(1, 560);
+                CardChange change = random.nextInt(4) == 0 ? CardChange.delete(id) : randomCard(random, id);
+                changes.add(change);
+                if (change.isDelete()) {
+                    expected.remove(id);
+                } else {
+                    expected.put(id, change);
+                }
+            }
+            snapshot = snapshot.apply(batch + 2, changes);
+            assertMatchesExpected();
+        }
+    }
+
+    @Test
+    void apply_NewSpecialtyCanBeFiltered() {
+        snapshot = snapshot.apply(2, List.of(CardChange.put(900, "Ada", "Quantum Computing", "", 500, "img")));
+
+        CardCatalog catalog = snapshot.catalog();
+        int row = snapshot.rowOf(900);
+        assertThat(catalog.specialty(catalog.specialtyCode(row))).isEqualTo("Quantum Computing");
+        assertThat(catalog.matchSpecialties("quantum")[catalog.specialtyCode(row)]).isTrue();
+        assertThat(snapshot.filterBitmaps().specialtyRows(catalog.matchSpecialties("quantum")).isEmpty()).isTrue();
+    }
+
+    @Test
+    void current_FollowsReplacedRows() {
+        int original = snapshot.rowOf(42);
+        snapshot = snapshot.apply(2, List.of(randomCard(new SplittableRandom(1), 42), CardChange.delete(43)));
+        CatalogDelta delta = snapshot.delta();
+
+        assertThat(delta.isLive(original)).isFalse();
+        assertThat(delta.current(original)).isEqualTo(snapshot.rowOf(42)).isNotEqualTo(original);
+        assertThat(delta.current(original + 1)).isEqualTo(LongIntHashMap.MISSING);
+        assertThat(delta.current(0)).isZero();
+        assertThat(delta.pendingRows()).isEqualTo(3);
+    }
+
+    @Test
+    void catalogRange_PagesJoinUpToTheWholeCatalog() {
+        SplittableRandom random = new SplittableRandom(5);
+        List<CardChange> changes = new ArrayList<>();
+        for (int i = 0; i < 60; i++) {
+            long id = random.nextLong(1, 700);
+            changes.add(random.nextBoolean() ? CardChange.delete(id) : randomCard(random, id));
+        }
+        snapshot = snapshot.apply(2, changes);
+        CatalogDelta delta = snapshot.delta();
+
+        int[] all = delta.catalogRange(0, delta.liveCount());
+        List<Integer> paged = new ArrayList<>();
+        for (int from = 0; from < delta.liveCount(); from += 7) {
+            for (int row : delta.catalogRange(from, 7)) {
+                paged.add(row);
+            }
+        }
+        assertThat(paged).containsExactly(IntStream.of(all).boxed().toArray(Integer[]::new));
+        assertThat(delta.catalogRange(delta.liveCount(), 7)).isEmpty();
+    }
+
+    private void assertMatchesExpected() {
+        CatalogDelta delta = snapshot.delta();
+        CardCatalog catalog = snapshot.catalog();
+        CardCatalog rebuilt = delta.liveCatalog();
+        SortIndex rebuiltOrder = new SortIndex(rebuilt);
+
+        assertThat(snapshot.liveCount()).isEqualTo(expected.size());
+        assertThat(ids(rebuilt, IntStream.range(0, rebuilt.size()).toArray()))
+            .containsExactlyElementsOf(expected.keySet());
+        for (CardChange card : expected.values()) {
+            int row = snapshot.rowOf(card.id());
+            assertThat(catalog.name(row)).isEqualTo(card.name());
+            assertThat(catalog.priceCents(row)).isEqualTo(card.priceCents());
+        }
+
+        for (CardOrder order : CardOrder.values()) {
+            int[] baseRows = IntStream.range(0, snapshot.sortIndex().size())
+                .map(position -> snapshot.sortIndex().row(order, position))
+                .filter(delta::isLive)
+                .toArray();
+            int[] merged = delta.merge(order, baseRows,
+                delta.firstMatches(order, 0, row -> true, Integer.MAX_VALUE), Integer.MAX_VALUE);
+            int[] rebuiltRows = IntStream.range(0, rebuilt.size()).map(position -> rebuiltOrder.row(order, position)).toArray();
+            assertThat(ids(catalog, merged)).as(order.name()).containsExactlyElementsOf(ids(rebuilt, rebuiltRows));
+        }
+    }
+
+    private static List<Long> ids(CardCatalog catalog, int[] rows) {
+        return IntStream.of(rows).mapToObj(catalog::id).toList();
+    }
+
+    private static CardChange randomCard(SplittableRandom random, long id) {
+        return CardChange.put(id, "Card " + random.nextInt(300), SPECIALTIES[random.nextInt(SPECIALTIES.length)],
+            "Contribution " + random.nextInt(50), random.nextLong(100, 5_000), "img" + id);
+    }
+}
@@ -0,0 +1,85 @@
+package edu.byui.apj.storefront.api.catalog;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class CatalogSnapshotFileTest {
+
+    @Test
+    void writeThenRead_RoundTrips(@TempDir Path dir) throws IOException {
+        CardCatalog catalog = CardCatalog.builder()
+            .add(1L, "Ada Lovelace", "Algorithms_Theory", "Wrote the first algorithm.", new BigDecimal("75.99"), "a.png")
+            .add(2L, "Edsger Dijkstra", "Algorithms_Theory", "Shortest paths, \"GOTO\" and more.", new BigDecimal("5.00"), "b.png")
+            .add(42L, "Jürgen Schmidhuber", "Artificial Intelligence", "LSTM — long short-term memory.", new BigDecimal("0.99"), "")
+            .build();
+        Path file = dir.resolve("catalog.bin");
+
+        CatalogSnapshotFile.write(catalog, file);
+        CardCatalog read = CatalogSnapshotFile.read(file);
+
+        assertThat(read.size()).isEqualTo(3);
+        assertThat(read.specialtyCount()).isEqualTo(2);
+        for (int row = 0; row < catalog.size(); row++) {
+            assertThat(read.toCard(row)).isEqualTo(catalog.toCard(row));
+            assertThat(read.specialtyCode(row)).isEqualTo(catalog.specialtyCode(row));
+        }
+        assertThat(Files.exists(dir.resolve("catalog.bin.tmp"))).isFalse();
+    }
+
+    @Test
+    void read_RejectsOtherFiles(@TempDir Path dir) throws IOException {
+        Path file = dir.resolve("catalog.csv");
+        Files.writeString(file, "ID,Name,Specialty,Contribution,Price,ImageUrl\n");
+
+        assertThatThrownBy(() -> CatalogSnapshotFile.read(file))
+            .isInstanceOf(IOException.class)
+            .hasMessageContaining("Not a catalog snapshot");
+    }
+
+    @Test
+    void read_RejectsTruncatedFile(@TempDir Path dir) throws IOException {
+        Path file = dir.resolve("catalog.bin");
+        CatalogSnapshotFile.write(CardCatalog.builder()
+            .add(1L, "Ada Lovelace", "Algorithms_Theory", "Wrote the first algorithm.", new BigDecimal("75.99"), "a.png")
+            .build(), file);
+        byte[] bytes = Files.readAllBytes(file);
+
+        // Cut inside the columns, inside the offset table and inside the string heap.
+        for (int length : new int[] {30, 60, bytes.length - 1}) {
+            Files.write(file, Arrays.copyOf(bytes, length));
+            assertThatThrownBy(() -> CatalogSnapshotFile.read(file))
+                .as("truncated to %d bytes", length)
+                .isInstanceOf(IOException.class)
+                .hasMessageContaining("catalog snapshot");
+        }
+    }
+
+    @Test
+    void read_RejectsCorruptHeaderAndOffsets(@TempDir Path dir) throws IOException {
+        Path file = dir.resolve("catalog.bin");
+        CatalogSnapshotFile.write(CardCatalog.builder()
+            .add(1L, "Ada Lovelace", "Algorithms_Theory", "Wrote the first algorithm.", new BigDecimal("75.99"), "a.png")
+            .build(), file);
+        byte[] bytes = Files.readAllBytes(file);
+
+        ByteBuffer negativeRows = ByteBuffer.wrap(bytes.clone()).order(ByteOrder.LITTLE_ENDIAN).putInt(12, -1);
+        Files.write(file, negativeRows.array());
+        assertThatThrownBy(() -> CatalogSnapshotFile.read(file)).isInstanceOf(IOException.class);
+
+        // The header (24 bytes) and one row of columns (20 bytes) end at 44, so the offset table starts at 48.
+        ByteBuffer decreasing = ByteBuffer.wrap(bytes.clone()).order(ByteOrder.LITTLE_ENDIAN).putInt(48 + 8, 1);
+        Files.write(file, decreasing.array());
+        assertThatThrownBy(() -> CatalogSnapshotFile.read(file)).isInstanceOf(IOException.class);
+    }
+}
@@ -0,0 +1,85 @@
+package edu.byui.apj.storefront.api.catalog;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class CsvCatalogLoaderTest {
+
+    private static final String HEADER = "ID,Name,Specialty,Contribution,Price,ImageUrl\n";
+
+    // Tiny chunks force every test file to be split into many chunks.
+    private final CsvCatalogLoader loader = new CsvCatalogLoader(ForkJoinPool.commonPool(), 16);
+
+    @Test
+    void load_KeepsRowOrderAcrossChunks() throws IOException {
+        StringBuilder csv = new StringBuilder(HEADER);
+        for (int id = 1; id <= 500; id++) {
+            csv.append(id).append(",Card ").append(id).append(",Spec").append(id % 3)
+                .append(",\"Line one,\nline \"\"two\"\"\",").append(id).append(".99,img").append(id % 7).append('\n');
+        }
+
+        CsvCatalogLoader.Result result = load(csv.toString());
+
+        CardCatalog catalog = result.catalog();
+        assertThat(result.rejectedRows()).isZero();
+        assertThat(catalog.size()).isEqualTo(500);
+        assertThat(catalog.specialtyCount()).isEqualTo(3);
+        for (int row = 0; row < catalog.size(); row++) {
+            assertThat(catalog.id(row)).isEqualTo(row + 1);
+            assertThat(catalog.name(row)).isEqualTo("Card " + (row + 1));
+            assertThat(catalog.specialty(catalog.specialtyCode(row))).isEqualTo("Spec" + (row + 1) % 3);
+            assertThat(catalog.imageUrl(row)).isEqualTo("img" + (row + 1) % 7);
+            assertThat(catalog.contribution(row)).isEqualTo("Line one,\nline \"two\"");
+            assertThat(catalog.priceCents(row)).isEqualTo((row + 1) * 100L + 99);
+        }
+    }
+
+    @Test
+    void load_RejectsBadRows() throws IOException {
+        String csv = HEADER
+            + "1,Good,Spec,Text,1.00,img\n"
+            + "x,Bad id,Spec,Text,1.00,img\n"
+            + "3,Bad price,Spec,Text,cheap,img\n"
+            + "4,Too precise,Spec,Text,1.001,img\n"
+            + "5,Short row\n"
+            + "6,Also good,Spec,Text,2.50,img";
+
+        CsvCatalogLoader.Result result = load(csv);
+
+        assertThat(result.rejectedRows()).isEqualTo(4);
+        assertThat(result.catalog().size()).isEqualTo(2);
+        assertThat(result.catalog().name(1)).isEqualTo("Also good");
+    }
+
+    @Test
+    void load_MemoryMapsFiles(@TempDir Path dir) throws IOException {
+        Path file = dir.resolve("catalog.csv");
+        Files.writeString(file, HEADER + "7,Mapped,Spec,Text,3.25,img\n");
+
+        CardCatalog catalog = loader.load(file).catalog();
+
+        assertThat(catalog.size()).isEqualTo(1);
+        assertThat(catalog.toCard(0).getPrice()).isEqualByComparingTo("3.25");
+    }
+
+    @Test
+    void load_MissingColumn() {
+        assertThatThrownBy(() -> load("ID,Name\n1,Card\n"))
+            .isInstanceOf(IOException.class)
+            .hasMessageContaining("Specialty");
+    }
+
+    private CsvCatalogLoader.Result load(String csv) throws IOException {
+        return loader.load(ByteBuffer.wrap(csv.getBytes(StandardCharsets.UTF_8)), "test");
+    }
+}
@@ -0,0 +1,54 @@
+package edu.byui.apj.storefront.api.catalog;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.SplittableRandom;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class FilterBitmapsTest {
+
+    private static final String[] SPECIALTIES = {"Algorithms_Theory", "Programming Languages", "Operating Systems"};
+
+    private CardCatalog catalog;
+    private SortIndex sortIndex;
+    private FilterBitmaps bitmaps;
+
+    @BeforeEach
+    void setUp() {
+        SplittableRandom random = new SplittableRandom(7);
+        CardCatalog.Builder builder = CardCatalog.builder();
+        for (int id = 1; id <= 5_000; id++) {
+            builder.add(id, "Card " + id, SPECIALTIES[random.nextInt(SPECIALTIES.length)], "", random.nextLong(100, 20_000), "img");
+        }
+        catalog = builder.build();
+        sortIndex = new SortIndex(catalog);
+        bitmaps = new FilterBitmaps(catalog, sortIndex);
+    }
+
+    @Test
+    void rows_MatchPriceAndSpecialtyPredicates() {
+        boolean[] matches = catalog.matchSpecialties("system");
+        long[][] ranges = {{0, Long.MAX_VALUE}, {2_500, 7_499}, {100, 150}, {19_990, 30_000}, {5_000, 4_000}};
+
+        for (long[] range : ranges) {
+            int priceStart = sortIndex.priceLowerBound(range[0]);
+            int priceEnd = sortIndex.priceUpperBound(range[1]);
+            int[] expected = IntStream.range(0, catalog.size())
+                .filter(row -> catalog.priceCents(row) >= range[0] && catalog.priceCents(row) <= range[1])
+                .filter(row -> matches[catalog.specialtyCode(row)])
+                .toArray();
+
+            assertThat(bitmaps.rows(priceStart, priceEnd, matches).toArray()).containsExactly(expected);
+        }
+    }
+
+    @Test
+    void rows_NullWhenNothingIsFilteredOut() {
+        assertThat(bitmaps.rows(0, catalog.size(), null)).isNull();
+        assertThat(bitmaps.rows(0, catalog.size(), catalog.matchSpecialties("")).getCardinality()).isEqualTo(catalog.size());
+        assertThat(bitmaps.specialtyRows(catalog.matchSpecialties("nothing")).isEmpty()).isTrue();
+    }
+}
@@ -0,0 +1,74 @@
+package edu.byui.apj.storefront.api.catalog;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class FuzzyIndexTest {
+
+    private CardCatalog catalog;
+    private FuzzyIndex index;
+
+    @BeforeEach
+    void setUp() {
+        catalog = CardCatalog.builder()
+            .add(1L, "Ada Lovelace", "Algorithms_Theory", "Wrote the first algorithm.", new BigDecimal("75.99"), "img")
+            .add(2L, "Grace Hopper", "Programming Languages", "Developed the first compiler.", new BigDecimal("189.99"), "img")
+            .add(3L, "Alan Kay", "Programming Languages", "Pioneered object-oriented programming.", new BigDecimal("10.00"), "img")
+            .add(4L, "Ada Lovelaces", "Testing", "A near duplicate.", new BigDecimal("1.00"), "img")
+            .build();
+        index = new FuzzyIndex(catalog);
+    }
+
+    @Test
+    void search_ToleratesTypos() {
+        assertThat(index.search("lovlace", 10)).containsExactly(0, 3);
+        assertThat(index.search("grcae hoper", 10)).isEmpty();
+        assertThat(index.search("grace hoper", 10)).containsExactly(1);
+        assertThat(index.search("compilr", 10)).containsExactly(1);
+    }
+
+    @Test
+    void search_OrdersByDistanceThenCatalog() {
+        assertThat(index.search("lovelaces", 10)).containsExactly(3, 0);
+        assertThat(index.search("lovelaces", 1)).containsExactly(3);
+    }
+
+    @Test
+    void search_RequiresEveryWord() {
+        assertThat(index.search("ada lovelace", 10)).containsExactly(0, 3);
+        assertThat(index.search("alan lovelace", 10)).isEmpty();
+    }
+
+    @Test
+    void search_ShortWordsMustMatchExactly() {
+        assertThat(index.search("kay", 10)).containsExactly(2);
+        assertThat(index.search("ad", 10)).isEmpty();
+        assertThat(index.search("a", 10)).containsExactly(3);
+    }
+
+    @Test
+    void search_ScoresAppendedRowsOnTheirText() {
+        CardCatalog.Appender appender = catalog.appender();
+        // Replaces Grace Hopper in catalog order.
+        int replaced = appender.append(2L, "Ada Lovelacx", "Testing", "Typo.", 100, "img", 1);
+        CardCatalog written = appender.build();
+
+        assertThat(index.search("lovelace", 10, row -> row != 1, written, new int[] {replaced}))
+            .containsExactly(0, replaced, 3);
+        assertThat(index.search("hopper", 10, row -> row != 1, written, new int[] {replaced})).isEmpty();
+        assertThat(index.search("typo", 10, row -> row != 1, written, new int[] {replaced}))
+            .containsExactly(replaced);
+    }
+
+    @Test
+    void boundedLevenshtein_StopsAtTheBound() {
+        assertThat(FuzzyIndex.boundedLevenshtein("lovelace", "lovlace", 2)).isEqualTo(1);
+        assertThat(FuzzyIndex.boundedLevenshtein("kitten", "sitting", 3)).isEqualTo(3);
+        assertThat(FuzzyIndex.boundedLevenshtein("kitten", "sitting", 1)).isEqualTo(2);
+        assertThat(FuzzyIndex.boundedLevenshtein("abc", "abcdef", 2)).isEqualTo(3);
+    }
+}
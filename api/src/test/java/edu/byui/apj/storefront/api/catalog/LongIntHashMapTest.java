@@ -0,0 +1,60 @@
+package edu.byui.apj.storefront.api.catalog;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class LongIntHashMapTest {
+
+    @Test
+    void get_FindsEveryKey() {
+        LongIntHashMap map = new LongIntHashMap(10_000);
+        for (int i = 0; i < 10_000; i++) {
+            assertThat(map.putIfAbsent(i * 1024L - 5_000_000L, i)).isTrue();
+        }
+
+        assertThat(map.size()).isEqualTo(10_000);
+        for (int i = 0; i < 10_000; i++) {
+            assertThat(map.get(i * 1024L - 5_000_000L)).isEqualTo(i);
+        }
+        assertThat(map.get(1)).isEqualTo(LongIntHashMap.MISSING);
+        assertThat(map.get(Long.MAX_VALUE)).isEqualTo(LongIntHashMap.MISSING);
+    }
+
+    @Test
+    void putIfAbsent_KeepsFirstValue() {
+        LongIntHashMap map = new LongIntHashMap(2);
+
+        assertThat(map.putIfAbsent(0L, 7)).isTrue();
+        assertThat(map.putIfAbsent(0L, 8)).isFalse();
+        assertThat(map.get(0L)).isEqualTo(7);
+    }
+
+    @Test
+    void putIfAbsent_RejectsNegativeValuesAndOverflow() {
+        LongIntHashMap map = new LongIntHashMap(2);
+
+        assertThatThrownBy(() -> map.putIfAbsent(1L, -1)).isInstanceOf(IllegalArgumentException.class);
+        map.putIfAbsent(1L, 1);
+        map.putIfAbsent(2L, 2);
+        assertThatThrownBy(() -> map.putIfAbsent(3L, 3)).isInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    void withCapacity_CopiesEveryKey() {
+        LongIntHashMap map = new LongIntHashMap(2);
+        map.putIfAbsent(10L, 1);
+        map.putIfAbsent(20L, 2);
+        assertThat(map.isFull()).isTrue();
+
+        LongIntHashMap grown = map.withCapacity(4);
+        grown.putIfAbsent(30L, 3);
+
+        assertThat(grown.size()).isEqualTo(3);
+        assertThat(List.of(grown.get(10L), grown.get(20L), grown.get(30L))).containsExactly(1, 2, 3);
+        assertThat(map.get(30L)).isEqualTo(LongIntHashMap.MISSING);
+    }
+}
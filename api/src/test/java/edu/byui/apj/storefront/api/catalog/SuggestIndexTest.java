@@ -0,0 +1,69 @@
+package edu.byui.apj.storefront.api.catalog;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class SuggestIndexTest {
+
+    private SuggestIndex index;
+
+    @BeforeEach
+    void setUp() {
+        CardCatalog catalog = CardCatalog.builder()
+            .add(1L, "Ada Lovelace", "Algorithms_Theory", "First algorithm.", new BigDecimal("75.99"), "img")
+            .add(2L, "Alan Turing", "Algorithms_Theory", "Turing machine.", new BigDecimal("80.00"), "img")
+            .add(3L, "Alan Kay", "Programming Languages", "Smalltalk.", new BigDecimal("10.00"), "img")
+            .add(4L, "Alan Kay", "Programming Languages", "Dynabook.", new BigDecimal("12.00"), "img")
+            .add(5L, "Grace Hopper", "Programming Languages", "First compiler.", new BigDecimal("189.99"), "img")
+            .build();
+        index = new SuggestIndex(catalog);
+    }
+
+    @Test
+    void suggest_HeaviestFirstThenAlphabetical() {
+        assertThat(index.suggest("a", 10))
+            .extracting(SuggestIndex.Suggestion::text)
+            .containsExactly("Alan Kay", "Algorithms_Theory", "Ada Lovelace", "Alan Turing");
+        assertThat(index.suggest("al", 10).getFirst())
+            .isEqualTo(new SuggestIndex.Suggestion("Alan Kay", SuggestIndex.Kind.CARD, 2));
+    }
+
+    @Test
+    void suggest_MatchesAnyWordStart() {
+        assertThat(index.suggest("lang", 10))
+            .containsExactly(new SuggestIndex.Suggestion("Programming Languages", SuggestIndex.Kind.SPECIALTY, 3));
+        assertThat(index.suggest("hop", 10)).extracting(SuggestIndex.Suggestion::text).containsExactly("Grace Hopper");
+        // "ing" is inside words but starts none of them.
+        assertThat(index.suggest("ing", 10)).isEmpty();
+    }
+
+    @Test
+    void suggest_RespectsLimit() {
+        assertThat(index.suggest("a", 2)).extracting(SuggestIndex.Suggestion::text)
+            .containsExactly("Alan Kay", "Algorithms_Theory");
+        assertThat(index.suggest("", 1)).extracting(SuggestIndex.Suggestion::text)
+            .containsExactly("Programming Languages");
+        assertThat(index.suggest("a", 0)).isEmpty();
+        assertThat(index.suggest("zzz", 10)).isEmpty();
+    }
+
+    @Test
+    void suggest_AppliesWeightChanges() {
+        Map<String, Integer> names = Map.of("Ada Lovelace", -1, "Alan Turing", 1, "Ada Byron", 1);
+        Map<String, Integer> specialties = Map.of("Algorithms_Theory", -2, "Testing", 1);
+
+        assertThat(index.suggest("a", 10, names, specialties)).containsExactly(
+            new SuggestIndex.Suggestion("Alan Kay", SuggestIndex.Kind.CARD, 2),
+            new SuggestIndex.Suggestion("Alan Turing", SuggestIndex.Kind.CARD, 2),
+            new SuggestIndex.Suggestion("Ada Byron", SuggestIndex.Kind.CARD, 1));
+        assertThat(index.suggest("te", 10, names, specialties))
+            .containsExactly(new SuggestIndex.Suggestion("Testing", SuggestIndex.Kind.SPECIALTY, 1));
+        assertThat(index.suggest("a", 1, names, specialties)).extracting(SuggestIndex.Suggestion::text)
+            .containsExactly("Alan Kay");
+    }
+}
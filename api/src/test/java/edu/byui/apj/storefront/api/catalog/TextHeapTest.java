@@ -0,0 +1,87 @@
+package edu.byui.apj.storefront.api.catalog;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TextHeapTest {
+
+    @Test
+    void get_ReturnsEachEntry() {
+        TextHeap.Builder builder = TextHeap.builder(1);
+        for (int i = 0; i < 100; i++) {
+            assertThat(builder.add("Card " + i + (i % 3 == 0 ? " Zürich ✓" : ""))).isEqualTo(i);
+        }
+        builder.add("");
+        TextHeap heap = builder.build();
+
+        assertThat(heap.size()).isEqualTo(101);
+        assertThat(heap.get(0)).isEqualTo("Card 0 Zürich ✓");
+        assertThat(heap.get(41)).isEqualTo("Card 41");
+        assertThat(heap.get(100)).isEmpty();
+    }
+
+    @Test
+    void contains_MatchesWholeCharacters() {
+        TextHeap heap = heap("grace hopper, zürich");
+
+        assertThat(heap.contains(0, TextHeap.utf8("zürich"))).isTrue();
+        assertThat(heap.contains(0, TextHeap.utf8("hopper"))).isTrue();
+        assertThat(heap.contains(0, TextHeap.utf8("zurich"))).isFalse();
+        assertThat(heap.contains(0, TextHeap.utf8("zürichs"))).isFalse();
+        assertThat(heap.contains(0, new byte[0])).isTrue();
+        assertThat(TextHeap.builder(1).build().size()).isZero();
+    }
+
+    @Test
+    void containsIgnoreCase_MatchesCleanedText() {
+        TextHeap heap = heap("Grace HOPPER, ZÜRICH");
+
+        assertThat(heap.containsIgnoreCase(0, TextHeap.utf8("hopper, z"))).isTrue();
+        assertThat(heap.containsIgnoreCase(0, TextHeap.utf8("zürich"))).isTrue();
+        assertThat(heap.containsIgnoreCase(0, TextHeap.utf8("grace h"))).isTrue();
+        assertThat(heap.containsIgnoreCase(0, TextHeap.utf8("zurich"))).isFalse();
+        assertThat(heap.containsIgnoreCase(0, TextHeap.utf8("Grace"))).isFalse();
+        assertThat(heap("Ada Lovelace").containsIgnoreCase(0, TextHeap.utf8("lovelaces"))).isFalse();
+    }
+
+    @Test
+    void concat_ShiftsEachPartsOffsets() {
+        TextHeap.Builder first = TextHeap.builder(2);
+        first.add("Ada");
+        first.add("Zürich");
+        TextHeap.Builder empty = TextHeap.builder(1);
+        TextHeap.Builder last = TextHeap.builder(2);
+        last.add("");
+        last.add("Hopper");
+
+        TextHeap heap = TextHeap.concat(List.of(first, empty, last));
+
+        assertThat(heap.size()).isEqualTo(4);
+        assertThat(List.of(heap.get(0), heap.get(1), heap.get(2), heap.get(3))).containsExactly("Ada", "Zürich", "", "Hopper");
+        assertThat(heap.contains(3, TextHeap.utf8("opp"))).isTrue();
+    }
+
+    @Test
+    void get_ReadsDirectBuffers() {
+        byte[] text = TextHeap.utf8("Ada Lovelace");
+        ByteBuffer direct = ByteBuffer.allocateDirect(text.length).put(text).flip();
+
+        TextHeap mapped = new TextHeap(IntBuffer.wrap(new int[] {0, 3, 12}), direct);
+
+        assertThat(mapped.get(1)).isEqualTo(" Lovelace");
+        assertThat(mapped.get(0)).isEqualTo("Ada");
+        assertThat(mapped.contains(1, TextHeap.utf8("Love"))).isTrue();
+        assertThat(mapped.contains(0, TextHeap.utf8("Ada L"))).isFalse();
+    }
+
+    private static TextHeap heap(String text) {
+        TextHeap.Builder builder = TextHeap.builder(1);
+        builder.add(text);
+        return builder.build();
+    }
+}
@@ -0,0 +1,52 @@
+package edu.byui.apj.storefront.api.catalog;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TrigramIndexTest {
+
+    private TrigramIndex index;
+
+    @BeforeEach
+    void setUp() {
+        CardCatalog catalog = CardCatalog.builder()
+            .add(1L, "Ada Lovelace", "Algorithms_Theory", "Wrote the first algorithm.", new BigDecimal("75.99"), "img")
+            .add(2L, "Grace Hopper", "Programming Languages", "Developed the first compiler.", new BigDecimal("189.99"), "img")
+            .add(3L, "Alan Kay", "Programming Languages", "Pioneered object-oriented programming.", new BigDecimal("10.00"), "img")
+            .build();
+        index = new TrigramIndex(catalog);
+    }
+
+    @Test
+    void search_MatchesNameOrContribution() {
+        assertThat(index.search("lovelace")).containsExactly(0);
+        assertThat(index.search("first")).containsExactly(0, 1);
+        assertThat(index.search("programming")).containsExactly(2);
+    }
+
+    @Test
+    void search_VerifiesCandidates() {
+        TrigramIndex repeated = new TrigramIndex(CardCatalog.builder()
+            .add(1L, "Abcdbc", "Testing", "None", new BigDecimal("1.00"), "img")
+            .build());
+
+        // Every trigram of "bcdbcd" appears in the name, but not as one substring.
+        assertThat(repeated.search("bcdbc")).containsExactly(0);
+        assertThat(repeated.search("bcdbcd")).isEmpty();
+    }
+
+    @Test
+    void search_ShortQueriesScan() {
+        assertThat(index.search("")).containsExactly(0, 1, 2);
+        assertThat(index.search("ka")).containsExactly(2);
+    }
+
+    @Test
+    void search_UnknownTrigram() {
+        assertThat(index.search("zzz")).isEmpty();
+    }
+}
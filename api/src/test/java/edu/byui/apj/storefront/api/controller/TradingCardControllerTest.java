@@ -0,0 +1,415 @@
+package edu.byui.apj.storefront.api.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import edu.byui.apj.storefront.api.catalog.CardCatalog;
+import edu.byui.apj.storefront.api.catalog.CardChange;
+import edu.byui.apj.storefront.api.catalog.CardRows;
+import edu.byui.apj.storefront.api.catalog.CatalogSnapshot;
+import edu.byui.apj.storefront.api.model.CardFacets;
+import edu.byui.apj.storefront.api.model.CardPage;
+import edu.byui.apj.storefront.api.model.CardSuggestion;
+import edu.byui.apj.storefront.api.service.CardJsonCache;
+import edu.byui.apj.storefront.api.service.CardQuery;
+import edu.byui.apj.storefront.api.service.TradingCardService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@WebMvcTest(TradingCardController.class)
+@Import(CardJsonCache.class)
+public class TradingCardControllerTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockitoBean
+    private TradingCardService tcService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private CatalogSnapshot snapshot;
+
+    @BeforeEach
+    void setUp() {
+        CardCatalog catalog = CardCatalog.builder()
+            .add(1L, "Alan Turing", "Algorithms_Theory", "Turing machine", new BigDecimal("67.99"), "https://placecats.com/200/280")
+            .add(2L, "Ada Lovelace", "Algorithms_Theory", "First program", new BigDecimal("75.99"), "https://placecats.com/200/280")
+            .build();
+        snapshot = CatalogSnapshot.build(1, catalog);
+    }
+
+    @Test
+    void getCards_PageMode() throws Exception {
+        when(tcService.getCardRows(0, 20)).thenReturn(new CardRows(snapshot, new int[] {0, 1}));
+
+        mockMvc.perform(get("/api/cards"))
+            .andExpect(status().isOk())
+            .andExpect(content().contentType(MediaType.APPLICATION_JSON))
+            .andExpect(jsonPath("$[0].name").value("Alan Turing"))
+            .andExpect(jsonPath("$[1].price").value(75.99))
+            .andExpect(header().doesNotExist(TradingCardController.NEXT_CURSOR_HEADER));
+
+        verify(tcService).getCardRows(0, 20);
+    }
+
+    @Test
+    void getCards_CursorMode() throws Exception {
+        when(tcService.getCardsPage("", 1)).thenReturn(new CardPage(new CardRows(snapshot, new int[] {0}), "next-token"));
+
+        mockMvc.perform(get("/api/cards").param("cursor", "").param("size", "1"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$[0].id").value(1))
+            .andExpect(header().string(TradingCardController.NEXT_CURSOR_HEADER, "next-token"));
+
+        verify(tcService, never()).getCardRows(anyInt(), anyInt());
+    }
+
+    @Test
+    void getCardsSearch_MatchesJacksonOutput() throws Exception {
+        when(tcService.getCardsSearchRows("a", 0, CardQuery.NO_LIMIT)).thenReturn(new CardRows(snapshot, new int[] {1, 0}));
+
+        mockMvc.perform(get("/api/cards/search").param("query", "a"))
+            .andExpect(status().isOk())
+            .andExpect(content().json(objectMapper.writeValueAsString(
+                List.of(snapshot.catalog().toCard(1), snapshot.catalog().toCard(0))), true));
+    }
+
+    @Test
+    void getCardsSearch_EmptyResult() throws Exception {
+        when(tcService.getCardsSearchRows("zzz", 0, CardQuery.NO_LIMIT)).thenReturn(new CardRows(snapshot, new int[0]));
+
+        mockMvc.perform(get("/api/cards/search").param("query", "zzz"))
+            .andExpect(status().isOk())
+            .andExpect(content().string("[]"));
+    }
+
+    @Test
+    void getCardsFilter_InvalidCursor() throws Exception {
+        when(tcService.getCardsFilterPage(argThat(query -> "price".equals(query.sort())), anyString(), anyInt()))
+            .thenThrow(new IllegalArgumentException("Invalid cursor: bogus"));
+
+        mockMvc.perform(get("/api/cards/filter").param("sort", "price").param("cursor", "bogus"))
+            .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void getCardsFilter_WithQueryText() throws Exception {
+        CardQuery filter = CardQuery.filter(Optional.of(new BigDecimal("60")), Optional.empty(), Optional.empty(),
+            Optional.empty(), Optional.of(" Machine "));
+        when(tcService.getCardsFilterRows(filter)).thenReturn(new CardRows(snapshot, new int[] {0}));
+
+        mockMvc.perform(get("/api/cards/filter").param("minPrice", "60").param("query", " Machine "))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.length()").value(1))
+            .andExpect(jsonPath("$[0].id").value(1));
+    }
+
+    @Test
+    void getCardsFilter_InvalidSort() throws Exception {
+        mockMvc.perform(get("/api/cards/filter").param("sort", "id"))
+            .andExpect(status().isBadRequest());
+
+        verifyNoInteractions(tcService);
+    }
+
+    @Test
+    void getCardsSearch_SetsETag() throws Exception {
+        when(tcService.getCardsSearchRows("a", 0, CardQuery.NO_LIMIT)).thenReturn(new CardRows(snapshot, new int[] {0}));
+
+        mockMvc.perform(get("/api/cards/search").param("query", "a"))
+            .andExpect(status().isOk())
+            .andExpect(header().string(HttpHeaders.ETAG, snapshot.etag("search?" + CardQuery.search("a").key())));
+    }
+
+    @Test
+    void getCards_NotModified() throws Exception {
+        String etag = snapshot.etag("cards?page=0&size=20");
+        when(tcService.currentETag("cards?page=0&size=20")).thenReturn(etag);
+
+        mockMvc.perform(get("/api/cards").header(HttpHeaders.IF_NONE_MATCH, "\"other\", W/" + etag))
+            .andExpect(status().isNotModified())
+            .andExpect(header().string(HttpHeaders.ETAG, etag))
+            .andExpect(content().string(""));
+
+        verify(tcService, never()).getCardRows(anyInt(), anyInt());
+    }
+
+    @Test
+    void getCardsFilter_StaleETag() throws Exception {
+        when(tcService.currentETag(anyString())).thenAnswer(call -> snapshot.etag(call.getArgument(0)));
+        when(tcService.getCardsFilterRows(any(CardQuery.class))).thenReturn(new CardRows(snapshot, new int[] {1}));
+
+        mockMvc.perform(get("/api/cards/filter").param("specialty", "algo").header(HttpHeaders.IF_NONE_MATCH, "\"stale\""))
+            .andExpect(status().isOk())
+            .andExpect(header().exists(HttpHeaders.ETAG))
+            .andExpect(jsonPath("$[0].id").value(2));
+    }
+
+    @Test
+    void getCardsFacets_DefaultBucketWidth() throws Exception {
+        CardFacets facets = new CardFacets(2,
+            List.of(new CardFacets.SpecialtyCount("Algorithms_Theory", 2)),
+            List.of(new CardFacets.PriceBucket(new BigDecimal("60.00"), new BigDecimal("70.00"), 1),
+                new CardFacets.PriceBucket(new BigDecimal("70.00"), new BigDecimal("80.00"), 1)));
+        when(tcService.getCardsFacets(Optional.empty(), Optional.empty(), Optional.empty(), Optional.empty(),
+            new BigDecimal("10")))
+            .thenReturn(facets);
+
+        mockMvc.perform(get("/api/cards/facets"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.total").value(2))
+            .andExpect(jsonPath("$.specialties[0].count").value(2))
+            .andExpect(jsonPath("$.prices[1].min").value(70.00));
+    }
+
+    @Test
+    void getCardsFacets_InvalidBucketWidth() throws Exception {
+        when(tcService.getCardsFacets(any(), any(), any(), any(), any()))
+            .thenThrow(new IllegalArgumentException("bucketWidth must be at least 0.01"));
+
+        mockMvc.perform(get("/api/cards/facets").param("bucketWidth", "-1"))
+            .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void getCardsSearch_OffsetAndLimit() throws Exception {
+        when(tcService.getCardsSearchRows("a", 1, 1)).thenReturn(new CardRows(snapshot, new int[] {1}));
+
+        mockMvc.perform(get("/api/cards/search").param("query", "a").param("offset", "1").param("limit", "1"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.length()").value(1))
+            .andExpect(jsonPath("$[0].id").value(2));
+    }
+
+    @Test
+    void getCardsFilter_NegativeLimit() throws Exception {
+        mockMvc.perform(get("/api/cards/filter").param("limit", "-1"))
+            .andExpect(status().isBadRequest());
+
+        verifyNoInteractions(tcService);
+    }
+
+    @Test
+    void getCardsSearch_FuzzyMode() throws Exception {
+        when(tcService.getCardsFuzzySearchRows("lovlace", 0, CardQuery.NO_LIMIT)).thenReturn(new CardRows(snapshot, new int[] {1}));
+
+        mockMvc.perform(get("/api/cards/search").param("query", "lovlace").param("fuzzy", "true"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$[0].name").value("Ada Lovelace"))
+            .andExpect(header().string(HttpHeaders.ETAG, snapshot.etag("search?" + CardQuery.fuzzySearch("lovlace").key())));
+
+        verify(tcService, never()).getCardsSearchRows(anyString(), anyInt(), anyInt());
+    }
+
+    @Test
+    void getCardsSearch_RankedMode() throws Exception {
+        when(tcService.getCardsRankedSearchRows("turing", 0, 10)).thenReturn(new CardRows(snapshot, new int[] {0}));
+
+        mockMvc.perform(get("/api/cards/search").param("query", "turing").param("sort", "relevance").param("limit", "10"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$[0].name").value("Alan Turing"));
+    }
+
+    @Test
+    void getCardsSearch_InvalidSort() throws Exception {
+        mockMvc.perform(get("/api/cards/search").param("query", "a").param("sort", "price"))
+            .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/api/cards/search").param("query", "a").param("sort", "relevance").param("fuzzy", "true"))
+            .andExpect(status().isBadRequest());
+
+        verifyNoInteractions(tcService);
+    }
+
+    @Test
+    void getCard_Found() throws Exception {
+        when(tcService.getCardRowsByIds(List.of(2L))).thenReturn(new CardRows(snapshot, new int[] {1}));
+
+        mockMvc.perform(get("/api/cards/2"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.name").value("Ada Lovelace"))
+            .andExpect(header().string(HttpHeaders.ETAG, snapshot.etag("card?id=2")));
+    }
+
+    @Test
+    void getCard_NotFound() throws Exception {
+        when(tcService.getCardRowsByIds(List.of(7L))).thenReturn(new CardRows(snapshot, new int[0]));
+
+        mockMvc.perform(get("/api/cards/7"))
+            .andExpect(status().isNotFound());
+    }
+
+    @Test
+    void createCard_ReturnsCreatedCard() throws Exception {
+        CatalogSnapshot written = snapshot.apply(2, List.of(
+            CardChange.put(3L, "Grace Hopper", "Compilers", "COBOL", 4_200, "img")));
+        when(tcService.createCard(argThat(card -> card.getName().equals("Grace Hopper") && card.getId() == null)))
+            .thenReturn(new CardRows(written, new int[] {written.rowOf(3L)}));
+
+        mockMvc.perform(post("/api/cards").contentType(MediaType.APPLICATION_JSON)
+                .content("{\"name\":\"Grace Hopper\",\"specialty\":\"Compilers\",\"contribution\":\"COBOL\",\"price\":42.00}"))
+            .andExpect(status().isCreated())
+            .andExpect(header().string(HttpHeaders.LOCATION, "http://localhost/api/cards/3"))
+            .andExpect(header().string(HttpHeaders.ETAG, written.etag("card?id=3")))
+            .andExpect(jsonPath("$.id").value(3))
+            .andExpect(jsonPath("$.price").value(42.0));
+    }
+
+    @Test
+    void createCard_ConflictAndInvalidBody() throws Exception {
+        when(tcService.createCard(any())).thenThrow(new IllegalStateException("A card with id 1 already exists"));
+        mockMvc.perform(post("/api/cards").contentType(MediaType.APPLICATION_JSON).content("{\"id\":1}"))
+            .andExpect(status().isConflict());
+
+        reset(tcService);
+        when(tcService.createCard(any())).thenThrow(new IllegalArgumentException("name is required"));
+        mockMvc.perform(post("/api/cards").contentType(MediaType.APPLICATION_JSON).content("{}"))
+            .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void updateCard_FoundAndNotFound() throws Exception {
+        when(tcService.updateCard(eq(2L), any())).thenReturn(Optional.of(new CardRows(snapshot, new int[] {1})));
+        when(tcService.updateCard(eq(7L), any())).thenReturn(Optional.empty());
+        String body = "{\"name\":\"Ada Lovelace\",\"specialty\":\"Algorithms_Theory\",\"price\":75.99}";
+
+        mockMvc.perform(put("/api/cards/2").contentType(MediaType.APPLICATION_JSON).content(body))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.name").value("Ada Lovelace"));
+        mockMvc.perform(put("/api/cards/7").contentType(MediaType.APPLICATION_JSON).content(body))
+            .andExpect(status().isNotFound());
+    }
+
+    @Test
+    void deleteCard_NoContentOrNotFound() throws Exception {
+        when(tcService.deleteCard(1L)).thenReturn(true);
+
+        mockMvc.perform(delete("/api/cards/1")).andExpect(status().isNoContent());
+        mockMvc.perform(delete("/api/cards/7")).andExpect(status().isNotFound());
+    }
+
+    @Test
+    void getCardsByIds_BatchLookup() throws Exception {
+        when(tcService.getCardRowsByIds(List.of(2L, 1L))).thenReturn(new CardRows(snapshot, new int[] {1, 0}));
+
+        mockMvc.perform(get("/api/cards").param("ids", "2,1"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$[0].id").value(2))
+            .andExpect(jsonPath("$[1].id").value(1));
+
+        verify(tcService, never()).getCardRows(anyInt(), anyInt());
+    }
+
+    @Test
+    void getCardsByIds_InvalidId() throws Exception {
+        mockMvc.perform(get("/api/cards").param("ids", "1,abc"))
+            .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void getSuggestions_DefaultLimit() throws Exception {
+        when(tcService.getSuggestions("Al", 10)).thenReturn(List.of(
+            new CardSuggestion("Algorithms_Theory", "specialty", 8),
+            new CardSuggestion("Alan Kay", "card", 1)));
+
+        mockMvc.perform(get("/api/cards/suggest").param("prefix", "Al"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$[0].text").value("Algorithms_Theory"))
+            .andExpect(jsonPath("$[0].kind").value("specialty"))
+            .andExpect(jsonPath("$[1].weight").value(1));
+    }
+
+    @Test
+    void getSuggestions_InvalidLimit() throws Exception {
+        mockMvc.perform(get("/api/cards/suggest").param("prefix", "al").param("limit", "0"))
+            .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/api/cards/suggest").param("prefix", "al")
+                .param("limit", String.valueOf(TradingCardController.MAX_SUGGESTIONS + 1)))
+            .andExpect(status().isBadRequest());
+
+        verify(tcService, never()).getSuggestions(anyString(), anyInt());
+    }
+
+    @Test
+    void getCardsFilter_StreamsNdjson() throws Exception {
+        when(tcService.getCardsFilterRows(CardQuery.filter(Optional.empty(), Optional.empty(), Optional.empty(), Optional.empty())))
+            .thenReturn(new CardRows(snapshot, new int[] {1, 0}));
+
+        MvcResult result = mockMvc.perform(get("/api/cards/filter").accept(MediaType.APPLICATION_NDJSON))
+            .andExpect(request().asyncStarted())
+            .andReturn();
+
+        String body = mockMvc.perform(asyncDispatch(result))
+            .andExpect(status().isOk())
+            .andExpect(content().contentType(MediaType.APPLICATION_NDJSON))
+            .andExpect(header().string(HttpHeaders.VARY, HttpHeaders.ACCEPT))
+            .andReturn().getResponse().getContentAsString();
+        String[] lines = body.split("\n");
+        assertThat(lines).hasSize(2);
+        assertThat(objectMapper.readTree(lines[0]).get("id").asLong()).isEqualTo(2L);
+        assertThat(objectMapper.readTree(lines[1]).get("id").asLong()).isEqualTo(1L);
+    }
+
+    @Test
+    void getCardsFilter_NdjsonCursorMode() throws Exception {
+        when(tcService.getCardsFilterPage(argThat(query -> "price".equals(query.sort())), eq("token"), eq(1)))
+            .thenReturn(new CardPage(new CardRows(snapshot, new int[] {1}), "next-token"));
+
+        MvcResult result = mockMvc.perform(get("/api/cards/filter").param("sort", "price")
+                .param("cursor", "token").param("size", "1").accept(MediaType.APPLICATION_NDJSON))
+            .andExpect(request().asyncStarted())
+            .andReturn();
+
+        String body = mockMvc.perform(asyncDispatch(result))
+            .andExpect(status().isOk())
+            .andExpect(content().contentType(MediaType.APPLICATION_NDJSON))
+            .andExpect(header().string(TradingCardController.NEXT_CURSOR_HEADER, "next-token"))
+            .andReturn().getResponse().getContentAsString();
+        assertThat(body.split("\n")).hasSize(1);
+        assertThat(objectMapper.readTree(body).get("id").asLong()).isEqualTo(2L);
+        verify(tcService, never()).getCardsFilterRows(any());
+    }
+
+    @Test
+    void getCardsSearch_NdjsonHasItsOwnETag() throws Exception {
+        when(tcService.currentETag(anyString())).thenAnswer(invocation -> snapshot.etag(invocation.getArgument(0)));
+        when(tcService.getCardsSearchRows("a", 0, CardQuery.NO_LIMIT)).thenReturn(new CardRows(snapshot, new int[] {0}));
+
+        String jsonETag = mockMvc.perform(get("/api/cards/search").param("query", "a").accept(MediaType.ALL))
+            .andExpect(status().isOk())
+            .andExpect(content().contentType(MediaType.APPLICATION_JSON))
+            .andExpect(jsonPath("$[0].id").value(1))
+            .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        String ndjsonETag = snapshot.etag("search?" + CardQuery.search("a").key() + "&format=ndjson");
+
+        assertThat(ndjsonETag).isNotEqualTo(jsonETag);
+        mockMvc.perform(get("/api/cards/search").param("query", "a")
+                .accept(MediaType.APPLICATION_NDJSON).header(HttpHeaders.IF_NONE_MATCH, ndjsonETag))
+            .andExpect(status().isNotModified());
+    }
+}
@@ -0,0 +1,62 @@
+package edu.byui.apj.storefront.api.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import edu.byui.apj.storefront.api.catalog.CardCatalog;
+import edu.byui.apj.storefront.api.catalog.CardRows;
+import edu.byui.apj.storefront.api.catalog.CatalogSnapshot;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class CardJsonCacheTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final CatalogSnapshot snapshot = CatalogSnapshot.build(1, catalog(500));
+
+    @Test
+    void toJson_BoundedByWeight() throws Exception {
+        CardJsonCache cache = new CardJsonCache(objectMapper, 4096);
+
+        for (int row = 0; row < 500; row++) {
+            cache.toJsonObject(snapshot, row);
+        }
+        byte[] all = cache.toJsonPage(new CardRows(snapshot, IntStream.range(0, 500).toArray()));
+
+        assertThat(cache.weightedSize()).isPositive().isLessThanOrEqualTo(4096);
+        assertThat(objectMapper.readTree(all)).hasSize(500);
+        assertThat(new String(cache.toJsonObject(snapshot, 7), StandardCharsets.UTF_8)).contains("\"Card 7\"");
+    }
+
+    @Test
+    void toJson_NewBaseDropsOldFragments() {
+        CardJsonCache cache = new CardJsonCache(objectMapper);
+        cache.toJson(new CardRows(snapshot, new int[] {0, 1, 2}));
+
+        CatalogSnapshot reloaded = CatalogSnapshot.build(2, catalog(3));
+        byte[] json = cache.toJson(new CardRows(reloaded, new int[] {0}));
+
+        assertThat(new String(json, StandardCharsets.UTF_8)).startsWith("[{\"id\":1,");
+        assertThat(cache.weightedSize()).isLessThan(2 * json.length + 256);
+    }
+
+    @Test
+    void toJson_SizeZeroEncodesEveryTime() {
+        CardJsonCache cache = new CardJsonCache(objectMapper, 0);
+
+        byte[] first = cache.toJsonObject(snapshot, 3);
+
+        assertThat(cache.toJsonObject(snapshot, 3)).isEqualTo(first).isNotSameAs(first);
+        assertThat(cache.weightedSize()).isZero();
+    }
+
+    private static CardCatalog catalog(int size) {
+        CardCatalog.Builder builder = CardCatalog.builder(size);
+        for (int i = 0; i < size; i++) {
+            builder.add(i + 1, "Card " + i, "Spec " + i % 7, "Built machine " + i, 100L + i, "img");
+        }
+        return builder.build();
+    }
+}
@@ -0,0 +1,92 @@
+package edu.byui.apj.storefront.api.service;
+
+import edu.byui.apj.storefront.api.catalog.CardCatalog;
+import edu.byui.apj.storefront.api.catalog.CatalogSnapshot;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.runner.ApplicationContextRunner;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class CardQueryCacheTest {
+
+    private final CardCatalog catalog = CardCatalog.builder()
+        .add(1L, "Alan Turing", "AI", "Turing test", 6799L, "img")
+        .build();
+
+    @Test
+    void rows_ComputesOncePerQueryAndVersion() {
+        CardQueryCache cache = new CardQueryCache();
+        CatalogSnapshot v1 = CatalogSnapshot.build(1, catalog);
+        CatalogSnapshot v2 = CatalogSnapshot.build(2, catalog);
+        AtomicInteger computed = new AtomicInteger();
+
+        cache.rows(v1, CardQuery.search("turing"), () -> new int[] {computed.incrementAndGet()});
+        int[] hit = cache.rows(v1, CardQuery.search(" Turing "), () -> new int[] {computed.incrementAndGet()});
+        cache.rows(v2, CardQuery.search("turing"), () -> new int[] {computed.incrementAndGet()});
+
+        assertThat(hit).containsExactly(1);
+        assertThat(computed).hasValue(2);
+    }
+
+    @Test
+    void rows_BoundedByWeight() {
+        CardQueryCache cache = new CardQueryCache(4096);
+        CatalogSnapshot snapshot = CatalogSnapshot.build(1, catalog);
+
+        for (int i = 0; i < 100; i++) {
+            cache.rows(snapshot, CardQuery.search("q" + i), () -> new int[256]);
+        }
+        cache.cache().cleanUp();
+
+        assertThat(cache.weightedSize()).isLessThanOrEqualTo(4096);
+        assertThat(cache.cache().stats().evictionCount()).isPositive();
+    }
+
+    @Test
+    void rows_ZeroSizeDisablesCache() {
+        CardQueryCache cache = new CardQueryCache(0);
+        CatalogSnapshot snapshot = CatalogSnapshot.build(1, catalog);
+        AtomicInteger computed = new AtomicInteger();
+
+        cache.rows(snapshot, CardQuery.search("turing"), () -> new int[] {computed.incrementAndGet()});
+        cache.rows(snapshot, CardQuery.search("turing"), () -> new int[] {computed.incrementAndGet()});
+
+        assertThat(computed).hasValue(2);
+    }
+
+    @Test
+    void context_BindsMaxBytesProperty() {
+        new ApplicationContextRunner()
+            .withUserConfiguration(CardQueryCache.class)
+            .withPropertyValues("catalog.query-cache.max-bytes=0")
+            .run(context -> {
+                CardQueryCache cache = context.getBean(CardQueryCache.class);
+                CatalogSnapshot snapshot = CatalogSnapshot.build(1, catalog);
+                AtomicInteger computed = new AtomicInteger();
+
+                cache.rows(snapshot, CardQuery.search("turing"), () -> new int[] {computed.incrementAndGet()});
+                cache.rows(snapshot, CardQuery.search("turing"), () -> new int[] {computed.incrementAndGet()});
+
+                assertThat(computed).hasValue(2);
+            });
+    }
+
+    @Test
+    void bindTo_PublishesHitsEvictionsAndBytes() {
+        CardQueryCache cache = new CardQueryCache();
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        cache.bindTo(registry);
+        CatalogSnapshot snapshot = CatalogSnapshot.build(1, catalog);
+
+        cache.rows(snapshot, CardQuery.search("turing"), () -> new int[] {0});
+        cache.rows(snapshot, CardQuery.search("turing"), () -> new int[] {0});
+
+        assertThat(registry.get("cache.gets").tag("cache", "catalogQuery").tag("result", "hit")
+            .functionCounter().count()).isEqualTo(1);
+        assertThat(registry.get("cache.evictions").tag("cache", "catalogQuery").functionCounter()).isNotNull();
+        assertThat(registry.get("cache.weighted.size").tag("cache", "catalogQuery").gauge().value()).isPositive();
+    }
+}
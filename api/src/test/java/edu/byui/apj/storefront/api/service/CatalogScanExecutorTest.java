@@ -0,0 +1,66 @@
+package edu.byui.apj.storefront.api.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.runner.ApplicationContextRunner;
+
+import java.util.function.IntPredicate;
+import java.util.function.IntUnaryOperator;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class CatalogScanExecutorTest {
+
+    private static final int POSITIONS = 300_000;
+
+    // Positions map to rows in reverse so that position order and row order differ.
+    private final IntUnaryOperator rowAt = position -> POSITIONS - 1 - position;
+    private final IntUnaryOperator key = row -> (int) ((row * 2_654_435_761L) % 1_000_003);
+
+    private final CatalogScanExecutor sequential = new CatalogScanExecutor(1, 0);
+    private final CatalogScanExecutor parallel = new CatalogScanExecutor(4, 0);
+
+    @AfterEach
+    void tearDown() {
+        parallel.shutdown();
+    }
+
+    @Test
+    void firstMatches_ParallelKeepsPositionOrder() {
+        IntPredicate dense = row -> row % 3 == 0;
+        IntPredicate sparse = row -> row % 40_000 == 7;
+
+        for (IntPredicate filter : new IntPredicate[] {dense, sparse}) {
+            for (int wanted : new int[] {1, 20, 5_000, 50_000, Integer.MAX_VALUE}) {
+                assertThat(parallel.firstMatches(10, POSITIONS, rowAt, filter, wanted))
+                    .containsExactly(sequential.firstMatches(10, POSITIONS, rowAt, filter, wanted));
+            }
+        }
+        assertThat(parallel.firstMatches(0, POSITIONS, rowAt, row -> false, 10)).isEmpty();
+        assertThat(parallel.firstMatches(0, POSITIONS, rowAt, dense, 0)).isEmpty();
+    }
+
+    @Test
+    void smallestKeys_ParallelMatchesSequential() {
+        IntPredicate odd = row -> row % 2 == 1;
+
+        for (int k : new int[] {1, 100, 200_000}) {
+            int[] rows = parallel.smallestKeys(5, POSITIONS, rowAt, odd, k, key);
+            assertThat(rows).containsExactly(sequential.smallestKeys(5, POSITIONS, rowAt, odd, k, key));
+            assertThat(rows).hasSize(Math.min(k, (POSITIONS - 5) / 2));
+        }
+    }
+
+    @Test
+    void context_BindsPoolProperties() {
+        new ApplicationContextRunner()
+            .withUserConfiguration(CatalogScanExecutor.class)
+            .withPropertyValues("catalog.scan.parallelism=3", "catalog.scan.parallel-threshold=1000000")
+            .run(context -> {
+                CatalogScanExecutor executor = context.getBean(CatalogScanExecutor.class);
+
+                assertThat(executor.parallelism()).isEqualTo(3);
+                assertThat(executor.parallelThreshold()).isEqualTo(1_000_000);
+            });
+    }
+}
@@ -0,0 +1,61 @@
+package edu.byui.apj.storefront.api.service;
+
+import edu.byui.apj.storefront.api.catalog.CardOrder;
+import edu.byui.apj.storefront.api.service.QueryPlanner.Access;
+import edu.byui.apj.storefront.api.service.QueryPlanner.Estimates;
+import org.junit.jupiter.api.Test;
+
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class QueryPlannerTest {
+
+    private static final int N = 1_000_000;
+    private static final int BUCKET_WIDTH = N / 256;
+    private static final boolean[] SOME_SPECIALTIES = {true, false};
+
+    private final CardQuery filter = CardQuery.filter(Optional.empty(), Optional.empty(), Optional.of("x"), Optional.empty());
+    private final CardQuery withText = CardQuery.filter(Optional.empty(), Optional.empty(), Optional.of("x"), Optional.empty(),
+        Optional.of("compiler"));
+
+    @Test
+    void plan_DrivesFromTheMostSelectiveIndex() {
+        // 100 rows in the price range, half the catalog in the specialty.
+        Estimates narrowPrice = new Estimates(N, 5_000, 5_100, SOME_SPECIALTIES, N / 2, N);
+        assertThat(QueryPlanner.plan(narrowPrice, filter, CardOrder.NAME, BUCKET_WIDTH, 20).access())
+            .isEqualTo(Access.PRICE_RANGE);
+
+        // 50 rows in the specialty, half the catalog in the price range.
+        Estimates rareSpecialty = new Estimates(N, 0, N / 2, SOME_SPECIALTIES, 50, N);
+        assertThat(QueryPlanner.plan(rareSpecialty, filter, CardOrder.PRICE, BUCKET_WIDTH, 20).access())
+            .isEqualTo(Access.SPECIALTY_BITMAP);
+
+        // A rare trigram beats both.
+        Estimates rareText = new Estimates(N, 0, N / 2, SOME_SPECIALTIES, N / 2, 30);
+        assertThat(QueryPlanner.plan(rareText, withText, CardOrder.CATALOG, BUCKET_WIDTH, 20).access())
+            .isEqualTo(Access.TEXT_POSTINGS);
+    }
+
+    @Test
+    void plan_WalksTheOrderWhenAFewBroadMatchesFillTheWindow() {
+        Estimates broad = new Estimates(N, 0, N * 9 / 10, SOME_SPECIALTIES, N * 8 / 10, N);
+
+        QueryPlanner.Plan plan = QueryPlanner.plan(broad, filter, CardOrder.NAME, BUCKET_WIDTH, 20);
+
+        assertThat(plan.access()).isEqualTo(Access.WALK_ORDER);
+        assertThat(plan.inOrder()).isTrue();
+        assertThat(plan.estimatedMatches()).isEqualTo(720_000);
+    }
+
+    @Test
+    void plan_IntersectsBitmapsForTwoModeratePredicates() {
+        // Each predicate keeps 5% of the catalog; together they keep about 2,500 rows, all of them wanted.
+        Estimates moderate = new Estimates(N, 0, N / 20, SOME_SPECIALTIES, N / 20, N);
+
+        QueryPlanner.Plan plan = QueryPlanner.plan(moderate, filter, CardOrder.CATALOG, BUCKET_WIDTH, CardQuery.NO_LIMIT);
+
+        assertThat(plan.access()).isEqualTo(Access.SPECIALTY_AND_PRICE_BITMAPS);
+        assertThat(plan.estimatedMatches()).isEqualTo(2_500);
+    }
+}
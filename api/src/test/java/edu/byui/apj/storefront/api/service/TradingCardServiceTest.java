@@ -0,0 +1,662 @@
+package edu.byui.apj.storefront.api.service;
+
+import edu.byui.apj.storefront.api.catalog.CardRows;
+import edu.byui.apj.storefront.api.catalog.CatalogSnapshot;
+import edu.byui.apj.storefront.api.catalog.CatalogSnapshotFile;
+import edu.byui.apj.storefront.api.model.CardFacets;
+import edu.byui.apj.storefront.api.model.CardPage;
+import edu.byui.apj.storefront.api.model.CardSuggestion;
+import edu.byui.apj.storefront.api.model.TradingCard;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.SplittableRandom;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.AdditionalAnswers.delegatesTo;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+
+public class TradingCardServiceTest {
+
+    private static final String HEADER = "ID,Name,Specialty,Contribution,Price,ImageUrl\n";
+
+    private TradingCardService tcService;
+
+    @BeforeEach
+    void setUp() {
+        tcService = new TradingCardService();
+    }
+
+    @Test
+    void getCards_FirstPage() {
+        List<TradingCard> result = tcService.getCards(0, 2);
+
+        assertThat(result).hasSize(2);
+        assertThat(result.get(0).getId()).isEqualTo(1L);
+        assertThat(result.get(0).getName()).isEqualTo("Alan Turing");
+        assertThat(result.get(0).getPrice()).isEqualByComparingTo("67.99");
+        assertThat(result.get(1).getName()).isEqualTo("Ada Lovelace");
+    }
+
+    @Test
+    void getCards_PageIsClamped() {
+        List<TradingCard> result = tcService.getCards(1000, 20);
+
+        assertThat(result).isNotEmpty().hasSizeLessThanOrEqualTo(20);
+        assertThat(result.getLast().getId()).isEqualTo(98L);
+    }
+
+    @Test
+    void getCard_ById() {
+        assertThat(tcService.getCard(2L)).get().extracting(TradingCard::getName).isEqualTo("Ada Lovelace");
+        assertThat(tcService.getCard(9999L)).isEmpty();
+    }
+
+    @Test
+    void getSuggestions_CardNamesAndSpecialties() {
+        assertThat(tcService.getSuggestions("lovel", 5))
+            .containsExactly(new CardSuggestion("Ada Lovelace", "card", 1));
+        assertThat(tcService.getSuggestions("  ALGO", 1))
+            .containsExactly(new CardSuggestion("Algorithms_Theory", "specialty", 8));
+    }
+
+    @Test
+    void getCardRowsByIds_KeepsRequestOrderAndSkipsUnknownIds() {
+        List<TradingCard> result = tcService.getCardRowsByIds(List.of(98L, 9999L, 1L, 98L)).toCards();
+
+        assertThat(result).extracting(TradingCard::getId).containsExactly(98L, 1L, 98L);
+    }
+
+    @Test
+    void getCardsFilter_PriceRangeAndSpecialty() {
+        BigDecimal min = new BigDecimal("10");
+        BigDecimal max = new BigDecimal("100.5");
+
+        List<TradingCard> result = tcService.getCardsFilter(
+            Optional.of(min), Optional.of(max), Optional.of(" algorithms "), Optional.empty());
+
+        assertThat(result).isNotEmpty().allSatisfy(card -> {
+            assertThat(card.getPrice()).isBetween(min, max);
+            assertThat(card.getSpecialty()).isEqualTo("Algorithms_Theory");
+        });
+    }
+
+    @Test
+    void getCardsFilter_SortByPrice() {
+        List<TradingCard> result = tcService.getCardsFilter(
+            Optional.empty(), Optional.empty(), Optional.empty(), Optional.of("price"));
+
+        assertThat(result).hasSize(98).isSortedAccordingTo(Comparator.comparing(TradingCard::getPrice));
+    }
+
+    @Test
+    void getCardsFilter_SortByPriceWithinRange() {
+        BigDecimal min = new BigDecimal("12.99");
+        BigDecimal max = new BigDecimal("20.99");
+
+        List<TradingCard> result = tcService.getCardsFilter(
+            Optional.of(min), Optional.of(max), Optional.empty(), Optional.of("price"));
+
+        assertThat(result).isNotEmpty().isSortedAccordingTo(Comparator.comparing(TradingCard::getPrice));
+        assertThat(result.getFirst().getPrice()).isEqualByComparingTo(min);
+        assertThat(result.getLast().getPrice()).isEqualByComparingTo(max);
+        // Equal prices keep catalog order, as the previous stable sort did.
+        assertThat(result).extracting(TradingCard::getId).startsWith(24L, 50L, 67L, 74L);
+    }
+
+    @Test
+    void getCardsFilter_EmptyPriceRange() {
+        List<TradingCard> result = tcService.getCardsFilter(
+            Optional.of(new BigDecimal("50")), Optional.of(new BigDecimal("40")), Optional.empty(), Optional.of("price"));
+
+        assertThat(result).isEmpty();
+    }
+
+    @Test
+    void getCardsFilter_SortByName() {
+        List<TradingCard> result = tcService.getCardsFilter(
+            Optional.of(new BigDecimal("50")), Optional.empty(), Optional.empty(), Optional.of("name"));
+
+        assertThat(result).isNotEmpty().isSortedAccordingTo(Comparator.comparing(TradingCard::getName));
+        assertThat(result).allSatisfy(card -> assertThat(card.getPrice()).isGreaterThanOrEqualTo(new BigDecimal("50")));
+    }
+
+    @Test
+    void getCardsFilterPage_WalksEveryPage() {
+        Optional<BigDecimal> min = Optional.of(new BigDecimal("30"));
+        List<TradingCard> expected = tcService.getCardsFilter(min, Optional.empty(), Optional.empty(), Optional.of("name"));
+
+        List<TradingCard> walked = new ArrayList<>();
+        String cursor = "";
+        do {
+            CardPage page = tcService.getCardsFilterPage(min, Optional.empty(), Optional.empty(), Optional.of("name"), cursor, 7);
+            assertThat(page.cards()).hasSizeLessThanOrEqualTo(7);
+            walked.addAll(page.cards());
+            cursor = page.nextCursor();
+        } while (cursor != null);
+
+        assertThat(walked).isEqualTo(expected);
+    }
+
+    @Test
+    void getCardsPage_CursorSeeksById() {
+        CardPage first = tcService.getCardsPage("", 5);
+        CardPage second = tcService.getCardsPage(first.nextCursor(), 5);
+
+        assertThat(first.cards()).extracting(TradingCard::getId).containsExactly(1L, 2L, 3L, 4L, 5L);
+        assertThat(second.cards()).extracting(TradingCard::getId).containsExactly(6L, 7L, 8L, 9L, 10L);
+    }
+
+    @Test
+    void getCardsFilterPage_RejectsCursorForOtherSort() {
+        CardPage byPrice = tcService.getCardsFilterPage(
+            Optional.empty(), Optional.empty(), Optional.empty(), Optional.of("price"), "", 5);
+
+        assertThatThrownBy(() -> tcService.getCardsFilterPage(
+            Optional.empty(), Optional.empty(), Optional.empty(), Optional.of("name"), byPrice.nextCursor(), 5))
+            .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> tcService.getCardsPage("not a cursor", 5))
+            .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void getCardsSearch_NameOrContribution() {
+        List<TradingCard> result = tcService.getCardsSearch("LOVELACE");
+
+        assertThat(result).extracting(TradingCard::getName).contains("Ada Lovelace");
+        assertThat(tcService.getCardsSearch("compiler")).isNotEmpty().allSatisfy(card ->
+            assertThat((card.getName() + card.getContribution()).toLowerCase()).contains("compiler"));
+    }
+
+    @Test
+    void getCardsFilterRows_RepeatedQueryIsCached() {
+        CardRows first = tcService.getCardsFilterRows(
+            Optional.empty(), Optional.of(new BigDecimal("50")), Optional.of("AI"), Optional.of("price"));
+        CardRows second = tcService.getCardsFilterRows(
+            Optional.empty(), Optional.of(new BigDecimal("50.00")), Optional.of(" ai"), Optional.of("price"));
+
+        assertThat(second.rows()).isSameAs(first.rows());
+    }
+
+    @Test
+    void createCard_KeepsCachedQueriesUntilCompaction() {
+        CardQueryCache cache = new CardQueryCache();
+        TradingCardService service = new TradingCardService("", "", cache);
+        service.getCardsSearchRows("compiler");
+
+        service.createCard(new TradingCard(null, "Kathleen Booth", "Languages", "Assembly", BigDecimal.ONE, "img"));
+
+        assertThat(cache.weightedSize()).isPositive();
+        service.compact().join();
+        assertThat(cache.weightedSize()).isZero();
+    }
+
+    @Test
+    void getCardsFilterRows_WindowMatchesFullResult() {
+        Optional<BigDecimal> min = Optional.of(new BigDecimal("50"));
+        Optional<BigDecimal> max = Optional.of(new BigDecimal("65"));
+        for (Optional<String> sort : List.of(Optional.<String>empty(), Optional.of("name"), Optional.of("price"))) {
+            int[] full = tcService.getCardsFilterRows(min, max, Optional.empty(), sort).rows();
+            int[] all = tcService.getCardsFilterRows(Optional.of(BigDecimal.ZERO), Optional.empty(), Optional.empty(), sort).rows();
+
+            assertThat(tcService.getCardsFilterRows(min, max, Optional.empty(), sort, 1, 2).rows())
+                .containsExactly(Arrays.copyOfRange(full, 1, Math.min(3, full.length)));
+            assertThat(tcService.getCardsFilterRows(Optional.of(BigDecimal.ZERO), Optional.empty(), Optional.empty(), sort, 5, 3).rows())
+                .containsExactly(Arrays.copyOfRange(all, 5, 8));
+            assertThat(tcService.getCardsFilterRows(min, max, Optional.empty(), sort, 1000, 5).rows()).isEmpty();
+        }
+    }
+
+    @Test
+    void getCardsFilterRows_TextNarrowsEveryAccessPath() {
+        List<Optional<BigDecimal>> mins = List.of(Optional.empty(), Optional.of(new BigDecimal("50")));
+        List<Optional<String>> specialties = List.of(Optional.empty(), Optional.of("AI"));
+        for (String text : List.of("an", "comp")) {
+            List<Integer> matching = Arrays.stream(tcService.getCardsSearchRows(text).rows()).boxed().toList();
+            for (Optional<String> sort : List.of(Optional.<String>empty(), Optional.of("name"), Optional.of("price"))) {
+                for (Optional<BigDecimal> min : mins) {
+                    for (Optional<String> specialty : specialties) {
+                        int[] expected = Arrays.stream(tcService.getCardsFilterRows(min, Optional.empty(), specialty, sort).rows())
+                            .filter(matching::contains)
+                            .toArray();
+                        CardQuery query = CardQuery.filter(min, Optional.empty(), specialty, sort, Optional.of(text));
+
+                        assertThat(tcService.getCardsFilterRows(query).rows()).containsExactly(expected);
+                        assertThat(tcService.getCardsFilterRows(query.window(1, 2)).rows())
+                            .containsExactly(Arrays.copyOfRange(expected, Math.min(1, expected.length), Math.min(3, expected.length)));
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    void getCardsSearchRows_WindowMatchesFullResult() {
+        int[] full = tcService.getCardsSearchRows("an").rows();
+
+        assertThat(full.length).isGreaterThan(4);
+        assertThat(tcService.getCardsSearchRows("an", 2, 2).rows()).containsExactly(Arrays.copyOfRange(full, 2, 4));
+        assertThat(tcService.getCardsSearchRows("an", 0, 0).rows()).isEmpty();
+    }
+
+    @Test
+    void getCardsFacets_MatchesFilteredList() {
+        Optional<BigDecimal> min = Optional.of(new BigDecimal("20"));
+        Optional<BigDecimal> max = Optional.of(new BigDecimal("80"));
+        BigDecimal width = new BigDecimal("25");
+
+        CardFacets facets = tcService.getCardsFacets(min, max, Optional.of("ing"), width);
+        List<TradingCard> filtered = tcService.getCardsFilter(min, max, Optional.of("ing"), Optional.empty());
+        List<TradingCard> priceOnly = tcService.getCardsFilter(min, max, Optional.empty(), Optional.empty());
+
+        assertThat(facets.total()).isEqualTo(filtered.size());
+        assertThat(facets.prices()).isNotEmpty().allSatisfy(bucket -> assertThat(bucket.count()).isPositive());
+        for (CardFacets.PriceBucket bucket : facets.prices()) {
+            assertThat(bucket.count()).isEqualTo((int) filtered.stream()
+                .filter(card -> card.getPrice().compareTo(bucket.min()) >= 0 && card.getPrice().compareTo(bucket.max()) < 0)
+                .count());
+        }
+        assertThat(facets.specialties()).extracting(CardFacets.SpecialtyCount::count).isSortedAccordingTo(Comparator.reverseOrder());
+        assertThat(facets.specialties().stream().mapToInt(CardFacets.SpecialtyCount::count).sum()).isEqualTo(priceOnly.size());
+    }
+
+    @Test
+    void getCardsFacets_QueryNarrowsCountsLikeTheFilter() {
+        tcService.createCard(new TradingCard(null, "Kathleen Booth", "Languages", "Wrote an early compiler",
+            new BigDecimal("33.00"), "img"));
+        tcService.deleteCard(tcService.getCardsSearch("compiler").getFirst().getId());
+        Optional<String> query = Optional.of("Compiler");
+
+        CardFacets facets = tcService.getCardsFacets(Optional.empty(), Optional.empty(), Optional.empty(), query,
+            new BigDecimal("10"));
+        List<TradingCard> filtered = tcService.getCardsFilterRows(CardQuery.filter(
+            Optional.empty(), Optional.empty(), Optional.empty(), Optional.empty(), query)).toCards();
+
+        assertThat(filtered).extracting(TradingCard::getName).contains("Kathleen Booth");
+        assertThat(facets.total()).isEqualTo(filtered.size());
+        assertThat(facets.specialties().stream().mapToInt(CardFacets.SpecialtyCount::count).sum())
+            .isEqualTo(filtered.size());
+        assertThat(facets.prices().stream().mapToInt(CardFacets.PriceBucket::count).sum()).isEqualTo(filtered.size());
+    }
+
+    @Test
+    void getCardsFacets_RejectsZeroBucketWidth() {
+        assertThatThrownBy(() -> tcService.getCardsFacets(Optional.empty(), Optional.empty(), Optional.empty(), BigDecimal.ZERO))
+            .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void getCardsFuzzySearchRows_FindsMisspelledName() {
+        assertThat(tcService.getCardsSearch("lovlace")).isEmpty();
+
+        List<TradingCard> result = tcService.getCardsFuzzySearchRows("ada lovlace", 0, 5).toCards();
+
+        assertThat(result).first().extracting(TradingCard::getName).isEqualTo("Ada Lovelace");
+    }
+
+    @Test
+    void getCardsRankedSearchRows_PutsNameMatchesFirst() {
+        List<TradingCard> result = tcService.getCardsRankedSearchRows("turing", 0, 3).toCards();
+
+        assertThat(result).first().extracting(TradingCard::getName).isEqualTo("Alan Turing");
+        assertThat(tcService.getCardsRankedSearchRows("turing", 0, CardQuery.NO_LIMIT).size())
+            .isEqualTo(tcService.getCardsFuzzySearchRows("turing", 0, CardQuery.NO_LIMIT).size());
+    }
+
+    @Test
+    void getCardsSearch_NoMatch() {
+        assertThat(tcService.getCardsSearch("zzqqxx")).isEmpty();
+    }
+
+    @Test
+    void createCard_IsFoundByEveryQuery() {
+        int before = tcService.getSnapshot().liveCount();
+        TradingCard card = new TradingCard(null, "Grace Zephyr", "Compilers", "Wrote the zephyrus linker",
+            new BigDecimal("12.34"), "img");
+
+        CardRows created = tcService.createCard(card);
+        long id = created.toCards().getFirst().getId();
+
+        assertThat(id).isEqualTo(99L);
+        assertThat(tcService.getCard(id)).get().extracting(TradingCard::getName).isEqualTo("Grace Zephyr");
+        assertThat(tcService.getCardsSearch("zephyrus")).extracting(TradingCard::getId).containsExactly(id);
+        assertThat(tcService.getCardsFuzzySearchRows("zephirus", 0, 5).toCards()).extracting(TradingCard::getId)
+            .containsExactly(id);
+        assertThat(tcService.getCardsRankedSearchRows("zephyr", 0, 5).toCards()).extracting(TradingCard::getId)
+            .containsExactly(id);
+        assertThat(tcService.getSuggestions("zeph", 5)).containsExactly(new CardSuggestion("Grace Zephyr", "card", 1));
+        assertThat(tcService.getCardsFilter(Optional.of(new BigDecimal("12.34")), Optional.of(new BigDecimal("12.34")),
+            Optional.of("compilers"), Optional.of("price"))).extracting(TradingCard::getId).containsExactly(id);
+        assertThat(tcService.getCards(0, 200)).hasSize(before + 1).last().extracting(TradingCard::getId).isEqualTo(id);
+        assertThatThrownBy(() -> tcService.createCard(new TradingCard(id, "Copy", "Spec", "", BigDecimal.ONE, "")))
+            .isInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    void createCard_RejectsInvalidPrice() {
+        assertThatThrownBy(() -> tcService.createCard(new TradingCard(null, "Card", "Spec", "", new BigDecimal("1.005"), "")))
+            .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> tcService.createCard(new TradingCard(null, "Card", "Spec", "", new BigDecimal("-1"), "")))
+            .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> tcService.createCard(new TradingCard(null, null, "Spec", "", BigDecimal.ONE, "")))
+            .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void updateCard_RepricesInPlaceAndLeavesPinnedReadersAlone() {
+        CardRows pinned = tcService.getCardsFilterRows(Optional.empty(), Optional.empty(), Optional.empty(), Optional.of("price"));
+        TradingCard ada = tcService.getCard(2L).orElseThrow();
+        ada.setPrice(new BigDecimal("0.01"));
+
+        assertThat(tcService.updateCard(2L, ada)).isPresent();
+
+        assertThat(tcService.getCards(0, 2)).extracting(TradingCard::getName).containsExactly("Alan Turing", "Ada Lovelace");
+        assertThat(tcService.getCardsFilter(Optional.empty(), Optional.empty(), Optional.empty(), Optional.of("price")))
+            .first().extracting(TradingCard::getId).isEqualTo(2L);
+        assertThat(pinned.toCards().getFirst().getId()).isNotEqualTo(2L);
+        assertThatThrownBy(() -> tcService.updateCard(3L, ada)).isInstanceOf(IllegalArgumentException.class);
+        ada.setId(null);
+        assertThat(tcService.updateCard(1000L, ada)).isEmpty();
+    }
+
+    @Test
+    void updateCard_TextSearchesMatchTheNewTextOnly() {
+        TradingCard ada = tcService.getCard(2L).orElseThrow();
+        int algorithms = tcService.getSuggestions("algorithms_", 1).getFirst().weight();
+        ada.setName("Ada Byron");
+        ada.setSpecialty("Poetry");
+
+        tcService.updateCard(2L, ada);
+
+        assertThat(tcService.getCardsFuzzySearchRows("ada lovlace", 0, 5).toCards()).extracting(TradingCard::getId)
+            .doesNotContain(2L);
+        assertThat(tcService.getCardsFuzzySearchRows("ada byrom", 0, 5).toCards()).extracting(TradingCard::getId)
+            .containsExactly(2L);
+        assertThat(tcService.getCardsRankedSearchRows("lovelace", 0, 5).toCards()).extracting(TradingCard::getId)
+            .doesNotContain(2L);
+        assertThat(tcService.getCardsRankedSearchRows("byron", 0, 5).toCards()).extracting(TradingCard::getId)
+            .containsExactly(2L);
+        assertThat(tcService.getSuggestions("lovel", 5)).isEmpty();
+        assertThat(tcService.getSuggestions("byr", 5)).containsExactly(new CardSuggestion("Ada Byron", "card", 1));
+        assertThat(tcService.getSuggestions("poet", 5)).containsExactly(new CardSuggestion("Poetry", "specialty", 1));
+        assertThat(tcService.getSuggestions("algorithms_", 1).getFirst().weight()).isEqualTo(algorithms - 1);
+    }
+
+    @Test
+    void deleteCard_RemovesCardFromEveryQuery() {
+        assertThat(tcService.deleteCard(1L)).isTrue();
+
+        assertThat(tcService.getCard(1L)).isEmpty();
+        assertThat(tcService.getCardsSearch("turing")).isEmpty();
+        assertThat(tcService.getCardsRankedSearchRows("turing", 0, 3).toCards()).extracting(TradingCard::getId)
+            .doesNotContain(1L);
+        assertThat(tcService.getCards(0, 1)).extracting(TradingCard::getName).containsExactly("Ada Lovelace");
+        assertThat(tcService.deleteCard(1L)).isFalse();
+    }
+
+    @Test
+    void getCards_EmptyAfterDeletingEveryCard() {
+        tcService.getCards(0, Integer.MAX_VALUE).forEach(card -> tcService.deleteCard(card.getId()));
+
+        assertThat(tcService.getCards(0, 20)).isEmpty();
+        assertThat(tcService.getCards(3, 1)).isEmpty();
+        assertThat(tcService.getCardsPage("", 20).cards()).isEmpty();
+        assertThat(tcService.compact().join().liveCount()).isZero();
+        assertThat(tcService.getCards(0, 20)).isEmpty();
+    }
+
+    @Test
+    void compact_GivesSameResultsAsTheWrittenVersion() {
+        SplittableRandom random = new SplittableRandom(17);
+        String[] specialties = {"AI", "Compilers", "Networking", "Quantum"};
+        for (int i = 0; i < 200; i++) {
+            long id = random.nextLong(1, 130);
+            if (random.nextInt(4) == 0) {
+                tcService.deleteCard(id);
+                continue;
+            }
+            TradingCard card = new TradingCard(id, "Card " + random.nextInt(60), specialties[random.nextInt(specialties.length)],
+                "Built the " + random.nextInt(40) + " machine", BigDecimal.valueOf(random.nextLong(100, 9_000), 2), "img");
+            if (tcService.getCard(id).isPresent()) {
+                tcService.updateCard(id, card);
+            } else {
+                tcService.createCard(card);
+            }
+        }
+        List<Object> written = queryResults();
+        long writtenVersion = tcService.getSnapshot().version();
+
+        CatalogSnapshot compacted = tcService.compact().join();
+
+        assertThat(compacted.version()).isGreaterThan(writtenVersion);
+        assertThat(compacted.delta().isEmpty()).isTrue();
+        assertThat(queryResults()).isEqualTo(written);
+    }
+
+    @Test
+    void changeLog_RestoresWritesAfterRestart(@TempDir Path dir) {
+        TradingCardService logged = loggedService(dir);
+        logged.createCard(new TradingCard(null, "Grace Hopper", "Compilers", "COBOL", new BigDecimal("42.00"), "img"));
+        logged.updateCard(2L, new TradingCard(2L, "Ada Lovelace", "Algorithms", "Notes", new BigDecimal("1.50"), "img"));
+        logged.deleteCard(1L);
+        List<TradingCard> written = logged.getCards(0, 200);
+        logged.shutdown();
+
+        TradingCardService restarted = loggedService(dir);
+        assertThat(restarted.getCards(0, 200)).isEqualTo(written);
+
+        restarted.compact().join();
+        restarted.deleteCard(3L);
+        restarted.shutdown();
+
+        TradingCardService compacted = loggedService(dir);
+        assertThat(compacted.getCards(0, 200)).isEqualTo(written.stream().filter(card -> card.getId() != 3L).toList());
+        assertThat(compacted.getCard(99L)).get().extracting(TradingCard::getName).isEqualTo("Grace Hopper");
+        compacted.shutdown();
+    }
+
+    @Test
+    void changeLog_ReloadIsOnlyPublishedOnceCheckpointed(@TempDir Path dir) throws IOException {
+        Path csv = dir.resolve("cards.csv");
+        Path wal = dir.resolve("wal");
+        Files.writeString(csv, HEADER + "1,Alan Turing,AI,Turing test,67.99,img\n");
+        TradingCardService logged = loggedService(csv.toString(), wal);
+        logged.createCard(new TradingCard(null, "Grace Hopper", "Compilers", "COBOL", new BigDecimal("42.00"), "img"));
+        Files.writeString(csv, HEADER + "7,Edsger Dijkstra,Algorithms,Shortest paths,5.00,img\n");
+        // The reload's checkpoint cannot be written where its temporary file goes.
+        Path blocked;
+        try (Stream<Path> files = Files.list(wal)) {
+            String segment = files.map(file -> file.getFileName().toString()).filter(name -> name.startsWith("changes-"))
+                .max(Comparator.naturalOrder()).orElseThrow();
+            long next = Long.parseLong(segment.substring("changes-".length(), segment.indexOf('.'))) + 1;
+            blocked = Files.createDirectory(wal.resolve(String.format("checkpoint-%016d.catalog.tmp", next)));
+        }
+
+        assertThatThrownBy(() -> logged.reload().join()).isInstanceOf(CompletionException.class);
+        logged.createCard(new TradingCard(null, "Ada Lovelace", "Algorithms", "Notes", new BigDecimal("1.50"), "img"));
+        List<TradingCard> written = logged.getCards(0, 10);
+        assertThat(written).extracting(TradingCard::getName).containsExactly("Alan Turing", "Grace Hopper", "Ada Lovelace");
+        logged.shutdown();
+
+        TradingCardService restarted = loggedService(csv.toString(), wal);
+        assertThat(restarted.getCards(0, 10)).isEqualTo(written);
+        Files.delete(blocked);
+        restarted.reload().join();
+        restarted.createCard(new TradingCard(null, "Barbara Liskov", "Languages", "CLU", new BigDecimal("3.00"), "img"));
+        restarted.shutdown();
+
+        TradingCardService reloaded = loggedService(csv.toString(), wal);
+        assertThat(reloaded.getCards(0, 10)).extracting(TradingCard::getName)
+            .containsExactly("Edsger Dijkstra", "Grace Hopper", "Ada Lovelace", "Barbara Liskov");
+        // The cards written before the last checkpoint are applied again by a reload after the restart.
+        reloaded.reload().join();
+        assertThat(reloaded.getCards(0, 10)).extracting(TradingCard::getName)
+            .containsExactly("Edsger Dijkstra", "Grace Hopper", "Ada Lovelace", "Barbara Liskov");
+        reloaded.shutdown();
+    }
+
+    @Test
+    void changeLog_FailedSyncIsNeitherPublishedNorRecovered(@TempDir Path dir) throws IOException {
+        AtomicBoolean failing = new AtomicBoolean();
+        TradingCardService logged = new TradingCardService("", "", new CardQueryCache(), new CatalogScanExecutor(),
+            TradingCardService.DEFAULT_COMPACTION_THRESHOLD, TradingCardService.DEFAULT_COMPACTION_DELAY_MS,
+            dir.toString(), 0, segment -> failingChannel(segment, failing));
+        logged.deleteCard(1L);
+        failing.set(true);
+
+        assertThatThrownBy(() -> logged.createCard(
+            new TradingCard(null, "Kathleen Booth", "Languages", "Assembly language", new BigDecimal("42.00"), "img")))
+            .isInstanceOf(UncheckedIOException.class);
+        assertThat(logged.getCardsSearch("kathleen booth")).isEmpty();
+        assertThatThrownBy(() -> logged.deleteCard(2L)).isInstanceOf(UncheckedIOException.class);
+        assertThat(logged.getCard(2L)).isPresent();
+        List<TradingCard> published = logged.getCards(0, 200);
+        assertThat(published).extracting(TradingCard::getId).doesNotContain(1L);
+        logged.shutdown();
+
+        TradingCardService restarted = loggedService(dir);
+        assertThat(restarted.getCards(0, 200)).isEqualTo(published);
+        restarted.shutdown();
+    }
+
+    // A segment whose fsyncs fail once failing is set, after the data has been written.
+    private static FileChannel failingChannel(Path segment, AtomicBoolean failing) throws IOException {
+        FileChannel file = FileChannel.open(segment, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        FileChannel channel = mock(FileChannel.class, delegatesTo(file));
+        doAnswer(invocation -> {
+            if (failing.get()) {
+                throw new IOException("Input/output error");
+            }
+            file.force(invocation.getArgument(0));
+            return null;
+        }).when(channel).force(anyBoolean());
+        return channel;
+    }
+
+    private static TradingCardService loggedService(Path dir) {
+        return loggedService("", dir);
+    }
+
+    private static TradingCardService loggedService(String csvPath, Path dir) {
+        return new TradingCardService(csvPath, "", new CardQueryCache(), new CatalogScanExecutor(),
+            TradingCardService.DEFAULT_COMPACTION_THRESHOLD, TradingCardService.DEFAULT_COMPACTION_DELAY_MS,
+            dir.toString(), 0);
+    }
+
+    private List<Object> queryResults() {
+        List<Object> results = new ArrayList<>();
+        results.add(tcService.getCards(0, 500));
+        results.add(tcService.getCards(3, 7));
+        results.add(tcService.getCardsSearch("card 1"));
+        // Ranked search is left out: its scores follow the statistics of the base, which a compaction changes.
+        results.add(tcService.getCardsFuzzySearchRows("crd 12 machne", 0, 50).toCards());
+        results.add(tcService.getSuggestions("card", 20));
+        results.add(tcService.getSuggestions("b", 20));
+        results.add(tcService.getCardsFacets(Optional.of(new BigDecimal("10")), Optional.of(new BigDecimal("70")),
+            Optional.of("a"), new BigDecimal("15")));
+        for (Optional<String> sort : List.of(Optional.<String>empty(), Optional.of("name"), Optional.of("price"))) {
+            for (Optional<String> specialty : List.of(Optional.<String>empty(), Optional.of("quantum"), Optional.of("ai"))) {
+                CardQuery query = CardQuery.filter(Optional.of(new BigDecimal("20")), Optional.of(new BigDecimal("60")),
+                    specialty, sort, Optional.empty());
+                results.add(tcService.getCardsFilterRows(query).toCards());
+                results.add(tcService.getCardsFilterRows(query.window(2, 5)).toCards());
+                results.add(tcService.getCardsFilterRows(CardQuery.filter(Optional.empty(), Optional.empty(), specialty, sort,
+                    Optional.of("machine"))).toCards());
+                List<TradingCard> walked = new ArrayList<>();
+                String cursor = "";
+                do {
+                    CardPage page = tcService.getCardsFilterPage(query, cursor, 4);
+                    walked.addAll(page.cards());
+                    cursor = page.nextCursor();
+                } while (cursor != null);
+                results.add(walked);
+            }
+        }
+        return results;
+    }
+
+    @Test
+    void reload_PublishesNewSnapshot(@TempDir Path dir) throws IOException {
+        Path csv = dir.resolve("catalog.csv");
+        Files.writeString(csv, HEADER + "1,Old Card,Spec,Text,1.00,img\n");
+        TradingCardService fileService = new TradingCardService(csv.toString());
+        CatalogSnapshot before = fileService.getSnapshot();
+        assertThat(fileService.getCardsSearch("card")).extracting(TradingCard::getName).containsExactly("Old Card");
+
+        Files.writeString(csv, HEADER + "1,New Card,Spec,Text,2.00,img\n2,Added,Spec,Text,3.00,img\n");
+        CatalogSnapshot after = fileService.reload().join();
+
+        assertThat(after.version()).isGreaterThan(before.version());
+        assertThat(fileService.getSnapshot()).isSameAs(after);
+        assertThat(fileService.getCardsSearch("card")).extracting(TradingCard::getName).containsExactly("New Card");
+        // A request holding the old snapshot still sees the old catalog.
+        assertThat(before.catalog().name(0)).isEqualTo("Old Card");
+        fileService.shutdown();
+    }
+
+    @Test
+    void reload_KeepsCardsWrittenThroughTheApi(@TempDir Path dir) throws IOException {
+        Path csv = dir.resolve("catalog.csv");
+        Files.writeString(csv, HEADER + "1,Old Card,Spec,Text,1.00,img\n2,Gone Card,Spec,Text,2.00,img\n"
+            + "3,Kept Card,Spec,Text,3.00,img\n");
+        TradingCardService fileService = new TradingCardService(csv.toString());
+        fileService.updateCard(1L, new TradingCard(1L, "Written Card", "Spec", "Text", new BigDecimal("9.00"), "img"));
+        fileService.deleteCard(2L);
+        fileService.createCard(new TradingCard(null, "Created Card", "Spec", "Text", new BigDecimal("4.00"), "img"));
+
+        Files.writeString(csv, HEADER + "1,New Card,Spec,Text,2.00,img\n2,Back Card,Spec,Text,2.00,img\n"
+            + "5,Added Card,Spec,Text,5.00,img\n");
+        CatalogSnapshot reloaded = fileService.reload().join();
+
+        assertThat(reloaded.delta().isEmpty()).isTrue();
+        assertThat(fileService.getCards(0, 10)).extracting(TradingCard::getName)
+            .containsExactly("Written Card", "Added Card", "Created Card");
+        assertThat(fileService.getCard(4L)).get().extracting(TradingCard::getName).isEqualTo("Created Card");
+        fileService.shutdown();
+    }
+
+    @Test
+    void constructor_OpensBinarySnapshot(@TempDir Path dir) throws IOException {
+        Path snapshotFile = dir.resolve("pioneers.catalog");
+        CatalogSnapshotFile.write(tcService.getSnapshot().catalog(), snapshotFile);
+
+        TradingCardService snapshotService = new TradingCardService("", snapshotFile.toString(), new CardQueryCache());
+
+        assertThat(snapshotService.getCards(0, 100)).isEqualTo(tcService.getCards(0, 100));
+        assertThat(snapshotService.getCardsSearch("lovelace")).isEqualTo(tcService.getCardsSearch("lovelace"));
+        snapshotService.shutdown();
+    }
+
+    @Test
+    void reload_FailureKeepsCurrentSnapshot(@TempDir Path dir) throws IOException {
+        Path csv = dir.resolve("catalog.csv");
+        Files.writeString(csv, HEADER + "1,Card,Spec,Text,1.00,img\n");
+        TradingCardService fileService = new TradingCardService(csv.toString());
+        CatalogSnapshot before = fileService.getSnapshot();
+
+        Files.delete(csv);
+
+        assertThatThrownBy(() -> fileService.reload().join()).isInstanceOf(CompletionException.class);
+        assertThat(fileService.getSnapshot()).isSameAs(before);
+        fileService.shutdown();
+    }
+}
@@ -0,0 +1,56 @@
+package edu.byui.apj.storefront.benchmarks;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Deterministic synthetic catalogs in the pioneers.csv layout. The same size and seed always give
+ * the same file, and generated files are kept under java.io.tmpdir so that later runs reuse them.
+ */
+public final class CatalogCsv {
+
+    public static final long DEFAULT_SEED = 42;
+
+    static final String HEADER = "ID,Name,Specialty,Contribution,Price,ImageUrl\n";
+
+    private CatalogCsv() {
+    }
+
+    public static Path generate(int size) throws IOException {
+        return generate(size, DEFAULT_SEED);
+    }
+
+    public static Path generate(int size, long seed) throws IOException {
+        Path file = Path.of(System.getProperty("java.io.tmpdir"), "apj-catalog-" + size + "-" + seed + ".csv");
+        if (Files.exists(file)) {
+            return file;
+        }
+        Path temp = Files.createTempFile(file.getParent(), file.getFileName().toString(), ".tmp");
+        write(temp, size, seed);
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return file;
+    }
+
+    public static void write(Path file, int size, long seed) throws IOException {
+        SyntheticCards cards = new SyntheticCards(seed);
+        try (BufferedWriter out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            out.write(HEADER);
+            for (long id = 1; id <= size; id++) {
+                writeRow(out, cards.card(id));
+            }
+        }
+    }
+
+    static void writeRow(Appendable out, SyntheticCards.Card card) throws IOException {
+        out.append(Long.toString(card.id())).append(',')
+            .append(card.name()).append(',')
+            .append(card.specialty()).append(',')
+            .append('"').append(card.contribution().replace("\"", "\"\"")).append('"').append(',')
+            .append(SyntheticCards.formatCents(card.priceCents())).append(',')
+            .append(card.imageUrl()).append('\n');
+    }
+}
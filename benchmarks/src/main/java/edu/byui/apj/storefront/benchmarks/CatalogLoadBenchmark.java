@@ -0,0 +1,56 @@
+package edu.byui.apj.storefront.benchmarks;
+
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import edu.byui.apj.storefront.api.catalog.CardCatalog;
+import edu.byui.apj.storefront.api.catalog.CsvCatalogLoader;
+
+/**
+ * Catalog CSV loading, which is what TradingCardService.loadAllFromCsv does at startup and on
+ * reload, measured through the same {@link CsvCatalogLoader}.
+ * <p>
+ * The CSV is generated once and kept under java.io.tmpdir (about 145 MB at 1M cards) and is
+ * mapped outside the heap. At 1M cards one load takes about 7 s on one core, and the catalog it
+ * returns retains about 90 MB. 10M cards is not run by default, because its parsed chunks and
+ * the joined catalog are live together; run it in its own fork with a larger heap:
+ * <pre>
+ * java -jar benchmarks/target/benchmarks.jar CatalogLoadBenchmark -p size=10000000 -jvmArgsAppend "-Xms8g -Xmx8g"
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class CatalogLoadBenchmark {
+
+    @Param({"100", "10000", "1000000"})
+    int size;
+
+    private Path csv;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        csv = CatalogCsv.generate(size);
+    }
+
+    @Benchmark
+    public CardCatalog loadAllFromCsv() throws Exception {
+        return new CsvCatalogLoader().load(csv).catalog();
+    }
+}
@@ -0,0 +1,112 @@
+package edu.byui.apj.storefront.benchmarks;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import edu.byui.apj.storefront.api.catalog.CardRows;
+import edu.byui.apj.storefront.api.model.CardSuggestion;
+import edu.byui.apj.storefront.api.model.TradingCard;
+import edu.byui.apj.storefront.api.service.CardQueryCache;
+import edu.byui.apj.storefront.api.service.CatalogScanExecutor;
+import edu.byui.apj.storefront.api.service.TradingCardService;
+
+/**
+ * Query paths of {@link TradingCardService} against synthetic catalogs. The result cache is off by
+ * default so that every invocation runs the query; pass {@code -p queryCacheBytes=16777216} to
+ * measure cache hits instead. Scans use every processor; {@code -p scanParallelism=1} keeps them on
+ * the benchmark thread.
+ * <p>
+ * Each fork loads and indexes the catalog once in its setup. At 1M cards that takes about 30 s on
+ * one core and retains about 700 MB of heap, roughly 700 bytes per card, so the 4 GB fork leaves
+ * room for the garbage the build leaves behind. 10M cards would retain about 7 GB and is not run by
+ * default; give it its own fork with a larger heap:
+ * <pre>
+ * java -jar benchmarks/target/benchmarks.jar CatalogQueryBenchmark -p size=10000000 -jvmArgsAppend "-Xms16g -Xmx16g"
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class CatalogQueryBenchmark {
+
+    @Param({"100", "10000", "1000000"})
+    int size;
+
+    @Param({"0"})
+    long queryCacheBytes;
+
+    @Param({"0"})
+    int scanParallelism;
+
+    private TradingCardService service;
+    private CatalogScanExecutor scanExecutor;
+    private final Optional<BigDecimal> minPrice = Optional.of(new BigDecimal("20.00"));
+    private final Optional<BigDecimal> maxPrice = Optional.of(new BigDecimal("80.00"));
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        scanExecutor = new CatalogScanExecutor(scanParallelism, CatalogScanExecutor.DEFAULT_PARALLEL_THRESHOLD);
+        service = new TradingCardService(
+            CatalogCsv.generate(size).toString(), "", new CardQueryCache(queryCacheBytes), scanExecutor);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        service.shutdown();
+        scanExecutor.shutdown();
+    }
+
+    @Benchmark
+    public List<TradingCard> getCards() {
+        return service.getCards(size / 40, 20);
+    }
+
+    @Benchmark
+    public List<TradingCard> getCardsFilterPriceSorted() {
+        return service.getCardsFilter(minPrice, maxPrice, Optional.of("program"), Optional.of("price"));
+    }
+
+    @Benchmark
+    public List<TradingCard> getCardsFilterUnsorted() {
+        return service.getCardsFilter(minPrice, maxPrice, Optional.of("program"), Optional.empty());
+    }
+
+    @Benchmark
+    public List<TradingCard> getCardsSearch() {
+        return service.getCardsSearch("java");
+    }
+
+    @Benchmark
+    public CardRows getCardsFuzzySearch() {
+        return service.getCardsFuzzySearchRows("compilr kernl", 0, 20);
+    }
+
+    @Benchmark
+    public CardRows getCardsRankedSearch() {
+        return service.getCardsRankedSearchRows("compiler kernel", 0, 20);
+    }
+
+    @Benchmark
+    public List<CardSuggestion> getSuggestions() {
+        return service.getSuggestions("gr", 10);
+    }
+}
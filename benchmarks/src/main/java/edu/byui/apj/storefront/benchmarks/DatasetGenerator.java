@@ -0,0 +1,203 @@
+package edu.byui.apj.storefront.benchmarks;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.util.MinimalPrettyPrinter;
+
+/**
+ * Writes a seeded, reproducible storefront dataset at any scale:
+ * <ul>
+ * <li>{@code cards.csv} in the pioneers.csv layout, for the api module's catalog.csv-path</li>
+ * <li>{@code cards.ndjson}, one document per line for
+ *     {@code mongoimport --db apj-storefront --collection tradingCard --file cards.ndjson}</li>
+ * <li>{@code storefront.sql} with customers, addresses, carts, items and orders for the db module's
+ *     H2 schema, loadable with {@code RUNSCRIPT FROM 'storefront.sql'} once Hibernate has created the tables</li>
+ * </ul>
+ * Carts hold 1 + Geometric(0.35) items, at most 25, so most carts are small with a long tail. Items
+ * favour low card ids, and the first {@code orders} carts are checked out.
+ * <pre>
+ * java -cp benchmarks/target/benchmarks.jar edu.byui.apj.storefront.benchmarks.DatasetGenerator \
+ *     --cards=1000000 --carts=200000 --orders=50000 --seed=42 --out=target/dataset
+ * </pre>
+ */
+public final class DatasetGenerator {
+
+    private static final int MAX_ITEMS_PER_CART = 25;
+    private static final double ITEM_COUNT_P = 0.35;
+    private static final double[] QUANTITY_CDF = {0.70, 0.90, 0.96, 0.99, 1.0};
+    private static final double CARD_POPULARITY_EXPONENT = 2.5;
+    private static final BigDecimal TAX_RATE = new BigDecimal("0.07");
+    private static final long EXPRESS_SHIPPING_CENTS = 999;
+    private static final LocalDateTime FIRST_ORDER = LocalDateTime.of(2024, 1, 1, 0, 0);
+    private static final DateTimeFormatter SQL_TIMESTAMP = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    private static final String[] CITIES = {"Rexburg", "Boise", "Provo", "Idaho Falls", "Salt Lake City", "Pocatello"};
+    private static final String[] STATES = {"ID", "ID", "UT", "ID", "UT", "ID"};
+
+    private final int cards;
+    private final int carts;
+    private final int orders;
+    private final long seed;
+    private final SyntheticCards catalog;
+
+    public DatasetGenerator(int cards, int carts, int orders, long seed) {
+        if (cards < 1 || carts < 0 || orders < 0 || orders > carts) {
+            throw new IllegalArgumentException("Need cards >= 1 and 0 <= orders <= carts");
+        }
+        this.cards = cards;
+        this.carts = carts;
+        this.orders = orders;
+        this.seed = seed;
+        this.catalog = new SyntheticCards(seed);
+    }
+
+    public static void main(String[] args) throws IOException {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--") || !arg.contains("=")) {
+                System.err.println("Usage: DatasetGenerator --cards=N --carts=N --orders=N [--seed=N] [--out=DIR]");
+                System.exit(2);
+            }
+            options.put(arg.substring(2, arg.indexOf('=')), arg.substring(arg.indexOf('=') + 1));
+        }
+        DatasetGenerator generator = new DatasetGenerator(
+            Integer.parseInt(options.getOrDefault("cards", "10000")),
+            Integer.parseInt(options.getOrDefault("carts", "1000")),
+            Integer.parseInt(options.getOrDefault("orders", "250")),
+            Long.parseLong(options.getOrDefault("seed", Long.toString(CatalogCsv.DEFAULT_SEED))));
+        Path out = Path.of(options.getOrDefault("out", "dataset"));
+        generator.writeAll(out);
+        System.out.println("Wrote dataset to " + out.toAbsolutePath());
+    }
+
+    public void writeAll(Path directory) throws IOException {
+        Files.createDirectories(directory);
+        writeCardsCsv(directory.resolve("cards.csv"));
+        writeCardsJson(directory.resolve("cards.ndjson"));
+        writeSql(directory.resolve("storefront.sql"));
+    }
+
+    public void writeCardsCsv(Path file) throws IOException {
+        try (Writer out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            out.write(CatalogCsv.HEADER);
+            for (long id = 1; id <= cards; id++) {
+                CatalogCsv.writeRow(out, catalog.card(id));
+            }
+        }
+    }
+
+    // Field names match the api-mongo TradingCard document.
+    public void writeCardsJson(Path file) throws IOException {
+        try (JsonGenerator json = new JsonFactory().createGenerator(Files.newBufferedWriter(file, StandardCharsets.UTF_8))) {
+            json.setPrettyPrinter(new MinimalPrettyPrinter("\n"));
+            for (long id = 1; id <= cards; id++) {
+                SyntheticCards.Card card = catalog.card(id);
+                json.writeStartObject();
+                json.writeStringField("_id", Long.toString(card.id()));
+                json.writeStringField("name", card.name());
+                json.writeStringField("specialty", card.specialty());
+                json.writeStringField("contribution", card.contribution());
+                json.writeFieldName("price");
+                json.writeNumber(BigDecimal.valueOf(card.priceCents(), 2));
+                json.writeStringField("imageUrl", card.imageUrl());
+                json.writeEndObject();
+            }
+            json.writeRaw('\n');
+        }
+    }
+
+    // Table and column names follow Spring Boot's default physical naming of the db module's entities.
+    public void writeSql(Path file) throws IOException {
+        SplittableRandom random = new SplittableRandom(seed ^ 0x5DEECE66DL);
+        try (BufferedWriter out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            out.write("SET REFERENTIAL_INTEGRITY FALSE;\n");
+
+            long[] orderSubtotals = new long[orders];
+            SqlInserts cartRows = new SqlInserts(out, "cart", "id, person_id");
+            SqlInserts itemRows = new SqlInserts(out, "item", "id, cart_id, card_id, name, price, quantity");
+            long itemId = 0;
+            for (int cart = 1; cart <= carts; cart++) {
+                String cartId = "cart-" + cart;
+                cartRows.add(cartId, "person-" + (1 + random.nextInt(Math.max(carts / 2, 1))));
+                int items = Math.min(1 + geometric(random, ITEM_COUNT_P), MAX_ITEMS_PER_CART);
+                long subtotal = 0;
+                for (int i = 0; i < items; i++) {
+                    SyntheticCards.Card card = catalog.card(popularCardId(random));
+                    int quantity = 1 + SyntheticCards.sample(random, QUANTITY_CDF);
+                    itemRows.add(++itemId, cartId, Long.toString(card.id()), card.name(),
+                        BigDecimal.valueOf(card.priceCents(), 2), quantity);
+                    subtotal += card.priceCents() * quantity;
+                }
+                if (cart <= orders) {
+                    orderSubtotals[cart - 1] = subtotal;
+                }
+            }
+            cartRows.flush();
+            itemRows.flush();
+
+            SqlInserts customerRows = new SqlInserts(out, "customer", "id, first_name, last_name, email, phone");
+            SqlInserts addressRows = new SqlInserts(out, "address",
+                "id, address_line1, address_line2, city, state, zip_code, country");
+            SqlInserts orderRows = new SqlInserts(out, "card_order",
+                "id, cart_id, shipping_address_id, customer_id, order_date, confirmation_sent, ship_method, "
+                    + "order_notes, subtotal, total, tax");
+            for (int order = 1; order <= orders; order++) {
+                String[] name = SyntheticCards.name(random).split(" ");
+                customerRows.add(order, name[0], name[1],
+                    name[0].toLowerCase() + "." + name[1].toLowerCase() + order + "@example.com",
+                    String.format("208-555-%04d", random.nextInt(10_000)));
+                int city = random.nextInt(CITIES.length);
+                addressRows.add(order, (100 + random.nextInt(9_900)) + " Main St",
+                    random.nextInt(10) == 0 ? "Apt " + (1 + random.nextInt(300)) : null,
+                    CITIES[city], STATES[city], String.format("%05d", 83_000 + random.nextInt(1_000)), "USA");
+
+                boolean express = random.nextInt(5) == 0;
+                BigDecimal subtotal = BigDecimal.valueOf(orderSubtotals[order - 1], 2);
+                BigDecimal tax = subtotal.multiply(TAX_RATE).setScale(2, RoundingMode.HALF_UP);
+                BigDecimal total = subtotal.add(tax).add(BigDecimal.valueOf(express ? EXPRESS_SHIPPING_CENTS : 0, 2));
+                LocalDateTime orderDate = FIRST_ORDER.plusSeconds(random.nextLong(365L * 24 * 60 * 60));
+                orderRows.add(order, "cart-" + order, order, order, new SqlTimestamp(orderDate),
+                    random.nextInt(10) != 0, express ? "Express" : "Standard",
+                    random.nextInt(20) == 0 ? "Leave at the front desk" : null, subtotal, total, tax);
+            }
+            customerRows.flush();
+            addressRows.flush();
+            orderRows.flush();
+
+            out.write("SET REFERENTIAL_INTEGRITY TRUE;\n");
+            // The generated ids were inserted explicitly, so the identity columns must continue after them.
+            for (String table : new String[] {"customer", "address", "card_order"}) {
+                out.write("ALTER TABLE " + table + " ALTER COLUMN id RESTART WITH " + (orders + 1) + ";\n");
+            }
+        }
+    }
+
+    // Low ids are drawn far more often, so a small set of cards appears in most carts.
+    private long popularCardId(SplittableRandom random) {
+        return 1 + (long) (cards * Math.pow(random.nextDouble(), CARD_POPULARITY_EXPONENT));
+    }
+
+    private static int geometric(SplittableRandom random, double p) {
+        return (int) Math.floor(Math.log(1 - random.nextDouble()) / Math.log(1 - p));
+    }
+
+    private record SqlTimestamp(LocalDateTime value) {
+        @Override
+        public String toString() {
+            return value.format(SQL_TIMESTAMP);
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package edu.byui.apj.storefront.benchmarks;
+
+import java.util.SplittableRandom;
+
+/**
+ * Seeded source of trading cards. Every card is derived from the seed and its id alone, so cards
+ * can be generated in any order and looked up again when carts refer to them. Specialties follow a
+ * Zipf distribution, so a few of them hold most of the catalog as in pioneers.csv, and prices are
+ * spread from 5.00 to 149.99.
+ */
+public final class SyntheticCards {
+
+    public record Card(long id, String name, String specialty, String contribution, long priceCents, String imageUrl) {
+    }
+
+    static final String[] SPECIALTIES = {
+        "Programming Languages", "Networking_Internet", "Computer Architecture", "Algorithms_Theory",
+        "Artificial Intelligence", "Cybersecurity", "Software Engineering", "Database Systems", "Graphics_HCI",
+        "Operating Systems"
+    };
+
+    static final String[] FIRST_NAMES = {
+        "Ada", "Alan", "Barbara", "Charles", "Donald", "Edsger", "Frances", "Grace", "John", "Ken",
+        "Leslie", "Margaret", "Niklaus", "Radia", "Tim", "Vint"
+    };
+
+    private static final String[] SYLLABLES = {
+        "al", "ber", "cor", "dan", "el", "fin", "gar", "hol", "ing", "kin", "lov", "mar", "nor", "ost", "per",
+        "ric", "son", "tur", "van", "wes"
+    };
+
+    private static final String[] WORDS = {
+        "compiler", "kernel", "protocol", "database", "algorithm", "network", "language", "theory", "graphics",
+        "security", "processor", "memory", "java", "structured", "relational", "distributed", "parallel",
+        "cryptography", "interface", "machine"
+    };
+
+    private static final double SPECIALTY_SKEW = 1.1;
+    private static final double[] SPECIALTY_CDF = zipfCdf(SPECIALTIES.length, SPECIALTY_SKEW);
+
+    private final long seed;
+
+    public SyntheticCards(long seed) {
+        this.seed = seed;
+    }
+
+    public Card card(long id) {
+        SplittableRandom random = new SplittableRandom(seed * 0x9E3779B97F4A7C15L + id);
+        return new Card(id, name(random), specialty(random), contribution(random), 500 + random.nextInt(14_500),
+            "https://placecats.com/200/280");
+    }
+
+    static String name(SplittableRandom random) {
+        StringBuilder last = new StringBuilder();
+        int syllables = 2 + random.nextInt(2);
+        for (int i = 0; i < syllables; i++) {
+            last.append(SYLLABLES[random.nextInt(SYLLABLES.length)]);
+        }
+        last.setCharAt(0, Character.toUpperCase(last.charAt(0)));
+        return FIRST_NAMES[random.nextInt(FIRST_NAMES.length)] + " " + last;
+    }
+
+    private static String specialty(SplittableRandom random) {
+        return SPECIALTIES[sample(random, SPECIALTY_CDF)];
+    }
+
+    private static String contribution(SplittableRandom random) {
+        StringBuilder text = new StringBuilder("Pioneered");
+        int words = 3 + random.nextInt(5);
+        for (int i = 0; i < words; i++) {
+            text.append(' ').append(WORDS[random.nextInt(WORDS.length)]);
+        }
+        return text.append(", widely adopted").toString();
+    }
+
+    static String formatCents(long cents) {
+        return (cents / 100) + "." + (cents % 100 < 10 ? "0" : "") + (cents % 100);
+    }
+
+    static double[] zipfCdf(int size, double skew) {
+        double[] cdf = new double[size];
+        double total = 0;
+        for (int rank = 1; rank <= size; rank++) {
+            total += 1 / Math.pow(rank, skew);
+            cdf[rank - 1] = total;
+        }
+        for (int i = 0; i < size; i++) {
+            cdf[i] /= total;
+        }
+        return cdf;
+    }
+
+    // Index of the first cumulative probability above a uniform draw.
+    static int sample(SplittableRandom random, double[] cdf) {
+        double u = random.nextDouble();
+        int low = 0;
+        int high = cdf.length - 1;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (cdf[mid] <= u) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+}
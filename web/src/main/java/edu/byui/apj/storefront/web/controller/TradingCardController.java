@@ -8,10 +8,13 @@ import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Flux;
 
 import java.math.BigDecimal;
 import java.util.List;
 
+// Filter and search results stream through line by line to callers that accept application/x-ndjson;
+// Spring MVC collects them into a JSON array for everyone else.
 @RestController
 @RequestMapping("/api")
 public class TradingCardController {
@@ -31,7 +34,7 @@ public class TradingCardController {
     }
 
     @GetMapping("/cards/filter")
-    public ResponseEntity<List<TradingCard>> getCardsFilter(
+    public ResponseEntity<Flux<TradingCard>> getCardsFilter(
         @RequestParam(name = "minPrice", required = false) BigDecimal maybeMinPrice,
         @RequestParam(name = "maxPrice", required = false) BigDecimal maybeMaxPrice,
         @RequestParam(name = "specialty", required = false) String maybeSpecialty,
@@ -41,7 +44,7 @@ public class TradingCardController {
     }
 
     @GetMapping("/cards/search")
-    public List<TradingCard> getCardsSearch(
+    public Flux<TradingCard> getCardsSearch(
         @RequestParam(name = "query") String query
     ) {
         return tcService.searchByNameOrContribution(query);
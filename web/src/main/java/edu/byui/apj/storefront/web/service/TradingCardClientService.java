@@ -2,12 +2,16 @@ package edu.byui.apj.storefront.web.service;
 
 import edu.byui.apj.storefront.web.model.TradingCard;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
 import org.springframework.stereotype.Service;
 import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
 
 import java.math.BigDecimal;
 import java.util.List;
 
+// Filter and search results are requested as NDJSON and handed on as a Flux, so cards are decoded one line at a
+// time as they arrive. Whether they are streamed on from here depends on what the web tier's caller accepts.
 @Service
 public class TradingCardClientService {
     private final WebClient webClient;
@@ -32,7 +36,7 @@ public class TradingCardClientService {
 
     // Returns the list resulting in filtering by minPrice, maxPrice or specialty, then sorting by sort.
     // Sort can be "name" or "price"
-    public List<TradingCard> filterAndSort(BigDecimal minPrice, BigDecimal maxPrice, String specialty, String sort) {
+    public Flux<TradingCard> filterAndSort(BigDecimal minPrice, BigDecimal maxPrice, String specialty, String sort) {
         return webClient.get()
             .uri(uriBuilder -> uriBuilder
                 .path("/api/cards/filter")
@@ -42,23 +46,21 @@ public class TradingCardClientService {
                 .queryParam("sort", sort)
                 .build()
             )
+            .accept(MediaType.APPLICATION_NDJSON)
             .retrieve()
-            .bodyToFlux(TradingCard.class)
-            .collectList()
-            .block();
+            .bodyToFlux(TradingCard.class);
     }
 
     // Returns the list of cards resulting in the query string (case insensitive) found in the name or contribution.
-    public List<TradingCard> searchByNameOrContribution(String query) {
+    public Flux<TradingCard> searchByNameOrContribution(String query) {
         return webClient.get()
             .uri(uriBuilder -> uriBuilder
                 .path("/api/cards/search")
                 .queryParam("query", query)
                 .build()
             )
+            .accept(MediaType.APPLICATION_NDJSON)
             .retrieve()
-            .bodyToFlux(TradingCard.class)
-            .collectList()
-            .block();
+            .bodyToFlux(TradingCard.class);
     }
 }